@@ -439,15 +439,12 @@ public class HecDss implements AutoCloseable {
      * @param pathname The pathname of the time series (D pathname part is ignored)
      * @param start An HecTime object that is set to the first value time, if the time series exists
      * @param end An HecTime object that is set to the last value time, if the time series exists
-     * @return Whether the time series exists
+     * @return Whether the time series exists and has data
      * @throws ApiException If thrown by <ul>
      *     <li>{@link #recordExists(String)}</li>
      *     <li>{@link ApiUtil#toSqlDssName(TimeSeriesContainer)}</li>
      * </ul>
-     * @throws EncodedDateTimeException If thrown by <ul>
-     *     <li>{@link TimeSeries#getTimeSeriesExtents(String, Long[], Connection)}</li>
-     *     <li>{@link EncodedDateTime#toHecTime(long)}</li>
-     * </ul>
+     * @throws EncodedDateTimeException If thrown by {@link EncodedDateTime#toHecTime(long)}
      * @throws SqlDssException If thrown by <ul>
      *     <li>{@link #recordExists(String)}</li>
      *     <li>{@link TimeSeries#getTimeSeriesExtents(String, Long[], Connection)}</li>
@@ -461,6 +458,9 @@ public class HecDss implements AutoCloseable {
         }
         Long[] extents = new Long[2];
         TimeSeries.getTimeSeriesExtents(ApiUtil.toSqlDssName(pathname), extents, sqldss.getConnection());
+        if (extents[0] == null) {
+            return false;
+        }
         start.set(EncodedDateTime.toHecTime(extents[0]));
         end.set(EncodedDateTime.toHecTime(extents[1]));
         return true;
@@ -502,6 +502,24 @@ public class HecDss implements AutoCloseable {
         // noop
     }
 
+    /**
+     * Begins a bulk load on the SQLDSS object
+     * @throws SqlDssException If thrown by {@link SqlDss#beginBulkLoad()}
+     * @throws SQLException If thrown by {@link SqlDss#beginBulkLoad()}
+     */
+    public void beginBulkLoad() throws SqlDssException, SQLException {
+        sqldss.beginBulkLoad();
+    }
+
+    /**
+     * Ends a bulk load on the SQLDSS object
+     * @throws SqlDssException If thrown by {@link SqlDss#endBulkLoad()}
+     * @throws SQLException If thrown by {@link SqlDss#endBulkLoad()}
+     */
+    public void endBulkLoad() throws SqlDssException, SQLException {
+        sqldss.endBulkLoad();
+    }
+
     /**
      * Closes the underlying SQLDSS file
      * @throws SqlDssException If thrown by {@link SqlDss#close()}
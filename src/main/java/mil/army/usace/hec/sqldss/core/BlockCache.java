@@ -0,0 +1,311 @@
+package mil.army.usace.hec.sqldss.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-connection cache of decoded regular time series blocks, keyed by time series specification key and block start
+ * date.
+ *
+ * The cache is disabled (has a capacity of zero bytes) until {@link SqlDss#setBlockCacheBytes(long)} is called. Blocks
+ * are held as primitive arrays and evicted in least-recently-used order when the total size of the cached blocks
+ * exceeds the capacity. Blocks that do not exist or are deleted are cached as {@link #EMPTY} so that a retrieval whose
+ * blocks are all cached needs no SQL.
+ *
+ * Every block written or marked deleted or undeleted through this connection is invalidated. Blocks are only added
+ * while the connection is in auto-commit mode, so values from a transaction that is later rolled back are never cached.
+ * Changes made to the file through other connections are not seen until the cached blocks are evicted. The cache for a
+ * connection is discarded by {@link #release(Connection)}, which {@link SqlDss#close()} calls before closing the
+ * connection.
+ */
+final class BlockCache {
+
+    /**
+     * A decoded block
+     */
+    static final class Block {
+        /**
+         * The encoded date/time of the first value in the block
+         */
+        final long firstTime;
+        /**
+         * The number of values in the block
+         */
+        final int valueCount;
+        /**
+         * The values in the block
+         */
+        final double[] values;
+        /**
+         * The qualities in the block, or null if the block has no qualities
+         */
+        final int[] qualities;
+
+        /**
+         * Constructor
+         * @param firstTime The encoded date/time of the first value in the block
+         * @param values The values in the block
+         * @param qualities The qualities in the block, or null if the block has no qualities
+         */
+        Block(long firstTime, double @NotNull [] values, int @Nullable [] qualities) {
+            this.firstTime = firstTime;
+            this.valueCount = values.length;
+            this.values = values;
+            this.qualities = qualities;
+        }
+
+        /**
+         * @return The approximate number of bytes of memory used by the block
+         */
+        long sizeInBytes() {
+            return ENTRY_OVERHEAD_BYTES
+                    + (long) values.length * Double.BYTES
+                    + (qualities == null ? 0L : (long) qualities.length * Integer.BYTES);
+        }
+    }
+
+    /**
+     * The cache key of a block
+     */
+    private static final class BlockKey {
+        /**
+         * The time series specification key
+         */
+        final long timeSeries;
+        /**
+         * The block start date
+         */
+        final long blockStartDate;
+
+        /**
+         * Constructor
+         * @param timeSeries The time series specification key
+         * @param blockStartDate The block start date
+         */
+        BlockKey(long timeSeries, long blockStartDate) {
+            this.timeSeries = timeSeries;
+            this.blockStartDate = blockStartDate;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof BlockKey)) {
+                return false;
+            }
+            BlockKey other = (BlockKey) o;
+            return timeSeries == other.timeSeries && blockStartDate == other.blockStartDate;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(timeSeries) * 31 + Long.hashCode(blockStartDate);
+        }
+    }
+
+    /**
+     * The approximate number of bytes used by a cache entry in addition to its arrays
+     */
+    static final long ENTRY_OVERHEAD_BYTES = 128;
+
+    /**
+     * The cached value of a block that does not exist or is deleted
+     */
+    static final Block EMPTY = new Block(0, new double[0], null);
+
+    /**
+     * The caches for each connection
+     */
+    private static final Map<Connection, BlockCache> caches = new IdentityHashMap<>();
+
+    /**
+     * The cached blocks, in least-recently-used order
+     */
+    private final LinkedHashMap<BlockKey, Block> blocks = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The maximum total size of the cached blocks, in bytes
+     */
+    private long capacityBytes = 0;
+
+    /**
+     * The current total size of the cached blocks, in bytes
+     */
+    private long sizeBytes = 0;
+
+    /**
+     * The number of times a block was found in the cache
+     */
+    private long hits = 0;
+
+    /**
+     * The number of times a block was not found in the cache
+     */
+    private long misses = 0;
+
+    /**
+     * Prevent instantiation except by {@link #forConnection(Connection)}
+     */
+    private BlockCache() {
+    }
+
+    /**
+     * Retrieves the block cache for a connection, creating it if necessary. Caches of connections that have been
+     * closed without being released are discarded when a new cache is created.
+     * @param conn The JDBC connection
+     * @return The block cache for the connection
+     * @throws SQLException If SQL error
+     */
+    @NotNull
+    static BlockCache forConnection(@NotNull Connection conn) throws SQLException {
+        synchronized (caches) {
+            BlockCache cache = caches.get(conn);
+            if (cache == null) {
+                Iterator<Map.Entry<Connection, BlockCache>> it = caches.entrySet().iterator();
+                while (it.hasNext()) {
+                    if (it.next().getKey().isClosed()) {
+                        it.remove();
+                    }
+                }
+                cache = new BlockCache();
+                caches.put(conn, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Discards the block cache for a connection
+     * @param conn The JDBC connection
+     */
+    static void release(@NotNull Connection conn) {
+        synchronized (caches) {
+            caches.remove(conn);
+        }
+    }
+
+    /**
+     * @return Whether the cache has a non-zero capacity
+     */
+    synchronized boolean isEnabled() {
+        return capacityBytes > 0;
+    }
+
+    /**
+     * Sets the maximum total size of the cached blocks, evicting blocks as necessary. A capacity of zero disables the
+     * cache and discards all cached blocks.
+     * @param bytes The capacity in bytes
+     */
+    synchronized void setCapacityBytes(long bytes) {
+        capacityBytes = Math.max(bytes, 0);
+        evict();
+    }
+
+    /**
+     * @return The maximum total size of the cached blocks, in bytes
+     */
+    synchronized long getCapacityBytes() {
+        return capacityBytes;
+    }
+
+    /**
+     * @return The current total size of the cached blocks, in bytes
+     */
+    synchronized long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    /**
+     * Retrieves a cached block
+     * @param timeSeries The time series specification key
+     * @param blockStartDate The block start date
+     * @return The cached block, {@link #EMPTY} if the block is cached as not existing, or null if not cached
+     */
+    synchronized @Nullable Block get(long timeSeries, long blockStartDate) {
+        if (capacityBytes == 0) {
+            return null;
+        }
+        Block block = blocks.get(new BlockKey(timeSeries, blockStartDate));
+        if (block == null) {
+            ++misses;
+        }
+        else {
+            ++hits;
+        }
+        return block;
+    }
+
+    /**
+     * Adds a block to the cache, evicting least-recently-used blocks as necessary. Blocks larger than the capacity are
+     * not cached.
+     * @param timeSeries The time series specification key
+     * @param blockStartDate The block start date
+     * @param block The decoded block, or {@link #EMPTY} if the block does not exist or is deleted
+     */
+    synchronized void put(long timeSeries, long blockStartDate, @NotNull Block block) {
+        long size = block.sizeInBytes();
+        if (size > capacityBytes) {
+            return;
+        }
+        Block old = blocks.put(new BlockKey(timeSeries, blockStartDate), block);
+        if (old != null) {
+            sizeBytes -= old.sizeInBytes();
+        }
+        sizeBytes += size;
+        evict();
+    }
+
+    /**
+     * Removes a block from the cache
+     * @param timeSeries The time series specification key
+     * @param blockStartDate The block start date
+     */
+    synchronized void invalidate(long timeSeries, long blockStartDate) {
+        if (blocks.isEmpty()) {
+            return;
+        }
+        Block old = blocks.remove(new BlockKey(timeSeries, blockStartDate));
+        if (old != null) {
+            sizeBytes -= old.sizeInBytes();
+        }
+    }
+
+    /**
+     * Removes every block from the cache, keeping the capacity
+     */
+    synchronized void clear() {
+        blocks.clear();
+        sizeBytes = 0;
+    }
+
+    /**
+     * Removes least-recently-used blocks until the total size of the cached blocks is within the capacity
+     */
+    private void evict() {
+        Iterator<Block> it = blocks.values().iterator();
+        while (sizeBytes > capacityBytes && it.hasNext()) {
+            sizeBytes -= it.next().sizeInBytes();
+            it.remove();
+        }
+    }
+
+    /**
+     * @return The number of times a block was found in the cache
+     */
+    synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return The number of times a block was not found in the cache
+     */
+    synchronized long getMisses() {
+        return misses;
+    }
+}
@@ -0,0 +1,85 @@
+package mil.army.usace.hec.sqldss.core;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
+import static mil.army.usace.hec.sqldss.core.Constants.RECORD_TYPE;
+
+/**
+ * Encoder and decoder for the body of one version of one record type of time series block.
+ *
+ * Every block starts with a common header (record type, version, value count, quality flag and first value time) that
+ * is written and parsed by {@link TimeSeries}; the codec handles only the values and quality codes that follow it.
+ * Codecs encode from and decode into caller-provided primitive arrays, so the retrieve and store engines never see
+ * the body layout. Codecs are looked up by record type and version in {@link BlockCodecs}, where new codecs can be
+ * registered. Implementations must be stateless and thread-safe, since blocks may be decoded concurrently.
+ */
+public interface BlockCodec {
+
+    /**
+     * @return The record type of blocks handled by this codec
+     */
+    @NotNull RECORD_TYPE getRecordType();
+
+    /**
+     * @return The version byte of blocks handled by this codec
+     */
+    int getVersion();
+
+    /**
+     * Determines whether this codec can encode values and quality codes. General codecs can encode any block; codecs
+     * for blocks of particular content, such as constant blocks, are used only for blocks they can encode.
+     * @param values The values
+     * @param qualities The quality codes, or null if the block has no quality codes
+     * @param offset The index of the first value to encode
+     * @param count The number of values to encode
+     * @return Whether {@link #encode(double[], int[], int, int, ByteBuffer)} can encode the values and quality codes
+     */
+    default boolean canEncode(double @NotNull [] values, int[] qualities, int offset, int count) {
+        return true;
+    }
+
+    /**
+     * Computes the maximum size of an encoded body
+     * @param count The number of values to encode
+     * @param hasQuality Whether quality codes are encoded
+     * @return The maximum number of bytes {@link #encode(double[], int[], int, int, ByteBuffer)} writes
+     */
+    int getMaxEncodedSize(int count, boolean hasQuality);
+
+    /**
+     * Encodes values and quality codes as a block body
+     * @param values The values
+     * @param qualities The quality codes, or null if the block has no quality codes
+     * @param offset The index of the first value to encode
+     * @param count The number of values to encode
+     * @param out The little-endian buffer to write the body to, positioned after the header, with at least
+     *            {@link #getMaxEncodedSize(int, boolean)} bytes remaining. It is left positioned after the body.
+     */
+    void encode(double @NotNull [] values, int[] qualities, int offset, int count, @NotNull ByteBuffer out);
+
+    /**
+     * Decodes a range of values and quality codes from a block body
+     * @param in The little-endian buffer wrapping the block, positioned after the header. The position on return is
+     *           unspecified.
+     * @param valueCount The number of values in the block
+     * @param hasQuality Whether the block has quality codes
+     * @param skip The number of block values to skip
+     * @param values The array to decode the values into
+     * @param qualities The array to decode the quality codes into. If null, or if the block has no quality codes, the
+     *                  quality codes are not decoded
+     * @param index The index in the arrays of the first value decoded
+     * @param count The number of values to decode
+     * @throws SqlDssException If the body is invalid
+     */
+    void decode(
+            @NotNull ByteBuffer in,
+            int valueCount,
+            boolean hasQuality,
+            int skip,
+            double @NotNull [] values,
+            int[] qualities,
+            int index,
+            int count) throws SqlDssException;
+}
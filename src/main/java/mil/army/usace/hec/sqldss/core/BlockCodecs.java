@@ -0,0 +1,104 @@
+package mil.army.usace.hec.sqldss.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static mil.army.usace.hec.sqldss.core.Constants.RECORD_TYPE;
+
+/**
+ * Registry of {@link BlockCodec}s keyed by record type and version.
+ *
+ * The codecs for RTD versions 1 ({@link RtdRawCodec}), 2 ({@link RtdXorCodec}), 3 ({@link RtdConstantCodec}) and 4
+ * ({@link RtdFloatCodec}) are always registered. Additional codecs can be registered to read and write other block
+ * versions without changing the retrieve and store code. A registered codec cannot be replaced, so blocks already
+ * written with a version are always decoded by the codec that wrote them.
+ */
+public final class BlockCodecs {
+
+    /**
+     * The registered codecs, keyed by record type code and version
+     */
+    private static final Map<Integer, BlockCodec> codecs = new ConcurrentHashMap<>();
+
+    static {
+        for (BlockCodec codec : new BlockCodec[]{
+                new RtdRawCodec(),
+                new RtdXorCodec(),
+                new RtdConstantCodec(),
+                new RtdFloatCodec()}) {
+            codecs.put(key(codec.getRecordType(), codec.getVersion()), codec);
+        }
+    }
+
+    /**
+     * Prevent instantiation
+     */
+    private BlockCodecs() {
+        throw new AssertionError("Cannot instantiate");
+    }
+
+    /**
+     * Computes the registry key for a record type and version
+     * @param recordType The record type
+     * @param version The version
+     * @return The registry key
+     */
+    private static int key(@NotNull RECORD_TYPE recordType, int version) {
+        return recordType.getCode() << 8 | (version & 0xff);
+    }
+
+    /**
+     * Registers a codec for a record type and version that has no codec registered
+     * @param codec The codec
+     * @throws SqlDssException If a codec is already registered for the record type and version
+     */
+    public static void register(@NotNull BlockCodec codec) throws SqlDssException {
+        if (codecs.putIfAbsent(key(codec.getRecordType(), codec.getVersion()), codec) != null) {
+            throw new SqlDssException(String.format(
+                    "A codec is already registered for %s version %d",
+                    codec.getRecordType().name(),
+                    codec.getVersion()));
+        }
+    }
+
+    /**
+     * @param recordType The record type
+     * @param version The version
+     * @return Whether a codec is registered for the record type and version
+     */
+    public static boolean isRegistered(@NotNull RECORD_TYPE recordType, int version) {
+        return codecs.containsKey(key(recordType, version));
+    }
+
+    /**
+     * Looks up the codec for a record type and version
+     * @param recordType The record type
+     * @param version The version
+     * @return The codec, or null if no codec is registered for the record type and version
+     */
+    static @Nullable BlockCodec find(@NotNull RECORD_TYPE recordType, int version) {
+        return codecs.get(key(recordType, version));
+    }
+
+    /**
+     * Retrieves the codec for a record type and version
+     * @param recordType The record type
+     * @param version The version
+     * @return The codec
+     * @throws SqlDssException If no codec is registered for the record type and version
+     */
+    @NotNull
+    public static BlockCodec get(@NotNull RECORD_TYPE recordType, int version) throws SqlDssException {
+        BlockCodec codec = find(recordType, version);
+        if (codec == null) {
+            throw new SqlDssException(String.format(
+                    "Don't know how to decode %s version %d",
+                    recordType.name(),
+                    version));
+        }
+        return codec;
+    }
+}
@@ -0,0 +1,297 @@
+package mil.army.usace.hec.sqldss.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+
+import static mil.army.usace.hec.sqldss.core.Constants.RECORD_TYPE;
+
+/**
+ * Per-connection block encoding settings of a SQLDSS file, which are stored in the DSS_INFO table.
+ *
+ * <dl>
+ *     <dt><code>rtd_version</code></dt>
+ *     <dd>The version of RTD blocks written to the file: 1 for raw values and quality codes, or 2 for XOR-compressed
+ *     values and run-length encoded quality codes (see {@link XorEncoding}), or any other version with a codec
+ *     registered in {@link BlockCodecs}. New files, and files without the setting, are written with version 1 so that
+ *     older software can still read them, until version 2 is selected with {@link #setRtdVersion(int, Connection)}.
+ *     Blocks of every registered version are always readable. Unless the setting is 1, blocks of a single repeated
+ *     value and quality code are written as version 3 (see {@link RtdConstantCodec}), and blocks of values that are all
+ *     exactly representable as 32-bit floats as version 4 (see {@link RtdFloatCodec}) if that is smaller, whatever the
+ *     setting.</dd>
+ *     <dt><code>block_compression_level</code></dt>
+ *     <dd>The deflate level (1 to 9) at which the bodies of RTD blocks are compressed, or 0 (the default) to not
+ *     compress them. Compression trades CPU time on store and retrieve for smaller files, and suits archive files that
+ *     are mostly read. Blocks are never compressed while <code>rtd_version</code> is 1, since software that only
+ *     reads version 1 blocks would misread deflated ones.</dd>
+ *     <dt><code>block_compression_level:<i>interval</i></code></dt>
+ *     <dd>The deflate level for time series of the named interval, overriding <code>block_compression_level</code>
+ *     </dd>
+ *     <dt><code>block_compression_ratio</code></dt>
+ *     <dd>The maximum ratio of compressed to uncompressed block size (default 0.8). Blocks that don't compress at least
+ *     this well are stored uncompressed so they aren't inflated on every retrieval for little gain.</dd>
+ * </dl>
+ *
+ * The settings are read from the file when first needed for a connection. They are discarded by
+ * {@link #release(Connection)}, which {@link SqlDss#close()} calls before closing the connection.
+ */
+final class BlockFormat {
+
+    /**
+     * The DSS_INFO key of the RTD block version setting
+     */
+    static final String RTD_VERSION_KEY = "rtd_version";
+
+    /**
+     * The RTD versions for blocks of particular content, in order of preference. Unless the file's RTD version is 1,
+     * the first of them that can encode a block is written instead of the file's RTD version if its blob is smaller.
+     * They can't be the file's RTD version.
+     */
+    static final int[] CONTENT_RTD_VERSIONS = {RtdConstantCodec.VERSION, RtdFloatCodec.VERSION};
+
+    /**
+     * The DSS_INFO key of the block compression level setting, and the prefix of the per-interval keys
+     */
+    static final String COMPRESSION_LEVEL_KEY = "block_compression_level";
+
+    /**
+     * The DSS_INFO key of the block compression ratio setting
+     */
+    static final String COMPRESSION_RATIO_KEY = "block_compression_ratio";
+
+    /**
+     * The default block compression ratio
+     */
+    static final double DEFAULT_COMPRESSION_RATIO = 0.8;
+
+    /**
+     * The settings for each connection
+     */
+    private static final Map<Connection, BlockFormat> formats = new IdentityHashMap<>();
+
+    /**
+     * The version of RTD blocks to write
+     */
+    private volatile int rtdVersion;
+
+    /**
+     * The deflate level of blocks of time series of any interval without its own level, or 0 for no compression
+     */
+    private volatile int compressionLevel;
+
+    /**
+     * The deflate levels of blocks of time series of specific intervals
+     */
+    private final Map<String, Integer> intervalCompressionLevels = new ConcurrentHashMap<>();
+
+    /**
+     * The maximum ratio of compressed to uncompressed block size for a block to be stored compressed
+     */
+    private volatile double compressionRatio;
+
+    /**
+     * Prevent instantiation except by {@link #forConnection(Connection)}
+     */
+    private BlockFormat() {
+    }
+
+    /**
+     * Retrieves the block encoding settings for a connection, reading them from the file if necessary. Settings of
+     * connections that have been closed without being released are discarded when new settings are read.
+     * @param conn The JDBC connection
+     * @return The block encoding settings for the connection
+     * @throws SQLException If SQL error
+     */
+    @NotNull
+    static BlockFormat forConnection(@NotNull Connection conn) throws SQLException {
+        synchronized (formats) {
+            BlockFormat format = formats.get(conn);
+            if (format == null) {
+                Iterator<Map.Entry<Connection, BlockFormat>> it = formats.entrySet().iterator();
+                while (it.hasNext()) {
+                    if (it.next().getKey().isClosed()) {
+                        it.remove();
+                    }
+                }
+                format = new BlockFormat();
+                String rtdVersion = getInfo(RTD_VERSION_KEY, conn);
+                format.rtdVersion = rtdVersion == null ? 1 : Integer.parseInt(rtdVersion.trim());
+                String compressionLevel = getInfo(COMPRESSION_LEVEL_KEY, conn);
+                format.compressionLevel = compressionLevel == null ? 0 : Integer.parseInt(compressionLevel.trim());
+                String compressionRatio = getInfo(COMPRESSION_RATIO_KEY, conn);
+                format.compressionRatio = compressionRatio == null
+                        ? DEFAULT_COMPRESSION_RATIO
+                        : Double.parseDouble(compressionRatio.trim());
+                PreparedStatement ps = StatementCache.prepare(
+                        conn,
+                        "select key, value from dss_info where key like ?");
+                ps.setString(1, COMPRESSION_LEVEL_KEY + ":%");
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        format.intervalCompressionLevels.put(
+                                rs.getString("key").substring(COMPRESSION_LEVEL_KEY.length() + 1).toLowerCase(),
+                                Integer.parseInt(rs.getString("value").trim()));
+                    }
+                }
+                formats.put(conn, format);
+            }
+            return format;
+        }
+    }
+
+    /**
+     * Discards the block encoding settings for a connection
+     * @param conn The JDBC connection
+     */
+    static void release(@NotNull Connection conn) {
+        synchronized (formats) {
+            formats.remove(conn);
+        }
+    }
+
+    /**
+     * @return The version of RTD blocks to write
+     */
+    int getRtdVersion() {
+        return rtdVersion;
+    }
+
+    /**
+     * Sets the version of RTD blocks to write and stores it in the file. Existing blocks are not rewritten.
+     * @param version The RTD block version
+     * @param conn The JDBC connection
+     * @throws SqlDssException If no codec is registered for the version
+     * @throws SQLException If SQL error
+     */
+    void setRtdVersion(int version, @NotNull Connection conn) throws SqlDssException, SQLException {
+        if (version < 1 || version > 255 || !BlockCodecs.isRegistered(RECORD_TYPE.RTD, version)) {
+            throw new SqlDssException("No codec is registered for RTD block version " + version);
+        }
+        for (int contentVersion : CONTENT_RTD_VERSIONS) {
+            if (version == contentVersion) {
+                throw new SqlDssException(String.format(
+                        "RTD block version %d is only written for blocks of particular content",
+                        version));
+            }
+        }
+        putInfo(RTD_VERSION_KEY, String.valueOf(version), conn);
+        rtdVersion = version;
+    }
+
+    /**
+     * Retrieves the deflate level of blocks of time series of an interval
+     * @param intervalName The interval name
+     * @return The interval's own level if set, otherwise the level for the file. 0 means no compression, which is
+     * always the case while the RTD block version is 1.
+     */
+    int getCompressionLevel(@NotNull String intervalName) {
+        if (rtdVersion == 1) {
+            return 0;
+        }
+        Integer level = intervalCompressionLevels.get(intervalName.toLowerCase());
+        return level == null ? compressionLevel : level;
+    }
+
+    /**
+     * Sets the deflate level of blocks and stores it in the file. Existing blocks are not rewritten.
+     * @param level The deflate level from 1 to 9, or 0 for no compression
+     * @param intervalName The interval to set the level for, or null to set the level for intervals without their
+     *                     own level
+     * @param conn The JDBC connection
+     * @throws SqlDssException If the level or the interval is invalid, or if the level is greater than 0 and the RTD
+     *                         block version is 1
+     * @throws SQLException If SQL error
+     */
+    void setCompressionLevel(int level, @Nullable String intervalName, @NotNull Connection conn)
+            throws SqlDssException, SQLException {
+        if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new SqlDssException(String.format(
+                    "Block compression level must be from %d to %d, got %d",
+                    Deflater.NO_COMPRESSION,
+                    Deflater.BEST_COMPRESSION,
+                    level));
+        }
+        if (level > Deflater.NO_COMPRESSION && rtdVersion == 1) {
+            throw new SqlDssException("Blocks cannot be compressed while the RTD block version is 1");
+        }
+        if (intervalName == null) {
+            putInfo(COMPRESSION_LEVEL_KEY, String.valueOf(level), conn);
+            compressionLevel = level;
+        }
+        else {
+            Interval.getIntervalMinutes(intervalName);
+            putInfo(COMPRESSION_LEVEL_KEY + ":" + intervalName, String.valueOf(level), conn);
+            intervalCompressionLevels.put(intervalName.toLowerCase(), level);
+        }
+    }
+
+    /**
+     * @return The maximum ratio of compressed to uncompressed block size for a block to be stored compressed
+     */
+    double getCompressionRatio() {
+        return compressionRatio;
+    }
+
+    /**
+     * Sets the maximum ratio of compressed to uncompressed block size for a block to be stored compressed, and stores
+     * it in the file
+     * @param ratio The ratio, greater than 0 and no more than 1
+     * @param conn The JDBC connection
+     * @throws SqlDssException If the ratio is invalid
+     * @throws SQLException If SQL error
+     */
+    void setCompressionRatio(double ratio, @NotNull Connection conn) throws SqlDssException, SQLException {
+        if (!(ratio > 0 && ratio <= 1)) {
+            throw new SqlDssException("Block compression ratio must be greater than 0 and no more than 1, got " + ratio);
+        }
+        putInfo(COMPRESSION_RATIO_KEY, String.valueOf(ratio), conn);
+        compressionRatio = ratio;
+    }
+
+    /**
+     * Retrieves a value from the DSS_INFO table
+     * @param key The key
+     * @param conn The JDBC connection
+     * @return The value, or null if the key does not exist
+     * @throws SQLException If SQL error
+     */
+    static @Nullable String getInfo(@NotNull String key, @NotNull Connection conn) throws SQLException {
+        PreparedStatement ps = StatementCache.prepare(conn, "select value from dss_info where key = ?");
+        ps.setString(1, key);
+        try (ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getString("value") : null;
+        }
+    }
+
+    /**
+     * Stores a value in the DSS_INFO table, replacing any existing value
+     * @param key The key
+     * @param value The value
+     * @param conn The JDBC connection
+     * @throws SQLException If SQL error
+     */
+    static void putInfo(@NotNull String key, @NotNull String value, @NotNull Connection conn) throws SQLException {
+        PreparedStatement ps = StatementCache.prepare(conn, """
+                insert
+                  into dss_info
+                       (key,
+                        value
+                       )
+                values (?, ?)
+                    on conflict (key)
+                    do update
+                   set value = excluded.value""");
+        ps.setString(1, key);
+        ps.setString(2, value);
+        ps.executeUpdate();
+    }
+}
@@ -66,14 +66,199 @@ public class Constants {
      */
     public static final String LAST_INSERT_ROWID = "last_insert_rowid()";
     /**
-     * The SQL template for retrieving time series blocks (rows from TSV table)
+     * The SQL for retrieving a time series block (row from TSV table)
      */
     public static final String SQL_SELECT_TS_BLOCK = """
         select deleted,
                data
           from tsv
-         where time_series = %d
+         where time_series = ?
            and block_start_date = ?""";
+    /**
+     * The SQL for retrieving all time series blocks (rows from TSV table) in a range of block start dates, in block
+     * start date order
+     */
+    public static final String SQL_SELECT_TS_BLOCKS = """
+        select block_start_date,
+               deleted,
+               data
+          from tsv
+         where time_series = ?
+           and block_start_date between ? and ?
+         order by block_start_date""";
+    /**
+     * The SQL for retrieving the first and last value times of all non-deleted time series blocks in a range of block
+     * start dates without reading the blocks themselves. The times are null for blocks without block information.
+     */
+    public static final String SQL_SELECT_TS_BLOCK_EXTENTS = """
+        select t.block_start_date,
+               i.first_time,
+               i.last_time
+          from tsv t
+               left join tsv_info i
+                      on i.time_series = t.time_series
+                     and i.block_start_date = t.block_start_date
+         where t.time_series = ?
+           and t.block_start_date between ? and ?
+           and t.deleted = 0
+           and t.data is not null""";
+    /**
+     * The SQL for retrieving the first and last value times of a time series from the block information of its
+     * non-deleted blocks, without reading the blocks themselves. The times are null if the time series has no blocks.
+     */
+    public static final String SQL_SELECT_TS_EXTENTS = """
+        select min(i.first_time) as first_time,
+               max(i.last_time) as last_time
+          from tsv_info i
+               join tsv t
+                 on t.time_series = i.time_series
+                and t.block_start_date = i.block_start_date
+         where i.time_series = ?
+           and t.deleted = 0
+           and t.data is not null""";
+    /**
+     * The SQL for counting the non-deleted time series blocks and their bytes by the record type and version bytes
+     * and the flags byte of their headers, without returning the blocks themselves. SQLite still reads each block to
+     * take the substrings.
+     */
+    public static final String SQL_SELECT_TS_BLOCK_STORAGE = """
+        select hex(substr(data, 1, 2)) as type_version,
+               hex(substr(data, 7, 1)) as flags,
+               count(*) as block_count,
+               sum(length(data)) as byte_count
+          from tsv
+         where deleted = 0
+           and data is not null
+         group by type_version,
+                  flags""";
+    /**
+     * The SQL for retrieving the block information of all non-deleted time series blocks in a range of block start
+     * dates, in block start date order, without reading the blocks themselves. The information columns are null for
+     * blocks without block information.
+     */
+    public static final String SQL_SELECT_TS_BLOCK_INFO = """
+        select t.block_start_date,
+               i.value_count,
+               i.first_time,
+               i.last_time,
+               i.min_value,
+               i.max_value,
+               i.valid_count,
+               i.sum_value,
+               i.sum_sq_value
+          from tsv t
+               left join tsv_info i
+                      on i.time_series = t.time_series
+                     and i.block_start_date = t.block_start_date
+         where t.time_series = ?
+           and t.block_start_date between ? and ?
+           and t.deleted = 0
+           and t.data is not null
+         order by t.block_start_date""";
+    /**
+     * The SQL for retrieving every time series block that has block information, for recomputing the information
+     */
+    public static final String SQL_SELECT_ALL_TS_BLOCKS_WITH_INFO = """
+        select i.time_series,
+               i.block_start_date,
+               i.first_time,
+               i.last_time,
+               t.data
+          from tsv_info i,
+               tsv t
+         where t.time_series = i.time_series
+           and t.block_start_date = i.block_start_date""";
+    /**
+     * The SQL for updating the value statistics of the information for a time series block (row in TSV_INFO table)
+     */
+    public static final String SQL_UPDATE_TS_INFO_STATISTICS = """
+        update tsv_info
+           set value_count  = ?,
+               min_value    = ?,
+               max_value    = ?,
+               valid_count  = ?,
+               sum_value    = ?,
+               sum_sq_value = ?
+         where time_series = ?
+           and block_start_date = ?""";
+    /**
+     * The SQL for inserting a time series block (row in TSV table), replacing and undeleting any existing block
+     */
+    public static final String SQL_UPSERT_TS_BLOCK = """
+        insert
+          into tsv
+               (time_series,
+                block_start_date,
+                deleted,
+                data
+               )
+        values (?, ?, 0, ?)
+            on conflict (time_series, block_start_date)
+            do update
+           set deleted = 0,
+               data = excluded.data""";
+    /**
+     * The SQL for inserting the information for a time series block (row in TSV_INFO table), replacing any existing
+     * information
+     */
+    public static final String SQL_UPSERT_TS_INFO = """
+        insert
+          into tsv_info
+               (time_series,
+                block_start_date,
+                value_count,
+                first_time,
+                last_time,
+                min_value,
+                max_value,
+                valid_count,
+                sum_value,
+                sum_sq_value,
+                last_update
+               )
+        values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            on conflict (time_series, block_start_date)
+            do update
+           set value_count  = excluded.value_count,
+               first_time   = excluded.first_time,
+               last_time    = excluded.last_time,
+               min_value    = excluded.min_value,
+               max_value    = excluded.max_value,
+               valid_count  = excluded.valid_count,
+               sum_value    = excluded.sum_value,
+               sum_sq_value = excluded.sum_sq_value,
+               last_update  = excluded.last_update""";
+    /**
+     * The SQL for inserting the rollup of a time series block at a resolution (row in TSV_ROLLUP table), replacing any
+     * existing rollup
+     */
+    public static final String SQL_UPSERT_TS_ROLLUP = """
+        insert
+          into tsv_rollup
+               (time_series,
+                resolution,
+                block_start_date,
+                data
+               )
+        values (?, ?, ?, ?)
+            on conflict (time_series, resolution, block_start_date)
+            do update
+           set data = excluded.data""";
+    /**
+     * The SQL for retrieving the rollups at a resolution of all non-deleted time series blocks in a range of block
+     * start dates
+     */
+    public static final String SQL_SELECT_TS_ROLLUPS = """
+        select r.block_start_date,
+               r.data
+          from tsv_rollup r,
+               tsv t
+         where r.time_series = ?
+           and r.resolution = ?
+           and r.block_start_date between ? and ?
+           and t.time_series = r.time_series
+           and t.block_start_date = r.block_start_date
+           and t.deleted = 0""";
     /**
      * The universe of available parameter types
      */
@@ -404,4 +589,47 @@ public class Constants {
             throw new IllegalArgumentException("Unknown IRREGULAR_STORE_RULE code: " + code);
         }
     }
+    /**
+     * The universe of time series downsampling methods
+     */
+    public enum DOWNSAMPLE_METHOD {
+        /**
+         * <code><b>0:</b></code> Largest-Triangle-Three-Buckets: one value per bucket, chosen to preserve the visual
+         * shape of the time series
+         */
+        LTTB(0),
+        /**
+         * <code><b>1:</b></code> The minimum and maximum values of each bucket, in time order
+         */
+        MIN_MAX(1);
+
+        /**
+         * The numeric code
+         */
+        private final int code;
+        /**
+         * Constructor
+         * @param code The numeric code
+         */
+        DOWNSAMPLE_METHOD(int code) {
+            this.code = code;
+        }
+        /**
+         * @return The numeric code
+         */
+        public int getCode() {
+            return code;
+        }
+        /**
+         * Get a DOWNSAMPLE_METHOD from its numeric code
+         * @param code The numeric code
+         * @return the DOWNSAMPLE_METHOD
+         */
+        public static @NotNull DOWNSAMPLE_METHOD fromCode(int code) {
+            for (DOWNSAMPLE_METHOD t : values()) {
+                if (t.code == code) return t;
+            }
+            throw new IllegalArgumentException("Unknown DOWNSAMPLE_METHOD code: " + code);
+        }
+    }
 }
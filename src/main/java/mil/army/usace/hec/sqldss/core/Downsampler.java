@@ -0,0 +1,313 @@
+package mil.army.usace.hec.sqldss.core;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+import static mil.army.usace.hec.sqldss.core.Constants.DOWNSAMPLE_METHOD;
+
+/**
+ * Streaming downsampler for the values of a regular time series in a time window.
+ *
+ * The time window is divided into buckets by the index of each value in the regular interval grid of the window.
+ * Values must be added in time order, and only the values of the current and previous buckets are held, so a time
+ * window can be downsampled one block at a time without its full-resolution values ever being in memory together.
+ * Callers skip missing and rejected values.
+ *
+ * The {@link DOWNSAMPLE_METHOD#LTTB} method keeps the first and last values and one value from each bucket in between,
+ * choosing the value that forms the largest triangle with the value kept from the previous bucket and the average of
+ * the next bucket. The {@link DOWNSAMPLE_METHOD#MIN_MAX} method keeps the minimum and maximum values of each bucket.
+ */
+final class Downsampler {
+
+    /**
+     * The values of a bucket
+     */
+    private static final class Bucket {
+        /**
+         * The times of the values (LTTB only)
+         */
+        int[] times = new int[16];
+        /**
+         * The values (LTTB only)
+         */
+        double[] values = new double[16];
+        /**
+         * The number of values
+         */
+        int size = 0;
+        /**
+         * The sum of the times of the values
+         */
+        double timeSum = 0;
+        /**
+         * The sum of the values
+         */
+        double valueSum = 0;
+        /**
+         * The time of the minimum value (MIN_MAX only)
+         */
+        int minTime;
+        /**
+         * The minimum value (MIN_MAX only)
+         */
+        double minValue;
+        /**
+         * The time of the maximum value (MIN_MAX only)
+         */
+        int maxTime;
+        /**
+         * The maximum value (MIN_MAX only)
+         */
+        double maxValue;
+
+        /**
+         * Empties the bucket
+         */
+        void clear() {
+            size = 0;
+            timeSum = 0;
+            valueSum = 0;
+        }
+    }
+
+    /**
+     * The downsampling method
+     */
+    private final DOWNSAMPLE_METHOD method;
+
+    /**
+     * The number of interval times in the time window
+     */
+    private final int gridCount;
+
+    /**
+     * The number of buckets
+     */
+    private final int bucketCount;
+
+    /**
+     * The number of interval times in each bucket between the first and last (LTTB only)
+     */
+    private final double bucketSize;
+
+    /**
+     * The index of the bucket being filled, or -1 if none
+     */
+    private int currentIndex = -1;
+
+    /**
+     * The bucket being filled
+     */
+    private Bucket current = new Bucket();
+
+    /**
+     * The previous non-empty bucket, whose value is chosen once the average of the current bucket is known (LTTB only)
+     */
+    private Bucket previous = new Bucket();
+
+    /**
+     * Whether a value has been kept
+     */
+    private boolean hasKept = false;
+
+    /**
+     * The time of the last value kept
+     */
+    private int keptTime;
+
+    /**
+     * The last value kept
+     */
+    private double keptValue;
+
+    /**
+     * The times of the values kept
+     */
+    private int[] times;
+
+    /**
+     * The values kept
+     */
+    private double[] values;
+
+    /**
+     * The number of values kept
+     */
+    private int count = 0;
+
+    /**
+     * Constructor
+     * @param method The downsampling method
+     * @param gridCount The number of interval times in the time window
+     * @param targetCount The maximum number of values to keep. Must be at least 3 for LTTB and 2 for MIN_MAX, and less
+     *                    than <code>gridCount</code>
+     */
+    Downsampler(@NotNull DOWNSAMPLE_METHOD method, int gridCount, int targetCount) {
+        this.method = method;
+        this.gridCount = gridCount;
+        if (method == DOWNSAMPLE_METHOD.LTTB) {
+            this.bucketCount = targetCount;
+            this.bucketSize = (double) (gridCount - 2) / (targetCount - 2);
+        }
+        else {
+            this.bucketCount = targetCount / 2;
+            this.bucketSize = 0;
+        }
+        this.times = new int[targetCount];
+        this.values = new double[targetCount];
+    }
+
+    /**
+     * Adds a value. Values must be added in increasing time order.
+     * @param gridIndex The index of the value's time in the regular interval grid of the time window
+     * @param time The time of the value, in HecTime minutes
+     * @param value The value
+     */
+    void add(int gridIndex, int time, double value) {
+        int index = bucketIndex(gridIndex);
+        if (index != currentIndex) {
+            closeBucket();
+            currentIndex = index;
+        }
+        Bucket bucket = current;
+        if (method == DOWNSAMPLE_METHOD.LTTB) {
+            if (bucket.size == bucket.values.length) {
+                bucket.times = Arrays.copyOf(bucket.times, bucket.size * 2);
+                bucket.values = Arrays.copyOf(bucket.values, bucket.size * 2);
+            }
+            bucket.times[bucket.size] = time;
+            bucket.values[bucket.size] = value;
+            bucket.timeSum += time;
+            bucket.valueSum += value;
+        }
+        else {
+            if (bucket.size == 0 || value < bucket.minValue) {
+                bucket.minTime = time;
+                bucket.minValue = value;
+            }
+            if (bucket.size == 0 || value > bucket.maxValue) {
+                bucket.maxTime = time;
+                bucket.maxValue = value;
+            }
+        }
+        ++bucket.size;
+    }
+
+    /**
+     * Completes the downsampling after the last value has been added
+     */
+    void finish() {
+        closeBucket();
+        if (previous.size > 0) {
+            // always keep the last value
+            keep(previous.times[previous.size - 1], previous.values[previous.size - 1]);
+            previous.clear();
+        }
+    }
+
+    /**
+     * @return The times of the values kept, in HecTime minutes
+     */
+    int @NotNull [] getTimes() {
+        return Arrays.copyOf(times, count);
+    }
+
+    /**
+     * @return The values kept
+     */
+    double @NotNull [] getValues() {
+        return Arrays.copyOf(values, count);
+    }
+
+    /**
+     * Computes the bucket of a value
+     * @param gridIndex The index of the value's time in the regular interval grid of the time window
+     * @return The bucket index
+     */
+    private int bucketIndex(int gridIndex) {
+        if (method == DOWNSAMPLE_METHOD.LTTB) {
+            if (gridIndex == 0) {
+                return 0;
+            }
+            if (gridIndex >= gridCount - 1) {
+                return bucketCount - 1;
+            }
+            return Math.min(1 + (int) ((gridIndex - 1) / bucketSize), bucketCount - 2);
+        }
+        return (int) ((long) gridIndex * bucketCount / gridCount);
+    }
+
+    /**
+     * Keeps the values of the current bucket if it is complete. For LTTB, the value of the previous bucket is chosen
+     * using the average of the current bucket, and the current bucket becomes the previous bucket.
+     */
+    private void closeBucket() {
+        Bucket bucket = current;
+        if (bucket.size == 0) {
+            return;
+        }
+        if (method == DOWNSAMPLE_METHOD.LTTB) {
+            if (previous.size > 0) {
+                choose(previous, bucket.timeSum / bucket.size, bucket.valueSum / bucket.size);
+            }
+            current = previous;
+            previous = bucket;
+        }
+        else {
+            if (bucket.minTime < bucket.maxTime) {
+                keep(bucket.minTime, bucket.minValue);
+                keep(bucket.maxTime, bucket.maxValue);
+            }
+            else if (bucket.minTime > bucket.maxTime) {
+                keep(bucket.maxTime, bucket.maxValue);
+                keep(bucket.minTime, bucket.minValue);
+            }
+            else {
+                keep(bucket.minTime, bucket.minValue);
+            }
+        }
+        current.clear();
+    }
+
+    /**
+     * Keeps the value of a bucket that forms the largest triangle with the last value kept and a specified point. The
+     * first value of the bucket is kept if no value has been kept yet.
+     * @param bucket The bucket
+     * @param nextTime The average time of the next bucket
+     * @param nextValue The average value of the next bucket
+     */
+    private void choose(@NotNull Bucket bucket, double nextTime, double nextValue) {
+        int chosen = 0;
+        if (hasKept) {
+            double maxArea = -1;
+            for (int i = 0; i < bucket.size; ++i) {
+                double area = Math.abs((keptTime - nextTime) * (bucket.values[i] - keptValue)
+                        - (keptTime - bucket.times[i]) * (nextValue - keptValue));
+                if (area > maxArea) {
+                    maxArea = area;
+                    chosen = i;
+                }
+            }
+        }
+        keep(bucket.times[chosen], bucket.values[chosen]);
+    }
+
+    /**
+     * Adds a value to the output
+     * @param time The time of the value, in HecTime minutes
+     * @param value The value
+     */
+    private void keep(int time, double value) {
+        if (count == times.length) {
+            times = Arrays.copyOf(times, count * 2);
+            values = Arrays.copyOf(values, count * 2);
+        }
+        times[count] = time;
+        values[count] = value;
+        ++count;
+        hasKept = true;
+        keptTime = time;
+        keptValue = value;
+    }
+}
@@ -33,14 +33,11 @@ public class Duration {
      */
     static String getDuration(String name, Connection conn) throws SQLException {
         String actualName;
-        try (PreparedStatement ps = conn.prepareStatement(
-                "select name from duration where name = ?"
-        )) {
-            ps.setString(1, name);
-            try (ResultSet rs = ps.executeQuery()) {
-                rs.next();
-                actualName = rs.getString("name");
-            }
+        PreparedStatement ps = StatementCache.prepare(conn, "select name from duration where name = ?");
+        ps.setString(1, name);
+        try (ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            actualName = rs.getString("name");
         }
         return actualName;
     }
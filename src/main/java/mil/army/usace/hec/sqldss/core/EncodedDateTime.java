@@ -321,9 +321,37 @@ public final class EncodedDateTime {
      */
     public static long @NotNull [] makeRegularEncodedDateTimeArray(long encodedStartTime, int count, int intervalMinutes) throws EncodedDateTimeException {
         long[] encodedDateTimes = new long[count];
+        if (count == 0) {
+            return encodedDateTimes;
+        }
         encodedDateTimes[0] = encodedStartTime;
-        for (int i = 1; i < count; ++i) {
-            encodedDateTimes[i] = incrementEncodedDateTime(encodedDateTimes[i - 1], intervalMinutes, 1);
+        if (count == 1) {
+            return encodedDateTimes;
+        }
+        long epochSeconds = toEpochSeconds(encodedStartTime, true);
+        int intervalMonths = toIntervalMonths(intervalMinutes);
+        if (intervalMonths == 0) {
+            long intervalSeconds = intervalMinutes * 60L;
+            for (int i = 1; i < count; ++i) {
+                epochSeconds += intervalSeconds;
+                encodedDateTimes[i] = fromEpochSeconds(epochSeconds);
+            }
+        }
+        else if (dayOf(encodedStartTime) <= 28) {
+            // no day-of-month overflow is possible, so each time is the same day and time in a later month
+            long dayTime = Math.abs(encodedStartTime) % 100_000_000L;
+            long monthIndex = monthIndexOf(encodedStartTime);
+            for (int i = 1; i < count; ++i) {
+                monthIndex += intervalMonths;
+                encodedDateTimes[i] = (Math.floorDiv(monthIndex, 12) * 100 + Math.floorMod(monthIndex, 12) + 1)
+                        * 100_000_000L + dayTime;
+            }
+        }
+        else {
+            // day-of-month overflow depends on the previous time, so step one interval at a time
+            for (int i = 1; i < count; ++i) {
+                encodedDateTimes[i] = incrementEncodedDateTime(encodedDateTimes[i - 1], intervalMinutes, 1);
+            }
         }
         return encodedDateTimes;
     }
@@ -349,15 +377,32 @@ public final class EncodedDateTime {
      * @param encodedEndTime The end date/time
      * @param intervalMinutes The interval minutes of the intervals to count
      * @return The number of complete intervals between the start and end date/times
-     * @throws EncodedDateTimeException If thrown by {@link #incrementEncodedDateTime(long, int, int)}
+     * @throws EncodedDateTimeException If the start time is greater than the end time or if thrown by
+     * {@link #incrementEncodedDateTime(long, int, int)}
      */
     public static int intervalsBetween(long encodedStartTime, long encodedEndTime, int intervalMinutes) throws EncodedDateTimeException {
         if (encodedStartTime > encodedEndTime) {
             throw new EncodedDateTimeException(String.format("Start time (%d) must not be greater than end time (%d)", encodedStartTime, encodedEndTime));
         }
+        if (intervalMinutes <= 0) {
+            throw new EncodedDateTimeException("Invalid interval minutes: " + intervalMinutes);
+        }
+        long startSeconds = toEpochSeconds(encodedStartTime, true);
+        int intervalMonths = toIntervalMonths(intervalMinutes);
+        if (intervalMonths == 0) {
+            return (int) ((toEpochSeconds(encodedEndTime, false) - startSeconds) / (intervalMinutes * 60L));
+        }
+        if (dayOf(encodedStartTime) <= 28) {
+            // no day-of-month overflow is possible, so count whole months and back off one interval if we overshot
+            int count = (int) ((monthIndexOf(encodedEndTime) - monthIndexOf(encodedStartTime)) / intervalMonths);
+            if (incrementEncodedDateTime(encodedStartTime, intervalMinutes, count) > encodedEndTime) {
+                --count;
+            }
+            return count;
+        }
+        // day-of-month overflow depends on the previous time, so step one interval at a time
         int count = 0;
-        long encodedTime;
-        encodedTime = encodedStartTime;
+        long encodedTime = encodedStartTime;
         while (encodedTime <= encodedEndTime) {
             ++count;
             encodedTime = incrementEncodedDateTime(encodedTime, intervalMinutes, 1);
@@ -369,49 +414,20 @@ public final class EncodedDateTime {
      * Computes the date/time of a specified number of intervals of a specified size after a specified start date/time
      * @param encoded The start date/time
      * @param intervalMinutes The interval minutes of the interval to use
-     * @param count The number of intervals after the start date/time
+     * @param count The number of intervals after the start date/time (before if count &lt; 0)
      * @return The resulting encoded date/time
      * @throws EncodedDateTimeException If the interval minutes is not a valid combination of known intervals
      */
     public static long incrementEncodedDateTime(long encoded, int intervalMinutes, int count) throws EncodedDateTimeException {
-        int[] values = toValues(encoded);
-        int minutesRemaining = intervalMinutes;
-        for (int i = 0; i < count; ++i) {
-            int num = 0;
-            if (intervalMinutes >= Constants.YEAR_MINUTES) {
-                num = intervalMinutes / Constants.YEAR_MINUTES;
-                values[0] += num;
-                if (i == 0) {
-                    minutesRemaining -= num * Constants.YEAR_MINUTES;
-                }
-            }
-            else if (intervalMinutes >= Constants.MONTH_MINUTES) {
-                num = intervalMinutes / Constants.MONTH_MINUTES;
-                values[1] += num;
-                if (i == 0) {
-                    minutesRemaining -= num * Constants.MONTH_MINUTES;
-                }
-            }
-            else if (intervalMinutes >= Constants.DAY_MINUTES) {
-                num = intervalMinutes / Constants.DAY_MINUTES;
-                values[2] += num;
-                if (i == 0) {
-                    minutesRemaining -= num * Constants.DAY_MINUTES;
-                }
-            }
-            else {
-                values[4] += intervalMinutes; // minutes
-                if (i == 0) {
-                    minutesRemaining -= intervalMinutes;
-                }
-            }
-            if (i == 0) {
-                if (minutesRemaining != 0) {
-                    throw new EncodedDateTimeException("Invalid interval minutes: "+minutesRemaining);
-                }
-            }
+        long epochSeconds = toEpochSeconds(encoded, true);
+        if (count == 0) {
+            return fromEpochSeconds(epochSeconds);
         }
-        return encodeDateTime(values);
+        int intervalMonths = toIntervalMonths(intervalMinutes);
+        if (intervalMonths == 0) {
+            return fromEpochSeconds(epochSeconds + (long) intervalMinutes * count * 60L);
+        }
+        return addMonthsTo(encoded, (long) intervalMonths * count);
     }
 
     /**
@@ -422,9 +438,8 @@ public final class EncodedDateTime {
      * @throws EncodedDateTimeException If thrown by {@link #toValues(long)}
      */
     public static long addYears(long encoded, int count) throws EncodedDateTimeException {
-        int[] values = toValues(encoded);
-        values[0] += count;
-        return encodeDateTime(values);
+        toEpochSeconds(encoded, true);
+        return addMonthsTo(encoded, 12L * count);
     }
 
     /**
@@ -435,9 +450,8 @@ public final class EncodedDateTime {
      * @throws EncodedDateTimeException If thrown by {@link #toValues(long)}
      */
     public static long addMonths(long encoded, int count) throws EncodedDateTimeException {
-        int[] values = toValues(encoded);
-        values[1] += count;
-        return encodeDateTime(values);
+        toEpochSeconds(encoded, true);
+        return addMonthsTo(encoded, count);
     }
 
     /**
@@ -448,9 +462,7 @@ public final class EncodedDateTime {
      * @throws EncodedDateTimeException If thrown by {@link #toValues(long)}
      */
     public static long addDays(long encoded, int count) throws EncodedDateTimeException {
-        int[] values = toValues(encoded);
-        values[2] += count;
-        return encodeDateTime(values);
+        return fromEpochSeconds(toEpochSeconds(encoded, true) + count * 86400L);
     }
 
     /**
@@ -461,9 +473,7 @@ public final class EncodedDateTime {
      * @throws EncodedDateTimeException If thrown by {@link #toValues(long)}
      */
     public static long addHours(long encoded, int count) throws EncodedDateTimeException {
-        int[] values = toValues(encoded);
-        values[3] += count;
-        return encodeDateTime(values);
+        return fromEpochSeconds(toEpochSeconds(encoded, true) + count * 3600L);
     }
 
     /**
@@ -474,9 +484,7 @@ public final class EncodedDateTime {
      * @throws EncodedDateTimeException If thrown by {@link #toValues(long)}
      */
     public static long addMinutes(long encoded, int count) throws EncodedDateTimeException {
-        int[] values = toValues(encoded);
-        values[4] += count;
-        return encodeDateTime(values);
+        return fromEpochSeconds(toEpochSeconds(encoded, true) + count * 60L);
     }
 
     /**
@@ -487,9 +495,144 @@ public final class EncodedDateTime {
      * @throws EncodedDateTimeException If thrown by {@link #toValues(long)}
      */
     public static long addSeconds(long encoded, int count) throws EncodedDateTimeException {
-        int[] values = toValues(encoded);
-        values[5] += count;
-        return encodeDateTime(values);
+        return fromEpochSeconds(toEpochSeconds(encoded, true) + count);
+    }
+
+    /**
+     * Computes the number of seconds between 1970-01-01T00:00:00 and an encoded date/time without allocating
+     * @param encoded The encoded date/time
+     * @param validate Whether to validate the items of the encoded date/time as {@link #toValues(long)} does
+     * @return The number of seconds (negative for date/times before 1970)
+     * @throws EncodedDateTimeException If <code>validate</code> is <code>true</code> and any item of the encoded
+     * date/time is out of normalized range
+     */
+    static long toEpochSeconds(long encoded, boolean validate) throws EncodedDateTimeException {
+        long absVal = Math.abs(encoded);
+        int s = (int) (absVal % 100);
+        absVal /= 100;
+        int n = (int) (absVal % 100);
+        absVal /= 100;
+        int h = (int) (absVal % 100);
+        absVal /= 100;
+        int d = (int) (absVal % 100);
+        absVal /= 100;
+        int m = (int) (absVal % 100);
+        absVal /= 100;
+        long y = encoded < 0 ? -absVal : absVal;
+        if (validate && (m < 1 || m > 12
+                || d < 1 || d > lastDay((int) y, m)
+                || h < 0 || h > 23
+                || n < 0 || n > 59
+                || s < 0 || s > 59)
+        ) {
+            throw new EncodedDateTimeException("Invalid encoded date/time: "+encoded);
+        }
+        return daysFromCivil(y, m, d) * 86400L + h * 3600L + n * 60L + s;
+    }
+
+    /**
+     * Creates an encoded date/time from the number of seconds between 1970-01-01T00:00:00 and the date/time
+     * @param epochSeconds The number of seconds (negative for date/times before 1970)
+     * @return The encoded date/time
+     */
+    static long fromEpochSeconds(long epochSeconds) {
+        long days = Math.floorDiv(epochSeconds, 86400L);
+        long secondOfDay = Math.floorMod(epochSeconds, 86400L);
+        // civil from days (proleptic Gregorian calendar, eras of 400 years)
+        long z = days + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        long d = doy - (153 * mp + 2) / 5 + 1;
+        long m = mp < 10 ? mp + 3 : mp - 9;
+        long y = yoe + era * 400 + (m <= 2 ? 1 : 0);
+        return ((((y * 100 + m) * 100 + d) * 100 + secondOfDay / 3600) * 100 + secondOfDay / 60 % 60) * 100
+                + secondOfDay % 60;
+    }
+
+    /**
+     * Computes the number of days between 1970-01-01 and a date in the proleptic Gregorian calendar
+     * @param y The year
+     * @param m The month
+     * @param d The day
+     * @return The number of days (negative for dates before 1970)
+     */
+    static long daysFromCivil(long y, int m, int d) {
+        y -= m <= 2 ? 1 : 0;
+        long era = Math.floorDiv(y, 400);
+        long yoe = y - era * 400;
+        long doy = (153L * (m > 2 ? m - 3 : m + 9) + 2) / 5 + d - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    /**
+     * Returns the number of months in an interval that is an exact number of months or years, validating the interval
+     * the same way for all interval sizes
+     * @param intervalMinutes The interval minutes
+     * @return The number of months in the interval, or zero if the interval is less than a month
+     * @throws EncodedDateTimeException If the interval minutes is not a valid combination of known intervals
+     */
+    private static int toIntervalMonths(int intervalMinutes) throws EncodedDateTimeException {
+        int minutesRemaining;
+        int months = 0;
+        if (intervalMinutes >= Constants.YEAR_MINUTES) {
+            months = intervalMinutes / Constants.YEAR_MINUTES * 12;
+            minutesRemaining = intervalMinutes % Constants.YEAR_MINUTES;
+        }
+        else if (intervalMinutes >= Constants.MONTH_MINUTES) {
+            months = intervalMinutes / Constants.MONTH_MINUTES;
+            minutesRemaining = intervalMinutes % Constants.MONTH_MINUTES;
+        }
+        else if (intervalMinutes >= Constants.DAY_MINUTES) {
+            minutesRemaining = intervalMinutes % Constants.DAY_MINUTES;
+        }
+        else {
+            minutesRemaining = 0;
+        }
+        if (minutesRemaining != 0) {
+            throw new EncodedDateTimeException("Invalid interval minutes: "+minutesRemaining);
+        }
+        return months;
+    }
+
+    /**
+     * Adds a number of months to a (validated) encoded date/time, with days past the end of the resulting month
+     * overflowing into the following month
+     * @param encoded The encoded date/time
+     * @param months The number of months to add (subtract if negative)
+     * @return The resulting encoded date/time
+     */
+    private static long addMonthsTo(long encoded, long months) {
+        long monthIndex = monthIndexOf(encoded) + months;
+        long y = Math.floorDiv(monthIndex, 12);
+        int m = (int) Math.floorMod(monthIndex, 12) + 1;
+        long time = Math.abs(encoded) % 1_000_000L;
+        return fromEpochSeconds(
+                (daysFromCivil(y, m, 1) + dayOf(encoded) - 1) * 86400L
+                + time / 10000 * 3600 + time / 100 % 100 * 60 + time % 100);
+    }
+
+    /**
+     * Returns the number of months between year 0 and the year and month of an encoded date/time
+     * @param encoded The encoded date/time
+     * @return The month index
+     */
+    private static long monthIndexOf(long encoded) {
+        long yearMonth = Math.abs(encoded) / 100_000_000L;
+        long y = yearMonth / 100;
+        return (encoded < 0 ? -y : y) * 12 + yearMonth % 100 - 1;
+    }
+
+    /**
+     * Returns the day of the month of an encoded date/time
+     * @param encoded The encoded date/time
+     * @return The day of the month
+     */
+    private static int dayOf(long encoded) {
+        return (int) (Math.abs(encoded) / 1_000_000L % 100);
     }
 
     /**
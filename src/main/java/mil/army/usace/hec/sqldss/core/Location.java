@@ -27,9 +27,48 @@ public class Location {
      * @throws SQLException If SQL error
      */
     public static long getLocationKey(@NotNull String locationName, Connection conn) throws SQLException {
+        String[] parts = parseLocationName(locationName);
+        NameCache cache = NameCache.forConnection(conn);
+        Long key = cache.getLocationKey(NameCache.locationId(parts[0], parts[1], parts[2]));
+        if (key != null) {
+            return key;
+        }
+        if (cache.isComplete()) {
+            return -1;
+        }
         return getLocationKey(locationName, new String[1], conn);
     }
 
+    /**
+     * Splits a location name into its context, base location, and sub-location
+     * @param locationName The location name
+     * @return A three-element array of context, base location and sub-location. The context and sub-location are
+     * empty strings if not present in the location name
+     */
+    static String @NotNull [] parseLocationName(@NotNull String locationName) {
+        String context = "";
+        String location;
+        String baseLocation;
+        String subLocation = "";
+        if (locationName.indexOf(':') == -1) {
+            location = locationName;
+        }
+        else {
+            String[] parts = locationName.split(":", 2);
+            context = parts[0].strip();
+            location = parts[1].strip();
+        }
+        if (location.indexOf('-') == -1) {
+            baseLocation = location;
+        }
+        else {
+            String[] parts = location.split("-", 2);
+            baseLocation = parts[0].strip();
+            subLocation = parts[1].strip();
+        }
+        return new String[]{context, baseLocation, subLocation};
+    }
+
     /**
      * Retrieve JSON information for a specified location
      * @param locationName The location to retrieve the information for
@@ -52,14 +91,11 @@ public class Location {
      * @throws SQLException If SQL error
      */
     public static String getLocationInfo(long key, Connection conn) throws SQLException {
-        try (PreparedStatement ps = conn.prepareStatement(
-                "select info from location where key = ?"
-        )) {
-            ps.setLong(1, key);
-            try (ResultSet rs = ps.executeQuery()) {
-                rs.next();
-                return rs.getString("info");
-            }
+        PreparedStatement ps = StatementCache.prepare(conn, "select info from location where key = ?");
+        ps.setLong(1, key);
+        try (ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return rs.getString("info");
         }
     }
 
@@ -72,43 +108,37 @@ public class Location {
      * @throws SQLException If SQL error
      */
     public static long getLocationKey(@NotNull String locationName, String @NotNull [] info, Connection conn) throws SQLException {
-        String context = "";
-        String location;
-        String baseLocation;
-        String subLocation = "";
+        String[] parts = parseLocationName(locationName);
+        String context = parts[0];
+        String baseLocation = parts[1];
+        String subLocation = parts[2];
         info[0] = "";
         long baseKey;
         long key;
         boolean nullKey;
-        if (locationName.indexOf(':') == -1) {
-            location = locationName;
-        }
-        else {
-            String[] parts = locationName.split(":", 2);
-            context = parts[0].strip();
-            location = parts[1].strip();
-        }
-        if (location.indexOf('-') == -1) {
-            baseLocation = location;
-        }
-        else {
-            String[] parts = location.split("-", 2);
-            baseLocation = parts[0].strip();
-            subLocation = parts[1].strip();
+        PreparedStatement ps;
+        NameCache cache = NameCache.forConnection(conn);
+        if (cache.isComplete()) {
+            //--------------------------------------------------------//
+            // bulk load: the cache knows whether the location exists //
+            //--------------------------------------------------------//
+            Long cachedKey = cache.getLocationKey(NameCache.locationId(context, baseLocation, subLocation));
+            if (cachedKey == null) {
+                return -1;
+            }
+            info[0] = getLocationInfo(cachedKey, conn);
+            return cachedKey;
         }
         //-------------------------//
         // query for base location //
         //-------------------------//
-        try (PreparedStatement ps = conn.prepareStatement(
-                "select key from base_location where context=? and name=?"
-        )) {
-            ps.setString(1, context);
-            ps.setString(2, baseLocation);
-            try (ResultSet rs = ps.executeQuery()) {
-                rs.next();
-                baseKey = rs.getLong("key");
-                nullKey = rs.wasNull();
-            }
+        ps = StatementCache.prepare(conn, "select key from base_location where context=? and name=?");
+        ps.setString(1, context);
+        ps.setString(2, baseLocation);
+        try (ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            baseKey = rs.getLong("key");
+            nullKey = rs.wasNull();
         }
         if (nullKey) {
             return -1;
@@ -116,21 +146,19 @@ public class Location {
         //--------------------//
         // query for location //
         //--------------------//
-        try (PreparedStatement ps = conn.prepareStatement(
-                "select key, info from location where base_location=? and sub_location=?"
-        )) {
-            ps.setLong(1, baseKey);
-            ps.setString(2, subLocation);
-            try (ResultSet rs = ps.executeQuery()) {
-                rs.next();
-                key = rs.getLong("key");
-                nullKey = rs.wasNull();
-                info[0] = rs.getString("info");
-            }
+        ps = StatementCache.prepare(conn, "select key, info from location where base_location=? and sub_location=?");
+        ps.setLong(1, baseKey);
+        ps.setString(2, subLocation);
+        try (ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            key = rs.getLong("key");
+            nullKey = rs.wasNull();
+            info[0] = rs.getString("info");
         }
         if (nullKey) {
             return -1;
         }
+        cache.putLocationKey(NameCache.locationId(context, baseLocation, subLocation), key);
         return key;
     }
 
@@ -159,14 +187,18 @@ public class Location {
      * @throws SqlDssException If other errors storing location
      */
     public static long putLocation(String locationName, String info, boolean mergeInfo, Connection conn) throws SQLException, SqlDssException {
-        String context = "";
-        String location;
-        String baseLocation;
-        String subLocation = "";
         long baseKey;
         boolean nullKey;
+        PreparedStatement ps;
         String[] existingInfo = new String[1];
-        long key = getLocationKey(locationName, existingInfo, conn);
+        //-------------------------------------------------------------------------//
+        // the existing info is only needed if the specified info might replace it //
+        //-------------------------------------------------------------------------//
+        boolean needInfo = !mergeInfo || (info != null && !info.isEmpty());
+        long key = needInfo ? getLocationKey(locationName, existingInfo, conn) : getLocationKey(locationName, conn);
+        if (key > 0 && !needInfo) {
+            return key;
+        }
         if (key > 0) {
             //-------------------------------------------------------------------//
             // location already exists: compare info and see if we need to merge //
@@ -190,11 +222,10 @@ public class Location {
                     // write the merged info string //
                     //------------------------------//
                     String sql = "update location set info = ? where key = ?";
-                    try (PreparedStatement ps = conn.prepareStatement(sql)) {
-                        ps.setString(1, info);
-                        ps.setLong(2, key);
-                        ps.executeUpdate();
-                    }
+                    ps = StatementCache.prepare(conn, sql);
+                    ps.setString(1, info);
+                    ps.setLong(2, key);
+                    ps.executeUpdate();
                 }
             }
             return key;
@@ -202,55 +233,34 @@ public class Location {
         //--------------------------------------//
         // location doesn't exist, so create it //
         //--------------------------------------//
-        if (locationName.indexOf(':') == -1) {
-            location = locationName;
-        }
-        else {
-            String[] parts = locationName.split(":", 2);
-            context = parts[0].strip();
-            location = parts[1].strip();
-        }
-        if (location.indexOf('-') == -1) {
-            baseLocation = location;
-        }
-        else {
-            String[] parts = location.split("-", 2);
-            baseLocation = parts[0].strip();
-            subLocation = parts[1].strip();
-        }
+        String[] parts = parseLocationName(locationName);
+        String context = parts[0];
+        String baseLocation = parts[1];
+        String subLocation = parts[2];
         //-------------------------//
         // query for base location //
         //-------------------------//
-        try (PreparedStatement ps = conn.prepareStatement(
-                "select key from base_location where context=? and name=?"
-        )) {
-            ps.setString(1, context);
-            ps.setString(2, baseLocation);
-            try (ResultSet rs = ps.executeQuery()) {
-                rs.next();
-                baseKey = rs.getLong("key");
-                nullKey = rs.wasNull();
-            }
+        ps = StatementCache.prepare(conn, "select key from base_location where context=? and name=?");
+        ps.setString(1, context);
+        ps.setString(2, baseLocation);
+        try (ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            baseKey = rs.getLong("key");
+            nullKey = rs.wasNull();
         }
         if (nullKey) {
             //----------------------//
             // insert base location //
             //----------------------//
-            try (PreparedStatement ps = conn.prepareStatement(
-                    "insert into base_location (context, name) values (?, ?)"
-            )) {
-                ps.setString(1, context);
-                ps.setString(2, baseLocation);
-                ps.executeUpdate();
-            }
-            try (PreparedStatement ps = conn.prepareStatement(
-                    Constants.SQL_SELECT_LAST_INSERT_ROWID
-            )) {
-                try (ResultSet rs = ps.executeQuery()) {
-                    rs.next();
-                    baseKey = rs.getLong(Constants.LAST_INSERT_ROWID);
-                    nullKey = rs.wasNull();
-                }
+            ps = StatementCache.prepare(conn, "insert into base_location (context, name) values (?, ?)");
+            ps.setString(1, context);
+            ps.setString(2, baseLocation);
+            ps.executeUpdate();
+            ps = StatementCache.prepare(conn, Constants.SQL_SELECT_LAST_INSERT_ROWID);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                baseKey = rs.getLong(Constants.LAST_INSERT_ROWID);
+                nullKey = rs.wasNull();
             }
         }
         if (nullKey) {
@@ -259,32 +269,27 @@ public class Location {
         //-----------------//
         // insert location //
         //-----------------//
-        try (PreparedStatement ps = conn.prepareStatement(
-                "insert into location (base_location, sub_location, info) values (?, ?, ?)"
-        )) {
-            ps.setLong(1, baseKey);
-            ps.setString(2, subLocation);
-            ps.setString(3, info);
-            ps.executeUpdate();
-        }
-        try (PreparedStatement ps = conn.prepareStatement(
-                Constants.SQL_SELECT_LAST_INSERT_ROWID
-        )) {
-            try (ResultSet rs = ps.executeQuery()) {
-                rs.next();
-                key = rs.getLong(Constants.LAST_INSERT_ROWID);
-                nullKey = rs.wasNull();
-            }
+        ps = StatementCache.prepare(conn, "insert into location (base_location, sub_location, info) values (?, ?, ?)");
+        ps.setLong(1, baseKey);
+        ps.setString(2, subLocation);
+        ps.setString(3, info);
+        ps.executeUpdate();
+        ps = StatementCache.prepare(conn, Constants.SQL_SELECT_LAST_INSERT_ROWID);
+        try (ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            key = rs.getLong(Constants.LAST_INSERT_ROWID);
+            nullKey = rs.wasNull();
         }
         if (nullKey) {
             if (context.isEmpty()) {
-                throw new SqlDssException("Error retrieving location " + location);
+                throw new SqlDssException("Error retrieving location " + locationName);
             }
             else {
                 throw new SqlDssException("Error retrieving location " + context + ":" + baseLocation);
 
             }
         }
+        NameCache.forConnection(conn).putLocationKey(NameCache.locationId(context, baseLocation, subLocation), key);
         return key;
     }
 }
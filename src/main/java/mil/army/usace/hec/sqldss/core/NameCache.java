@@ -0,0 +1,361 @@
+package mil.army.usace.hec.sqldss.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-connection dictionary of resolved location, parameter, and time series specification keys, and of case-correct
+ * base parameter names.
+ *
+ * Entries are added lazily when a name is successfully resolved from or inserted into the database, so a cache hit
+ * requires no SQL. Names that do not resolve are never cached. Cache identifiers are built from the parsed name
+ * components, folded to lower case for the components the database compares with <code>collate nocase</code>
+ * (SQLite only folds ASCII letters, so only ASCII letters are folded here). The caches for a connection are
+ * discarded by {@link #release(Connection)}, which {@link SqlDss#close()} calls before closing the connection.
+ *
+ * During a bulk load ({@link SqlDss#beginBulkLoad()}) the cache is loaded with every key in the database and is
+ * <em>complete</em>: a name that is not cached does not exist, so no SQL is needed to find that out either.
+ */
+final class NameCache {
+
+    /**
+     * Separator between name components in cache identifiers. Cannot occur in a valid name.
+     */
+    private static final char SEPARATOR = '\u0000';
+
+    /**
+     * The caches for each connection
+     */
+    private static final Map<Connection, NameCache> caches = new IdentityHashMap<>();
+
+    /**
+     * Location keys by location identifier
+     */
+    private final ConcurrentHashMap<String, Long> locations = new ConcurrentHashMap<>();
+
+    /**
+     * Case-correct base parameter names by folded base parameter name
+     */
+    private final ConcurrentHashMap<String, String> baseParameters = new ConcurrentHashMap<>();
+
+    /**
+     * Parameter keys by parameter identifier
+     */
+    private final ConcurrentHashMap<String, Long> parameters = new ConcurrentHashMap<>();
+
+    /**
+     * Time series specification keys by time series identifier
+     */
+    private final ConcurrentHashMap<String, Long> timeSeries = new ConcurrentHashMap<>();
+
+    /**
+     * Time series specification keys inserted during a bulk load that have not yet had any values stored
+     */
+    private final Set<Long> newTimeSeries = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Whether the cache holds every key in the database
+     */
+    private volatile boolean complete = false;
+
+    /**
+     * Prevent instantiation except by {@link #forConnection(Connection)}
+     */
+    private NameCache() {
+    }
+
+    /**
+     * Retrieves the name cache for a connection, creating it if necessary. Caches of connections that have been
+     * closed without being released are discarded when a new cache is created.
+     * @param conn The JDBC connection
+     * @return The name cache for the connection
+     * @throws SQLException If SQL error
+     */
+    @NotNull
+    static NameCache forConnection(@NotNull Connection conn) throws SQLException {
+        synchronized (caches) {
+            NameCache cache = caches.get(conn);
+            if (cache == null) {
+                Iterator<Map.Entry<Connection, NameCache>> it = caches.entrySet().iterator();
+                while (it.hasNext()) {
+                    if (it.next().getKey().isClosed()) {
+                        it.remove();
+                    }
+                }
+                cache = new NameCache();
+                caches.put(conn, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Discards the name cache for a connection
+     * @param conn The JDBC connection
+     */
+    static void release(@NotNull Connection conn) {
+        synchronized (caches) {
+            caches.remove(conn);
+        }
+    }
+
+    /**
+     * Folds the ASCII letters of a string to lower case, matching SQLite's <code>nocase</code> collation
+     * @param s The string to fold
+     * @return The folded string
+     */
+    static @NotNull String fold(@NotNull String s) {
+        int i = 0;
+        int len = s.length();
+        while (i < len) {
+            char c = s.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                break;
+            }
+            ++i;
+        }
+        if (i == len) {
+            return s;
+        }
+        char[] chars = s.toCharArray();
+        for (; i < len; ++i) {
+            char c = chars[i];
+            if (c >= 'A' && c <= 'Z') {
+                chars[i] = (char) (c + ('a' - 'A'));
+            }
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Builds the cache identifier for a parsed location name
+     * @param context The location context
+     * @param baseLocation The base location
+     * @param subLocation The sub-location
+     * @return The cache identifier
+     */
+    static @NotNull String locationId(@NotNull String context, @NotNull String baseLocation, @NotNull String subLocation) {
+        return fold(context) + SEPARATOR + fold(baseLocation) + SEPARATOR + fold(subLocation);
+    }
+
+    /**
+     * Builds the cache identifier for a parsed parameter name
+     * @param baseParameter The base parameter
+     * @param subParameter The sub-parameter
+     * @return The cache identifier
+     */
+    static @NotNull String parameterId(@NotNull String baseParameter, @NotNull String subParameter) {
+        return fold(baseParameter) + SEPARATOR + fold(subParameter);
+    }
+
+    /**
+     * Builds the cache identifier for a time series specification
+     * @param locationKey The location key
+     * @param parameterKey The parameter key
+     * @param parameterType The parameter type (case sensitive)
+     * @param intervalName The case-correct interval name
+     * @param durationName The duration name (case insensitive)
+     * @param version The version (case insensitive)
+     * @return The cache identifier
+     */
+    static @NotNull String timeSeriesId(
+            long locationKey,
+            long parameterKey,
+            @NotNull String parameterType,
+            @NotNull String intervalName,
+            @NotNull String durationName,
+            @NotNull String version) {
+        return String.valueOf(locationKey) + SEPARATOR + parameterKey + SEPARATOR + parameterType + SEPARATOR
+                + intervalName + SEPARATOR + fold(durationName) + SEPARATOR + fold(version);
+    }
+
+    /**
+     * @param id The location identifier from {@link #locationId(String, String, String)}
+     * @return The cached location key, or null if not cached
+     */
+    @Nullable Long getLocationKey(@NotNull String id) {
+        return locations.get(id);
+    }
+
+    /**
+     * @param id The location identifier from {@link #locationId(String, String, String)}
+     * @param key The location key
+     */
+    void putLocationKey(@NotNull String id, long key) {
+        if (key > 0) {
+            locations.put(id, key);
+        }
+    }
+
+    /**
+     * @param name The case-insensitive base parameter name
+     * @return The cached case-correct base parameter name, or null if not cached
+     */
+    @Nullable String getBaseParameter(@NotNull String name) {
+        return baseParameters.get(fold(name));
+    }
+
+    /**
+     * @param name The case-correct base parameter name
+     */
+    void putBaseParameter(@NotNull String name) {
+        baseParameters.put(fold(name), name);
+    }
+
+    /**
+     * @param id The parameter identifier from {@link #parameterId(String, String)}
+     * @return The cached parameter key, or null if not cached
+     */
+    @Nullable Long getParameterKey(@NotNull String id) {
+        return parameters.get(id);
+    }
+
+    /**
+     * @param id The parameter identifier from {@link #parameterId(String, String)}
+     * @param key The parameter key
+     */
+    void putParameterKey(@NotNull String id, long key) {
+        if (key > 0) {
+            parameters.put(id, key);
+        }
+    }
+
+    /**
+     * @param id The time series identifier from {@link #timeSeriesId(long, long, String, String, String, String)}
+     * @return The cached time series specification key, or null if not cached
+     */
+    @Nullable Long getTimeSeriesKey(@NotNull String id) {
+        return timeSeries.get(id);
+    }
+
+    /**
+     * @param id The time series identifier from {@link #timeSeriesId(long, long, String, String, String, String)}
+     * @param key The time series specification key
+     */
+    void putTimeSeriesKey(@NotNull String id, long key) {
+        if (key > 0) {
+            timeSeries.put(id, key);
+        }
+    }
+
+    /**
+     * Loads every location, base parameter, parameter and non-deleted time series specification key from the database
+     * and marks the cache complete until {@link #endBulkLoad()} is called
+     * @param conn The JDBC connection
+     * @throws SQLException If SQL error
+     */
+    void beginBulkLoad(@NotNull Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            try (ResultSet rs = st.executeQuery("""
+                    select l.key,
+                           bl.context,
+                           bl.name,
+                           coalesce(l.sub_location, '') as sub_location
+                      from location l
+                           join base_location bl on bl.key = l.base_location""")) {
+                while (rs.next()) {
+                    putLocationKey(
+                            locationId(rs.getString("context"), rs.getString("name"), rs.getString("sub_location")),
+                            rs.getLong("key"));
+                }
+            }
+            try (ResultSet rs = st.executeQuery("select name from base_parameter")) {
+                while (rs.next()) {
+                    putBaseParameter(rs.getString("name"));
+                }
+            }
+            try (ResultSet rs = st.executeQuery("select key, base_parameter, coalesce(sub_parameter, '') as sub_parameter from parameter")) {
+                while (rs.next()) {
+                    putParameterKey(
+                            parameterId(rs.getString("base_parameter"), rs.getString("sub_parameter")),
+                            rs.getLong("key"));
+                }
+            }
+            try (ResultSet rs = st.executeQuery("""
+                    select key,
+                           location,
+                           parameter,
+                           parameter_type,
+                           interval,
+                           duration,
+                           coalesce(version, '') as version
+                      from time_series
+                     where deleted = 0""")) {
+                while (rs.next()) {
+                    putTimeSeriesKey(
+                            timeSeriesId(
+                                    rs.getLong("location"),
+                                    rs.getLong("parameter"),
+                                    rs.getString("parameter_type"),
+                                    rs.getString("interval"),
+                                    rs.getString("duration"),
+                                    rs.getString("version")),
+                            rs.getLong("key"));
+                }
+            }
+        }
+        complete = true;
+    }
+
+    /**
+     * Discards every cached key after a rollback, since keys inserted by the rolled-back statements no longer exist.
+     * During a bulk load the cache is reloaded from the database so that it stays complete.
+     * @param conn The JDBC connection
+     * @throws SQLException If SQL error
+     */
+    void clear(@NotNull Connection conn) throws SQLException {
+        locations.clear();
+        baseParameters.clear();
+        parameters.clear();
+        timeSeries.clear();
+        newTimeSeries.clear();
+        if (complete) {
+            beginBulkLoad(conn);
+        }
+    }
+
+    /**
+     * Marks the cache incomplete again at the end of a bulk load. The cached keys are kept.
+     */
+    void endBulkLoad() {
+        complete = false;
+        newTimeSeries.clear();
+    }
+
+    /**
+     * @return Whether the cache holds every key in the database, so that a name that is not cached does not exist
+     */
+    boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Records a time series specification inserted during a bulk load
+     * @param key The time series specification key
+     */
+    void addNewTimeSeries(long key) {
+        if (complete && key > 0) {
+            newTimeSeries.add(key);
+        }
+    }
+
+    /**
+     * Determines whether a time series specification was inserted during a bulk load and has no stored values,
+     * forgetting it so that later stores merge with the values stored now
+     * @param key The time series specification key
+     * @return Whether the time series was new
+     */
+    boolean removeNewTimeSeries(long key) {
+        return newTimeSeries.remove(key);
+    }
+}
@@ -39,26 +39,22 @@ public class Parameter {
                 baseParameter = parts[0];
                 subParameter = parts[1];
             }
+            String id = NameCache.parameterId(baseParameter, subParameter);
             baseParameter = getBaseParameter(baseParameter, conn);
-            try (PreparedStatement ps = conn.prepareStatement(
-                    "insert into parameter (base_parameter, sub_parameter) values (?, ?)"
-            )) {
-                ps.setString(1, baseParameter);
-                ps.setString(2, subParameter);
-                ps.executeUpdate();
-            }
-            try (PreparedStatement ps = conn.prepareStatement(
-                    Constants.SQL_SELECT_LAST_INSERT_ROWID
-            )) {
-                try (ResultSet rs = ps.executeQuery()) {
-                    rs.next();
-                    key = rs.getLong(Constants.LAST_INSERT_ROWID);
-                    nullKey = rs.wasNull();
-                }
+            PreparedStatement ps = StatementCache.prepare(conn, "insert into parameter (base_parameter, sub_parameter) values (?, ?)");
+            ps.setString(1, baseParameter);
+            ps.setString(2, subParameter);
+            ps.executeUpdate();
+            ps = StatementCache.prepare(conn, Constants.SQL_SELECT_LAST_INSERT_ROWID);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                key = rs.getLong(Constants.LAST_INSERT_ROWID);
+                nullKey = rs.wasNull();
             }
             if (nullKey) {
                 key = -1;
             }
+            NameCache.forConnection(conn).putParameterKey(id, key);
         }
         return key;
     }
@@ -72,18 +68,24 @@ public class Parameter {
      * @throws SqlDssException If there is no match for the case-insensitive base parameter name
      */
     static @NotNull String getBaseParameter(String name, Connection conn) throws SQLException, SqlDssException {
-        try (PreparedStatement ps = conn.prepareStatement(
-                "select name from base_parameter where name = ?"
-        )) {
-            ps.setString(1, name);
-            try (ResultSet rs = ps.executeQuery()) {
-                rs.next();
-                String actualName = rs.getString("name");
-                if (actualName == null || actualName.isEmpty()) {
-                    throw new SqlDssException("No such base parameter: " + name);
-                }
-                return actualName;
+        NameCache cache = NameCache.forConnection(conn);
+        String cachedName = cache.getBaseParameter(name);
+        if (cachedName != null) {
+            return cachedName;
+        }
+        if (cache.isComplete()) {
+            throw new SqlDssException("No such base parameter: " + name);
+        }
+        PreparedStatement ps = StatementCache.prepare(conn, "select name from base_parameter where name = ?");
+        ps.setString(1, name);
+        try (ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            String actualName = rs.getString("name");
+            if (actualName == null || actualName.isEmpty()) {
+                throw new SqlDssException("No such base parameter: " + name);
             }
+            cache.putBaseParameter(actualName);
+            return actualName;
         }
     }
 
@@ -105,21 +107,28 @@ public class Parameter {
             baseParameter = parts[0];
             subParameter = parts[1];
         }
+        NameCache cache = NameCache.forConnection(conn);
+        String id = NameCache.parameterId(baseParameter, subParameter);
+        Long cachedKey = cache.getParameterKey(id);
+        if (cachedKey != null) {
+            return cachedKey;
+        }
         baseParameter = getBaseParameter(baseParameter, conn);
-        try (PreparedStatement ps = conn.prepareStatement(
-                "select key from parameter where base_parameter = ? and sub_parameter = ?"
-        )) {
-            ps.setString(1, baseParameter);
-            ps.setString(2, subParameter);
-            try (ResultSet rs = ps.executeQuery()) {
-                rs.next();
-                key = rs.getLong("key");
-                nullKey = rs.wasNull();
-            }
+        if (cache.isComplete()) {
+            return -1;
+        }
+        PreparedStatement ps = StatementCache.prepare(conn, "select key from parameter where base_parameter = ? and sub_parameter = ?");
+        ps.setString(1, baseParameter);
+        ps.setString(2, subParameter);
+        try (ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            key = rs.getLong("key");
+            nullKey = rs.wasNull();
         }
         if (nullKey) {
             key = -1;
         }
+        cache.putParameterKey(id, key);
         return key;
     }
 
@@ -0,0 +1,439 @@
+package mil.army.usace.hec.sqldss.core;
+
+import hec.io.TimeSeriesContainer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static hec.lang.Const.UNDEFINED_DOUBLE;
+import static mil.army.usace.hec.sqldss.core.Constants.*;
+
+/**
+ * Utility class for multi-resolution rollups of regular time series.
+ *
+ * A rollup keeps the minimum, maximum, sum, and count of the valid values (those neither missing nor rejected) of a
+ * time series for each interval of a coarser resolution, so that zoomed-out views of long time series can be retrieved
+ * without reading the source blocks. Rollups are created for a time series and resolution by
+ * {@link #createRollup(String, String, SqlDss)} and are kept in the TSV_ROLLUP table as one blob per source block,
+ * which is rewritten whenever the source block is stored. Each rollup value summarizes the source values after the
+ * previous rollup time up to and including its own time. A rollup interval that spans two source blocks has partial
+ * values in the rollups of both blocks, which are combined when the rollup is retrieved. Rollups of deleted source
+ * blocks are ignored.
+ */
+public final class Rollup {
+
+    /**
+     * Prevent class instantiation
+     */
+    private Rollup() {
+        throw new AssertionError("Cannot instantiate");
+    }
+
+    /**
+     * Creates a rollup of a regular time series at a resolution and populates it from the existing blocks of the time
+     * series. Has no effect other than repopulating the rollup if it already exists.
+     * @param name The time series name
+     * @param resolution The interval name of the rollup, which must be coarser than the interval of the time series
+     * @param sqldss The SQLDSS object
+     * @throws SqlDssException If the time series is irregular or does not exist, if the resolution is not a regular
+     * interval coarser than the time series interval, or if an existing block cannot be decoded
+     * @throws SQLException If SQL error
+     * @throws EncodedDateTimeException If thrown by EncodedDateTime method
+     */
+    public static void createRollup(@NotNull String name, @NotNull String resolution, @NotNull SqlDss sqldss)
+            throws SqlDssException, SQLException, EncodedDateTimeException {
+        if (TimeSeries.isIrregular(name)) {
+            throw new SqlDssException("Cannot create rollups of irregular time series");
+        }
+        Connection conn = sqldss.getConnection();
+        int intervalMinutes = Interval.getIntervalMinutes(name.split("\\|", -1)[3]);
+        String resolutionName = Interval.getInterval(resolution);
+        int resolutionMinutes = Interval.getIntervalMinutes(resolutionName);
+        if (resolutionMinutes <= intervalMinutes) {
+            throw new SqlDssException(String.format(
+                    "Rollup resolution %s is not coarser than the interval of %s",
+                    resolutionName,
+                    name));
+        }
+        long key = TimeSeries.getTimeSeriesSpecKey(name, conn);
+        if (key < 0) {
+            throw new SqlDssException("No such time series: " + name);
+        }
+        boolean isAutoCommit = conn.getAutoCommit();
+        if (isAutoCommit) {
+            conn.setAutoCommit(false);
+        }
+        try {
+            PreparedStatement ps = StatementCache.prepare(
+                    conn,
+                    "insert into tsv_rollup_spec (time_series, resolution) values (?, ?) on conflict do nothing");
+            ps.setLong(1, key);
+            ps.setString(2, resolutionName);
+            ps.executeUpdate();
+            try (PreparedStatement psSelect = conn.prepareStatement(
+                    "select block_start_date, data from tsv where time_series = ? and data is not null")) {
+                psSelect.setLong(1, key);
+                PreparedStatement psUpsert = StatementCache.prepare(conn, SQL_UPSERT_TS_ROLLUP);
+                try (ResultSet rs = psSelect.executeQuery()) {
+                    while (rs.next()) {
+                        BlockCache.Block block = TimeSeries.decodeBlock(rs.getBytes("data"));
+                        if (block.valueCount == 0) {
+                            continue;
+                        }
+                        psUpsert.setLong(1, key);
+                        psUpsert.setString(2, resolutionName);
+                        psUpsert.setLong(3, rs.getLong("block_start_date"));
+                        psUpsert.setBytes(4, encodeRollup(
+                                block.firstTime,
+                                block.values,
+                                block.qualities,
+                                0,
+                                block.valueCount,
+                                intervalMinutes,
+                                resolutionMinutes));
+                        psUpsert.addBatch();
+                    }
+                    psUpsert.executeBatch();
+                }
+                finally {
+                    psUpsert.clearBatch();
+                }
+            }
+            if (isAutoCommit) {
+                conn.commit();
+            }
+        }
+        catch (SQLException | SqlDssException | EncodedDateTimeException e) {
+            if (isAutoCommit) {
+                conn.rollback();
+            }
+            throw e;
+        }
+        finally {
+            if (isAutoCommit) {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Removes a rollup of a time series. Has no effect if the rollup doesn't exist.
+     * @param name The time series name
+     * @param resolution The interval name of the rollup
+     * @param sqldss The SQLDSS object
+     * @throws SqlDssException If the time series name or resolution is invalid
+     * @throws SQLException If SQL error
+     */
+    public static void dropRollup(@NotNull String name, @NotNull String resolution, @NotNull SqlDss sqldss)
+            throws SqlDssException, SQLException {
+        Connection conn = sqldss.getConnection();
+        String resolutionName = Interval.getInterval(resolution);
+        long key = TimeSeries.getTimeSeriesSpecKey(name, conn);
+        if (key < 0) {
+            return;
+        }
+        boolean isAutoCommit = conn.getAutoCommit();
+        if (isAutoCommit) {
+            conn.setAutoCommit(false);
+        }
+        try {
+            for (String sql : new String[]{
+                    "delete from tsv_rollup where time_series = ? and resolution = ?",
+                    "delete from tsv_rollup_spec where time_series = ? and resolution = ?"}) {
+                PreparedStatement ps = StatementCache.prepare(conn, sql);
+                ps.setLong(1, key);
+                ps.setString(2, resolutionName);
+                ps.executeUpdate();
+            }
+            if (isAutoCommit) {
+                conn.commit();
+            }
+        }
+        catch (SQLException e) {
+            if (isAutoCommit) {
+                conn.rollback();
+            }
+            throw e;
+        }
+        finally {
+            if (isAutoCommit) {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the resolutions of the rollups of a time series
+     * @param name The time series name
+     * @param sqldss The SQLDSS object
+     * @return The interval names of the rollups, from finest to coarsest. Empty if the time series has no rollups or
+     * doesn't exist
+     * @throws SqlDssException If the time series name is invalid
+     * @throws SQLException If SQL error
+     */
+    @NotNull
+    public static List<String> getRollupResolutions(@NotNull String name, @NotNull SqlDss sqldss)
+            throws SqlDssException, SQLException {
+        Connection conn = sqldss.getConnection();
+        long key = TimeSeries.getTimeSeriesSpecKey(name, conn);
+        return key < 0 ? new ArrayList<>() : getRollupResolutions(key, conn);
+    }
+
+    /**
+     * Retrieves the resolutions of the rollups of a time series
+     * @param key The time series specification key
+     * @param conn The JDBC connection
+     * @return The interval names of the rollups, from finest to coarsest
+     * @throws SqlDssException If a stored resolution is not a known interval
+     * @throws SQLException If SQL error
+     */
+    @NotNull
+    static List<String> getRollupResolutions(long key, @NotNull Connection conn) throws SqlDssException, SQLException {
+        List<String> resolutions = new ArrayList<>();
+        PreparedStatement ps = StatementCache.prepare(
+                conn,
+                "select resolution from tsv_rollup_spec where time_series = ?");
+        ps.setLong(1, key);
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                resolutions.add(rs.getString("resolution"));
+            }
+        }
+        if (resolutions.size() > 1) {
+            int[] minutes = new int[resolutions.size()];
+            for (int i = 0; i < minutes.length; ++i) {
+                minutes[i] = Interval.getIntervalMinutes(resolutions.get(i));
+            }
+            Integer[] order = new Integer[minutes.length];
+            for (int i = 0; i < order.length; ++i) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Integer.compare(minutes[a], minutes[b]));
+            List<String> sorted = new ArrayList<>();
+            for (int i : order) {
+                sorted.add(resolutions.get(i));
+            }
+            resolutions = sorted;
+        }
+        return resolutions;
+    }
+
+    /**
+     * Selects the rollup to serve a retrieval at a requested resolution
+     * @param name The time series name
+     * @param resolution The interval name of the requested resolution
+     * @param conn The JDBC connection
+     * @return The interval name of the coarsest rollup of the time series that is not coarser than the requested
+     * resolution, or null if there is none
+     * @throws SqlDssException If the time series name or resolution is invalid
+     * @throws SQLException If SQL error
+     */
+    static @Nullable String selectResolution(@NotNull String name, @NotNull String resolution, @NotNull Connection conn)
+            throws SqlDssException, SQLException {
+        long key = TimeSeries.getTimeSeriesSpecKey(name, conn);
+        if (key < 0) {
+            return null;
+        }
+        int maxMinutes = Interval.getIntervalMinutes(resolution);
+        String selected = null;
+        for (String rollupResolution : getRollupResolutions(key, conn)) {
+            if (Interval.getIntervalMinutes(rollupResolution) <= maxMinutes) {
+                selected = rollupResolution;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Retrieves a rollup of a regular time series for a time window
+     * @param name The time series name
+     * @param startTime The start of the time window
+     * @param endTime The end of the time window
+     * @param resolution The interval name of the rollup
+     * @param unit The unit to retrieve the values in. If null, the storage unit is used
+     * @param sqldss The SQLDSS object
+     * @return The rollup for each rollup interval time in the time window
+     * @throws SqlDssException If the time series is irregular, does not exist, or is deleted, if the time series has no
+     * rollup at the resolution, or if thrown while converting units
+     * @throws SQLException If SQL error
+     * @throws EncodedDateTimeException If thrown by EncodedDateTime method
+     */
+    @NotNull
+    public static TimeSeries.TimeSeriesRollup retrieveRollup(
+            @NotNull String name,
+            long startTime,
+            long endTime,
+            @NotNull String resolution,
+            String unit,
+            @NotNull SqlDss sqldss) throws SqlDssException, SQLException, EncodedDateTimeException {
+        if (TimeSeries.isIrregular(name)) {
+            throw new SqlDssException("Irregular time series do not have rollups");
+        }
+        Connection conn = sqldss.getConnection();
+        String resolutionName = Interval.getInterval(resolution);
+        int resolutionMinutes = Interval.getIntervalMinutes(resolutionName);
+        TimeSeries.RegularRetrieval retrieval = TimeSeries.newRegularRetrieval(name);
+        String[] spec = TimeSeries.getRegularTimeSeriesSpec(retrieval, conn);
+        if (!getRollupResolutions(retrieval.key, conn).contains(resolutionName)) {
+            throw new SqlDssException(String.format("No %s rollup for time series %s", resolutionName, name));
+        }
+        String storageUnit = retrieval.tsc.units;
+        TimeSeries.setRegularRetrievalWindow(retrieval, retrieval.key, resolutionName, "PT0S", startTime, endTime);
+        int count = retrieval.count;
+        double[] minValues = new double[count];
+        double[] maxValues = new double[count];
+        double[] sums = new double[count];
+        int[] counts = new int[count];
+        Arrays.fill(minValues, Double.MAX_VALUE);
+        Arrays.fill(maxValues, -Double.MAX_VALUE);
+        if (count > 0) {
+            //---------------------------------------------------------------------//
+            // combine the rollups of every source block with values in the window //
+            //---------------------------------------------------------------------//
+            long lastTime = EncodedDateTime.incrementEncodedDateTime(retrieval.firstTime, resolutionMinutes, count - 1);
+            long earliestSourceTime = EncodedDateTime.incrementEncodedDateTime(
+                    retrieval.firstTime,
+                    resolutionMinutes,
+                    -1);
+            PreparedStatement ps = StatementCache.prepare(conn, SQL_SELECT_TS_ROLLUPS);
+            ps.setLong(1, retrieval.key);
+            ps.setString(2, resolutionName);
+            ps.setLong(3, TimeSeries.getBlockStartDate(earliestSourceTime, spec[0]));
+            ps.setLong(4, TimeSeries.getBlockStartDate(lastTime, spec[0]));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ByteBuffer buf = ByteBuffer.wrap(rs.getBytes("data"));
+                    buf.order(ByteOrder.LITTLE_ENDIAN);
+                    int bucketCount = buf.getInt();
+                    long firstBucketTime = buf.getLong();
+                    int first = firstBucketTime < retrieval.firstTime
+                            ? -EncodedDateTime.intervalsBetween(firstBucketTime, retrieval.firstTime, resolutionMinutes)
+                            : EncodedDateTime.intervalsBetween(retrieval.firstTime, firstBucketTime, resolutionMinutes);
+                    int minPosition = buf.position();
+                    int maxPosition = minPosition + bucketCount * Double.BYTES;
+                    int sumPosition = maxPosition + bucketCount * Double.BYTES;
+                    int countPosition = sumPosition + bucketCount * Double.BYTES;
+                    for (int j = 0; j < bucketCount; ++j) {
+                        int i = first + j;
+                        if (i < 0 || i >= count) {
+                            continue;
+                        }
+                        int bucketValueCount = buf.getInt(countPosition + j * Integer.BYTES);
+                        if (bucketValueCount == 0) {
+                            continue;
+                        }
+                        minValues[i] = Math.min(minValues[i], buf.getDouble(minPosition + j * Double.BYTES));
+                        maxValues[i] = Math.max(maxValues[i], buf.getDouble(maxPosition + j * Double.BYTES));
+                        sums[i] += buf.getDouble(sumPosition + j * Double.BYTES);
+                        counts[i] += bucketValueCount;
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < count; ++i) {
+            if (counts[i] == 0) {
+                retrieval.values[i] = minValues[i] = maxValues[i] = UNDEFINED_DOUBLE;
+            }
+            else {
+                retrieval.values[i] = sums[i] / counts[i];
+            }
+        }
+        retrieval.filled = count;
+        String[] parts = name.split("\\|", -1);
+        parts[3] = resolutionName;
+        retrieval.tsc.setFullName(String.join("|", parts));
+        TimeSeriesContainer tsc = TimeSeries.finishRegularRetrieval(retrieval, startTime, endTime, unit, conn);
+        if (unit != null && !unit.equals(storageUnit)) {
+            UnitConversion conversion = UnitConversion.forUnits(storageUnit, unit, conn);
+            conversion.convert(minValues, null, count, false);
+            conversion.convert(maxValues, null, count, false);
+            for (int i = 0; i < count; ++i) {
+                if (minValues[i] > maxValues[i]) {
+                    double value = minValues[i];
+                    minValues[i] = maxValues[i];
+                    maxValues[i] = value;
+                }
+            }
+        }
+        TimeSeries.TimeSeriesRollup rollup = new TimeSeries.TimeSeriesRollup();
+        rollup.resolution = resolutionName;
+        rollup.means = tsc;
+        rollup.minValues = minValues;
+        rollup.maxValues = maxValues;
+        rollup.counts = counts;
+        return rollup;
+    }
+
+    /**
+     * Encodes the rollup of regular time series values at a resolution
+     * @param firstTime The encoded time of the first value
+     * @param values The values
+     * @param qualities The quality codes, if any
+     * @param offset The index of the first value to roll up
+     * @param count The number of values to roll up
+     * @param intervalMinutes The interval minutes of the values
+     * @param resolutionMinutes The interval minutes of the rollup
+     * @return The rollup blob
+     * @throws EncodedDateTimeException If thrown by EncodedDateTime method
+     */
+    static byte @NotNull [] encodeRollup(
+            long firstTime,
+            double @NotNull [] values,
+            int[] qualities,
+            int offset,
+            int count,
+            int intervalMinutes,
+            int resolutionMinutes) throws EncodedDateTimeException {
+        long[] times = EncodedDateTime.makeRegularEncodedDateTimeArray(firstTime, count, intervalMinutes);
+        long firstBucketTime = EncodedDateTime.encodeDateTime(
+                TimeSeries.getFirstIntervalTime(times[0], resolutionMinutes, 0));
+        long lastBucketTime = EncodedDateTime.encodeDateTime(
+                TimeSeries.getFirstIntervalTime(times[count - 1], resolutionMinutes, 0));
+        int bucketCount = EncodedDateTime.intervalsBetween(firstBucketTime, lastBucketTime, resolutionMinutes) + 1;
+        double[] minValues = new double[bucketCount];
+        double[] maxValues = new double[bucketCount];
+        double[] sums = new double[bucketCount];
+        int[] counts = new int[bucketCount];
+        Arrays.fill(minValues, Double.MAX_VALUE);
+        Arrays.fill(maxValues, -Double.MAX_VALUE);
+        long bucketTime = firstBucketTime;
+        int bucket = 0;
+        for (int i = 0; i < count; ++i) {
+            while (times[i] > bucketTime) {
+                bucketTime = EncodedDateTime.incrementEncodedDateTime(bucketTime, resolutionMinutes, 1);
+                ++bucket;
+            }
+            double value = values[offset + i];
+            if (!TimeSeries.isValidValue(value, qualities, offset + i)) {
+                continue;
+            }
+            minValues[bucket] = Math.min(minValues[bucket], value);
+            maxValues[bucket] = Math.max(maxValues[bucket], value);
+            sums[bucket] += value;
+            ++counts[bucket];
+        }
+        ByteBuffer buf = ByteBuffer.allocate(
+                Integer.BYTES + Long.BYTES + bucketCount * (3 * Double.BYTES + Integer.BYTES));
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(bucketCount);
+        buf.putLong(firstBucketTime);
+        for (double[] array : new double[][]{minValues, maxValues, sums}) {
+            for (double value : array) {
+                buf.putDouble(value);
+            }
+        }
+        for (int bucketValueCount : counts) {
+            buf.putInt(bucketValueCount);
+        }
+        return buf.array();
+    }
+}
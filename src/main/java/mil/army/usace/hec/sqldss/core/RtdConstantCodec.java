@@ -0,0 +1,79 @@
+package mil.army.usace.hec.sqldss.core;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static mil.army.usace.hec.sqldss.core.Constants.RECORD_TYPE;
+import static mil.army.usace.hec.sqldss.core.Constants.RECORD_TYPE.RTD;
+
+/**
+ * Codec for RTD version 3 block bodies, which hold blocks of a single repeated value and quality code, such as blocks
+ * of all missing values or of a flat-lined series: the value followed by the quality code
+ */
+final class RtdConstantCodec implements BlockCodec {
+
+    /**
+     * The RTD version of constant blocks
+     */
+    static final int VERSION = 3;
+
+    @Override
+    public @NotNull RECORD_TYPE getRecordType() {
+        return RTD;
+    }
+
+    @Override
+    public int getVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public boolean canEncode(double @NotNull [] values, int[] qualities, int offset, int count) {
+        if (count == 0) {
+            return false;
+        }
+        long bits = Double.doubleToRawLongBits(values[offset]);
+        int quality = qualities == null ? 0 : qualities[offset];
+        for (int i = offset + 1; i < offset + count; ++i) {
+            if (Double.doubleToRawLongBits(values[i]) != bits) {
+                return false;
+            }
+            if (qualities != null && qualities[i] != quality) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int getMaxEncodedSize(int count, boolean hasQuality) {
+        return Double.BYTES + (hasQuality ? Integer.BYTES : 0);
+    }
+
+    @Override
+    public void encode(double @NotNull [] values, int[] qualities, int offset, int count, @NotNull ByteBuffer out) {
+        out.putDouble(values[offset]);
+        if (qualities != null) {
+            out.putInt(qualities[offset]);
+        }
+    }
+
+    @Override
+    public void decode(
+            @NotNull ByteBuffer in,
+            int valueCount,
+            boolean hasQuality,
+            int skip,
+            double @NotNull [] values,
+            int[] qualities,
+            int index,
+            int count) {
+        int bodyStart = in.position();
+        Arrays.fill(values, index, index + count, in.getDouble(bodyStart));
+        if (hasQuality && qualities != null) {
+            Arrays.fill(qualities, index, index + count, in.getInt(bodyStart + Double.BYTES));
+        }
+    }
+}
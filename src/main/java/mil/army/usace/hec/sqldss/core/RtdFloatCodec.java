@@ -0,0 +1,103 @@
+package mil.army.usace.hec.sqldss.core;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
+import static hec.lang.Const.UNDEFINED_DOUBLE;
+import static mil.army.usace.hec.sqldss.core.Constants.RECORD_TYPE;
+import static mil.army.usace.hec.sqldss.core.Constants.RECORD_TYPE.RTD;
+
+/**
+ * Codec for RTD version 4 block bodies, which hold blocks whose values are all exactly representable as 32-bit floats,
+ * such as values that were originally 32-bit floats widened to doubles: the 4-byte values followed by the run-length
+ * encoded quality codes (see {@link XorEncoding}).
+ *
+ * The missing value {@link hec.lang.Const#UNDEFINED_DOUBLE} is not exactly representable as a float, so it is stored as
+ * a reserved NaN bit pattern. Blocks containing a NaN with that bit pattern are not encoded with this codec.
+ */
+final class RtdFloatCodec implements BlockCodec {
+
+    /**
+     * The RTD version of float blocks
+     */
+    static final int VERSION = 4;
+
+    /**
+     * The bits of the float that stores {@link hec.lang.Const#UNDEFINED_DOUBLE}
+     */
+    static final int UNDEFINED_FLOAT_BITS = 0x7fa0_0000;
+
+    /**
+     * The bits of {@link hec.lang.Const#UNDEFINED_DOUBLE}
+     */
+    private static final long UNDEFINED_DOUBLE_BITS = Double.doubleToRawLongBits(UNDEFINED_DOUBLE);
+
+    @Override
+    public @NotNull RECORD_TYPE getRecordType() {
+        return RTD;
+    }
+
+    @Override
+    public int getVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public boolean canEncode(double @NotNull [] values, int[] qualities, int offset, int count) {
+        for (int i = offset; i < offset + count; ++i) {
+            long bits = Double.doubleToRawLongBits(values[i]);
+            if (bits == UNDEFINED_DOUBLE_BITS) {
+                continue;
+            }
+            float f = (float) values[i];
+            if (Double.doubleToRawLongBits(f) != bits || Float.floatToRawIntBits(f) == UNDEFINED_FLOAT_BITS) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int getMaxEncodedSize(int count, boolean hasQuality) {
+        int size = count * Float.BYTES;
+        if (hasQuality) {
+            size += Integer.BYTES + count * 2 * Integer.BYTES;
+        }
+        return size;
+    }
+
+    @Override
+    public void encode(double @NotNull [] values, int[] qualities, int offset, int count, @NotNull ByteBuffer out) {
+        for (int i = offset; i < offset + count; ++i) {
+            out.putInt(Double.doubleToRawLongBits(values[i]) == UNDEFINED_DOUBLE_BITS
+                    ? UNDEFINED_FLOAT_BITS
+                    : Float.floatToRawIntBits((float) values[i]));
+        }
+        if (qualities != null) {
+            out.put(XorEncoding.encodeQualities(qualities, offset, count));
+        }
+    }
+
+    @Override
+    public void decode(
+            @NotNull ByteBuffer in,
+            int valueCount,
+            boolean hasQuality,
+            int skip,
+            double @NotNull [] values,
+            int[] qualities,
+            int index,
+            int count) {
+        int bodyStart = in.position();
+        int position = bodyStart + skip * Float.BYTES;
+        for (int i = index; i < index + count; ++i, position += Float.BYTES) {
+            int bits = in.getInt(position);
+            values[i] = bits == UNDEFINED_FLOAT_BITS ? UNDEFINED_DOUBLE : Float.intBitsToFloat(bits);
+        }
+        if (hasQuality && qualities != null) {
+            in.position(bodyStart + valueCount * Float.BYTES);
+            XorEncoding.decodeQualities(in, skip, qualities, index, count);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package mil.army.usace.hec.sqldss.core;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
+import static mil.army.usace.hec.sqldss.core.Constants.RECORD_TYPE;
+import static mil.army.usace.hec.sqldss.core.Constants.RECORD_TYPE.RTD;
+
+/**
+ * Codec for RTD version 1 block bodies: the raw 8-byte values followed by the raw 4-byte quality codes
+ */
+final class RtdRawCodec implements BlockCodec {
+
+    @Override
+    public @NotNull RECORD_TYPE getRecordType() {
+        return RTD;
+    }
+
+    @Override
+    public int getVersion() {
+        return 1;
+    }
+
+    @Override
+    public int getMaxEncodedSize(int count, boolean hasQuality) {
+        return count * Double.BYTES + (hasQuality ? count * Integer.BYTES : 0);
+    }
+
+    @Override
+    public void encode(double @NotNull [] values, int[] qualities, int offset, int count, @NotNull ByteBuffer out) {
+        int bodyStart = out.position();
+        out.asDoubleBuffer().put(values, offset, count);
+        out.position(bodyStart + count * Double.BYTES);
+        if (qualities != null) {
+            out.asIntBuffer().put(qualities, offset, count);
+            out.position(out.position() + count * Integer.BYTES);
+        }
+    }
+
+    @Override
+    public void decode(
+            @NotNull ByteBuffer in,
+            int valueCount,
+            boolean hasQuality,
+            int skip,
+            double @NotNull [] values,
+            int[] qualities,
+            int index,
+            int count) {
+        int bodyStart = in.position();
+        in.position(bodyStart + skip * Double.BYTES);
+        in.asDoubleBuffer().get(values, index, count);
+        if (hasQuality && qualities != null) {
+            in.position(bodyStart + valueCount * Double.BYTES + skip * Integer.BYTES);
+            in.asIntBuffer().get(qualities, index, count);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package mil.army.usace.hec.sqldss.core;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
+import static mil.army.usace.hec.sqldss.core.Constants.RECORD_TYPE;
+import static mil.army.usace.hec.sqldss.core.Constants.RECORD_TYPE.RTD;
+
+/**
+ * Codec for RTD version 2 block bodies: the byte length of the XOR-compressed values, the compressed values, and the
+ * run-length encoded quality codes (see {@link XorEncoding})
+ */
+final class RtdXorCodec implements BlockCodec {
+
+    @Override
+    public @NotNull RECORD_TYPE getRecordType() {
+        return RTD;
+    }
+
+    @Override
+    public int getVersion() {
+        return 2;
+    }
+
+    @Override
+    public int getMaxEncodedSize(int count, boolean hasQuality) {
+        // worst case of 2 control bits, 11 bits of window and 64 meaningful bits per value
+        int size = Integer.BYTES + (count * 77 + 7) / 8 + 1;
+        if (hasQuality) {
+            size += Integer.BYTES + count * 2 * Integer.BYTES;
+        }
+        return size;
+    }
+
+    @Override
+    public void encode(double @NotNull [] values, int[] qualities, int offset, int count, @NotNull ByteBuffer out) {
+        byte[] valueBytes = XorEncoding.encodeValues(values, offset, count);
+        out.putInt(valueBytes.length);
+        out.put(valueBytes);
+        if (qualities != null) {
+            out.put(XorEncoding.encodeQualities(qualities, offset, count));
+        }
+    }
+
+    @Override
+    public void decode(
+            @NotNull ByteBuffer in,
+            int valueCount,
+            boolean hasQuality,
+            int skip,
+            double @NotNull [] values,
+            int[] qualities,
+            int index,
+            int count) {
+        int bodyStart = in.position();
+        int valueBytes = in.getInt(bodyStart);
+        XorEncoding.decodeValues(in.array(), in.arrayOffset() + bodyStart + Integer.BYTES, skip, values, index, count);
+        if (hasQuality && qualities != null) {
+            in.position(bodyStart + Integer.BYTES + valueBytes);
+            XorEncoding.decodeQualities(in, skip, qualities, index, count);
+        }
+    }
+}
@@ -9,9 +9,12 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.*;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import static mil.army.usace.hec.sqldss.core.Constants.DOWNSAMPLE_METHOD;
 import static mil.army.usace.hec.sqldss.core.Constants.UNIT_SYSTEM.EN;
 
 /**
@@ -53,6 +56,10 @@ public class SqlDss implements AutoCloseable {
      * The JDBC connection
      */
     private Connection conn = null;
+    /**
+     * The prepared statement cache for the connection
+     */
+    private StatementCache statementCache = null;
     /**
      * The name of the SQLDSS file
      */
@@ -89,6 +96,19 @@ public class SqlDss implements AutoCloseable {
      * The specified per-parameter retrieval units
      */
     private final Map<String, String> retrieveUnits = new HashMap<>();
+    /**
+     * Whether a bulk load is in progress
+     */
+    private boolean bulkLoading = false;
+    /**
+     * The connection settings to restore at the end of a bulk load
+     */
+    private final Map<String, String> savedPragmas = new HashMap<>();
+    /**
+     * The minimum number of blocks in a retrieval time window for the blocks to be decoded in parallel, or zero to
+     * always decode on the calling thread
+     */
+    private int parallelDecodeThreshold = 0;
 
 
     /**
@@ -214,6 +234,7 @@ public class SqlDss implements AutoCloseable {
      * <ul>
      *     <li>only one of <code>startTime</code> and <code>endTime</code> is not null</li>
      *     <li>if <code>fileName</code> doesn't exist when <code>mustExist</code> is <code>true</code></li>
+     *     <li>the block information of an existing file cannot be upgraded</li>
      * </ul>
      * @throws IOException If thrown by {@link Init#initializeDb(Connection)}
      * @throws EncodedDateTimeException If thrown by {@link EncodedDateTime#encodeDateTime(String)}
@@ -238,12 +259,18 @@ public class SqlDss implements AutoCloseable {
             throw new SqlDssException(String.format("File %s does not exist", fileName));
         }
         conn = DriverManager.getConnection("jdbc:sqlite:"+this.fileName);
+        statementCache = StatementCache.register(conn);
         try (Statement st = conn.createStatement()) {
             st.execute("pragma page_size = 8192");
             st.execute("pragma foreign_keys = ON");
             if (!exists) {
                 Init.initializeDb(conn);
             }
+            else {
+                TimeSeries.upgradeTsvInfo(conn);
+                Init.createTsvRollupTables(conn);
+                Init.createNameIndexes(conn);
+            }
             BaseParameter.load(conn);
         }
     }
@@ -314,6 +341,24 @@ public class SqlDss implements AutoCloseable {
         return trimMissing;
     }
 
+    /**
+     * Sets the minimum number of blocks in the time window of a regular time series retrieval for the blocks to be
+     * decoded in parallel on the common fork-join pool. The blocks are still read from the file on the calling thread.
+     * Retrievals that fill the block cache are always decoded on the calling thread.
+     * @param blocks The minimum number of blocks. Zero (the default) disables parallel decoding.
+     */
+    public void setParallelDecodeThreshold(int blocks) {
+        parallelDecodeThreshold = Math.max(blocks, 0);
+    }
+
+    /**
+     * @return The minimum number of blocks in a retrieval time window for the blocks to be decoded in parallel, or zero
+     * if parallel decoding is disabled
+     */
+    public int getParallelDecodeThreshold() {
+        return parallelDecodeThreshold;
+    }
+
     /**
      * Sets the default store rule (merge algorithm) for regular time series
      * @param rule The default regular time series store rule
@@ -415,6 +460,94 @@ public class SqlDss implements AutoCloseable {
         return autoCommit;
     }
 
+    /**
+     * Begins a bulk load, for the initial population of a new file or other large stores. Until
+     * {@link #endBulkLoad()} or {@link #close()} is called:
+     * <ul>
+     *     <li>the rollback journal is kept in memory and the file is not synced to disk, so a crash or power loss may
+     *     corrupt the file</li>
+     *     <li>foreign keys are not enforced</li>
+     *     <li>the page cache is enlarged</li>
+     *     <li>the unique indexes on the LOCATION and TIME_SERIES tables are dropped. If the bulk load doesn't end,
+     *     they are recreated the next time the file is opened.</li>
+     *     <li>every name key is held in memory, so name resolution needs no SQL, and time series created during the
+     *     bulk load are stored without reading existing values</li>
+     *     <li>auto-commit is off, and the bulk load is committed when it ends</li>
+     * </ul>
+     * @throws SqlDssException If a bulk load is already in progress
+     * @throws SQLException If SQL error
+     */
+    public void beginBulkLoad() throws SqlDssException, SQLException {
+        if (bulkLoading) {
+            throw new SqlDssException("Bulk load is already in progress");
+        }
+        if (!conn.getAutoCommit()) {
+            conn.commit();
+            conn.setAutoCommit(true);
+        }
+        try (Statement st = conn.createStatement()) {
+            savedPragmas.clear();
+            for (String pragma : new String[]{"journal_mode", "synchronous", "cache_size", "foreign_keys"}) {
+                try (ResultSet rs = st.executeQuery("pragma " + pragma)) {
+                    rs.next();
+                    savedPragmas.put(pragma, rs.getString(1));
+                }
+            }
+            st.execute("pragma journal_mode = MEMORY");
+            st.execute("pragma synchronous = OFF");
+            st.execute("pragma foreign_keys = OFF");
+            st.execute("pragma cache_size = -262144");
+            st.execute("drop index if exists idx_time_series");
+            st.execute("drop index if exists idx_location");
+        }
+        NameCache.forConnection(conn).beginBulkLoad(conn);
+        conn.setAutoCommit(false);
+        bulkLoading = true;
+    }
+
+    /**
+     * Ends a bulk load begun with {@link #beginBulkLoad()}: commits, rebuilds the dropped indexes, restores the
+     * connection settings and auto-commit state, and verifies referential integrity
+     * @throws SqlDssException If no bulk load is in progress, or if the loaded data has foreign key violations
+     * @throws SQLException If SQL error, including duplicate names found when rebuilding the unique indexes
+     */
+    public void endBulkLoad() throws SqlDssException, SQLException {
+        if (!bulkLoading) {
+            throw new SqlDssException("No bulk load is in progress");
+        }
+        bulkLoading = false;
+        NameCache.forConnection(conn).endBulkLoad();
+        conn.commit();
+        conn.setAutoCommit(true);
+        try (Statement st = conn.createStatement()) {
+            try {
+                st.execute(Init.SQL_CREATE_LOCATION_INDEX);
+                st.execute(Init.SQL_CREATE_TIME_SERIES_INDEX);
+            }
+            finally {
+                st.execute("pragma foreign_keys = " + savedPragmas.get("foreign_keys"));
+                st.execute("pragma synchronous = " + savedPragmas.get("synchronous"));
+                st.execute("pragma cache_size = " + savedPragmas.get("cache_size"));
+                st.execute("pragma journal_mode = " + savedPragmas.get("journal_mode"));
+                conn.setAutoCommit(autoCommit);
+            }
+            try (ResultSet rs = st.executeQuery("pragma foreign_key_check")) {
+                if (rs.next()) {
+                    throw new SqlDssException(String.format(
+                            "Foreign key violation in table %s after bulk load",
+                            rs.getString("table")));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Whether a bulk load is in progress
+     */
+    public boolean isBulkLoading() {
+        return bulkLoading;
+    }
+
     /**
      * Sets the default unit system for data retrieval
      * @param unitSystem The default unit system
@@ -505,7 +638,153 @@ public class SqlDss implements AutoCloseable {
     }
 
     /**
-     * Closes the database connection
+     * @return The number of times a prepared statement was found in the statement cache for this file, or 0 if the
+     * file is closed
+     */
+    public long getStatementCacheHits() {
+        return statementCache == null ? 0 : statementCache.getHits();
+    }
+
+    /**
+     * @return The number of times a prepared statement had to be compiled because it was not in the statement cache
+     * for this file, or 0 if the file is closed
+     */
+    public long getStatementCacheMisses() {
+        return statementCache == null ? 0 : statementCache.getMisses();
+    }
+
+    /**
+     * Sets the maximum memory used to cache decoded regular time series blocks for this file. Retrievals whose blocks
+     * are all cached are satisfied without reading or decoding any blocks from the file. Blocks written, deleted, or
+     * undeleted through this object are removed from the cache, but changes made to the file by other connections or
+     * processes are not seen until the cached blocks are evicted, so the cache should only be enabled when this object
+     * is the only writer. The cache is disabled by default.
+     * @param bytes The maximum number of bytes of cached blocks. Zero disables the cache and discards all cached blocks.
+     * @throws SQLException If SQL error
+     */
+    public void setBlockCacheBytes(long bytes) throws SQLException {
+        BlockCache.forConnection(conn).setCapacityBytes(bytes);
+    }
+
+    /**
+     * @return The maximum number of bytes of cached blocks for this file, or zero if the block cache is disabled
+     * @throws SQLException If SQL error
+     */
+    public long getBlockCacheBytes() throws SQLException {
+        return BlockCache.forConnection(conn).getCapacityBytes();
+    }
+
+    /**
+     * @return The number of times a block was found in the block cache for this file
+     * @throws SQLException If SQL error
+     */
+    public long getBlockCacheHits() throws SQLException {
+        return BlockCache.forConnection(conn).getHits();
+    }
+
+    /**
+     * @return The number of times a block was not found in the block cache for this file
+     * @throws SQLException If SQL error
+     */
+    public long getBlockCacheMisses() throws SQLException {
+        return BlockCache.forConnection(conn).getMisses();
+    }
+
+    /**
+     * Sets the version of regular time series blocks written to this file. The setting is stored in the file. Blocks
+     * already in the file are not rewritten, and blocks of every version are always readable.
+     * @param version 1 for raw 8-byte values and 4-byte quality codes, or 2 for XOR-compressed values and run-length
+     *                encoded quality codes, which are much smaller for most time series but cannot be read by software
+     *                that only knows version 1. New files use version 1 so that such software can read them. Unless the
+     *                version is 1, blocks of a single repeated value and quality code are written as version 3, which
+     *                stores the value only once, and blocks of values that are all exactly representable as 32-bit
+     *                floats are written as version 4, which stores them in 4 bytes each, if that is smaller. Blocks are
+     *                not compressed while the version is 1, whatever the compression level.
+     * @throws SqlDssException If the version is not supported
+     * @throws SQLException If SQL error
+     */
+    public void setRtdVersion(int version) throws SqlDssException, SQLException {
+        BlockFormat.forConnection(conn).setRtdVersion(version, conn);
+    }
+
+    /**
+     * @return The version of regular time series blocks written to this file
+     * @throws SQLException If SQL error
+     */
+    public int getRtdVersion() throws SQLException {
+        return BlockFormat.forConnection(conn).getRtdVersion();
+    }
+
+    /**
+     * Counts the regular time series blocks of this file by how they are stored, including how many are stored as
+     * constant blocks, as 32-bit floats, and deflated
+     * @return The statistics
+     * @throws SQLException If SQL error
+     */
+    public TimeSeries.BlockStorageStatistics getBlockStorageStatistics() throws SQLException {
+        return TimeSeries.getBlockStorageStatistics(conn);
+    }
+
+    /**
+     * Sets the deflate level at which regular time series blocks written to this file are compressed. The setting is
+     * stored in the file. Blocks already in the file are not rewritten, and compressed and uncompressed blocks are
+     * always readable.
+     * @param level The deflate level from 1 (fastest) to 9 (smallest), or 0 to not compress blocks. Compressed blocks
+     *              cannot be read by software that predates block compression, so blocks are never compressed while
+     *              the RTD block version is 1.
+     * @throws SqlDssException If the level is invalid, or greater than 0 while the RTD block version is 1
+     * @throws SQLException If SQL error
+     */
+    public void setBlockCompressionLevel(int level) throws SqlDssException, SQLException {
+        BlockFormat.forConnection(conn).setCompressionLevel(level, null, conn);
+    }
+
+    /**
+     * Sets the deflate level at which regular time series blocks of an interval written to this file are compressed,
+     * overriding the level set by {@link #setBlockCompressionLevel(int)}. The setting is stored in the file.
+     * @param level The deflate level from 1 (fastest) to 9 (smallest), or 0 to not compress blocks
+     * @param intervalName The interval name
+     * @throws SqlDssException If the level or interval is invalid, or the level is greater than 0 while the RTD block
+     *                         version is 1
+     * @throws SQLException If SQL error
+     */
+    public void setBlockCompressionLevel(int level, @NotNull String intervalName) throws SqlDssException, SQLException {
+        BlockFormat.forConnection(conn).setCompressionLevel(level, intervalName, conn);
+    }
+
+    /**
+     * @param intervalName The interval name
+     * @return The deflate level at which regular time series blocks of the interval written to this file are
+     * compressed, or 0 if they are not compressed
+     * @throws SQLException If SQL error
+     */
+    public int getBlockCompressionLevel(@NotNull String intervalName) throws SQLException {
+        return BlockFormat.forConnection(conn).getCompressionLevel(intervalName);
+    }
+
+    /**
+     * Sets the maximum ratio of compressed to uncompressed size for a regular time series block to be stored
+     * compressed. Blocks that don't compress this well are stored uncompressed. The setting is stored in the file.
+     * @param ratio The ratio, greater than 0 and no more than 1. The default is 0.8.
+     * @throws SqlDssException If the ratio is invalid
+     * @throws SQLException If SQL error
+     */
+    public void setBlockCompressionRatio(double ratio) throws SqlDssException, SQLException {
+        BlockFormat.forConnection(conn).setCompressionRatio(ratio, conn);
+    }
+
+    /**
+     * @return The maximum ratio of compressed to uncompressed size for a regular time series block to be stored
+     * compressed
+     * @throws SQLException If SQL error
+     */
+    public double getBlockCompressionRatio() throws SQLException {
+        return BlockFormat.forConnection(conn).getCompressionRatio();
+    }
+
+    /**
+     * Closes the database connection, first ending any bulk load, discarding any cached name keys, blocks and unit
+     * conversions, and closing any cached prepared statements
      * @throws SqlDssException If already closed
      * @throws SQLException If SQL error
      */
@@ -516,10 +795,27 @@ public class SqlDss implements AutoCloseable {
         }
         else {
             try {
-                conn.close();
+                try {
+                    if (bulkLoading) {
+                        endBulkLoad();
+                    }
+                }
+                finally {
+                    NameCache.release(conn);
+                    BlockCache.release(conn);
+                    BlockFormat.release(conn);
+                    UnitConversion.release(conn);
+                    StatementCache.release(conn);
+                    statementCache = null;
+                }
             }
             finally {
-                conn = null;
+                try {
+                    conn.close();
+                }
+                finally {
+                    conn = null;
+                }
             }
         }
     }
@@ -554,6 +850,255 @@ public class SqlDss implements AutoCloseable {
                 this);
     }
 
+    /**
+     * Retrieve a time series from the database, from a rollup if one is available at or finer than a requested
+     * resolution
+     * @param name The SQLDSS time series name
+     * @param startTime The start of the time window. If null, the start of the default time window is used
+     * @param endTime The end of the time window. If null, the end of the default time window is used
+     * @param unit The unit to retrieve the values in. If null, the effective retrieval unit for the parameter is used
+     * @param trimMissing Whether to blocks of trim consecutive missing values from the start and end of the retrieved data.
+     *                    If null, the value of {@link #getTrimMissing()} is used
+     * @param resolution The interval name of the coarsest resolution needed (e.g., <code>1Day</code> for a plot of many
+     *                   years). If the time series has a rollup at this resolution or finer, the means of the coarsest
+     *                   such rollup are retrieved instead of the values. If null, the values are always retrieved
+     * @return The time series
+     * @throws SqlDssException If thrown by {@link TimeSeries#retrieveTimeSeriesValues(String, long, long, boolean, String, String, SqlDss)}
+     * @throws SQLException If thrown by {@link TimeSeries#retrieveTimeSeriesValues(String, long, long, boolean, String, String, SqlDss)}
+     * @throws EncodedDateTimeException If thrown by {@link TimeSeries#retrieveTimeSeriesValues(String, long, long, boolean, String, String, SqlDss)}
+     * @throws IOException If thrown by {@link TimeSeries#retrieveTimeSeriesValues(String, long, long, boolean, String, String, SqlDss)}
+     */
+    public TimeSeriesContainer retrieveTimeSeries(
+            @NotNull String name,
+            Long startTime,
+            Long endTime,
+            String unit,
+            Boolean trimMissing,
+            String resolution) throws SqlDssException, SQLException, EncodedDateTimeException, IOException {
+
+        return TimeSeries.retrieveTimeSeriesValues(
+                name,
+                startTime == null ? getStartTime() : startTime,
+                endTime == null ? getEndTime() : endTime,
+                trimMissing == null ? getTrimMissing() : trimMissing,
+                unit == null ? getEffectiveRetrieveUnit(name.split("\\|", -1)[1]) : unit,
+                resolution,
+                this);
+    }
+
+    /**
+     * Retrieve a regular time series from the database, downsampled to at most a target number of values for display.
+     * The values are downsampled while the blocks are read, so the full-resolution values are never retrieved.
+     * @param name The SQLDSS time series name
+     * @param startTime The start of the time window. If null, the start of the default time window is used
+     * @param endTime The end of the time window. If null, the end of the default time window is used
+     * @param unit The unit to retrieve the values in. If null, the effective retrieval unit for the parameter is used
+     * @param targetCount The maximum number of values to retrieve (e.g., the pixel width of a plot)
+     * @param method The downsampling method
+     * @return The time series. If the time window has more interval times than <code>targetCount</code> the time series
+     * is irregular, otherwise it is the full-resolution time series
+     * @throws SqlDssException If thrown by {@link TimeSeries#retrieveDownsampledTimeSeriesValues(String, long, long, String, int, DOWNSAMPLE_METHOD, SqlDss)}
+     * @throws SQLException If thrown by {@link TimeSeries#retrieveDownsampledTimeSeriesValues(String, long, long, String, int, DOWNSAMPLE_METHOD, SqlDss)}
+     * @throws EncodedDateTimeException If thrown by {@link TimeSeries#retrieveDownsampledTimeSeriesValues(String, long, long, String, int, DOWNSAMPLE_METHOD, SqlDss)}
+     */
+    public TimeSeriesContainer retrieveTimeSeries(
+            @NotNull String name,
+            Long startTime,
+            Long endTime,
+            String unit,
+            int targetCount,
+            @NotNull DOWNSAMPLE_METHOD method) throws SqlDssException, SQLException, EncodedDateTimeException {
+
+        return TimeSeries.retrieveDownsampledTimeSeriesValues(
+                name,
+                startTime == null ? getStartTime() : startTime,
+                endTime == null ? getEndTime() : endTime,
+                unit == null ? getEffectiveRetrieveUnit(name.split("\\|", -1)[1]) : unit,
+                targetCount,
+                method,
+                this);
+    }
+
+    /**
+     * Retrieve multiple time series from the database for a common time window. This is much faster than retrieving
+     * each time series separately since keys, specifications and values are queried for many time series at once.
+     * @param names The SQLDSS time series names
+     * @param startTime The start of the time window. If null, the start of the default time window is used
+     * @param endTime The end of the time window. If null, the end of the default time window is used
+     * @param unit The unit to retrieve the values of every time series in. If null, the effective retrieval unit for
+     *             the parameter of each time series is used
+     * @param trimMissing Whether to blocks of trim consecutive missing values from the start and end of the retrieved data.
+     *                    If null, the value of {@link #getTrimMissing()} is used
+     * @return The time series, keyed by name in the iteration order of <code>names</code>
+     * @throws SqlDssException If thrown by {@link TimeSeries#retrieveTimeSeriesValues(Collection, long, long, boolean, String, SqlDss)}
+     * @throws SQLException If thrown by {@link TimeSeries#retrieveTimeSeriesValues(Collection, long, long, boolean, String, SqlDss)}
+     * @throws EncodedDateTimeException If thrown by {@link TimeSeries#retrieveTimeSeriesValues(Collection, long, long, boolean, String, SqlDss)}
+     */
+    public Map<String, TimeSeriesContainer> retrieveTimeSeries(
+            @NotNull Collection<String> names,
+            Long startTime,
+            Long endTime,
+            String unit,
+            Boolean trimMissing) throws SqlDssException, SQLException, EncodedDateTimeException {
+
+        return TimeSeries.retrieveTimeSeriesValues(
+                names,
+                startTime == null ? getStartTime() : startTime,
+                endTime == null ? getEndTime() : endTime,
+                trimMissing == null ? getTrimMissing() : trimMissing,
+                unit,
+                this);
+    }
+
+    /**
+     * Open a cursor that reads a regular time series from the database one block at a time, for time series too long
+     * to retrieve into a single TimeSeriesContainer
+     * @param name The SQLDSS time series name
+     * @param startTime The start of the time window. If null, the start of the default time window is used
+     * @param endTime The end of the time window. If null, the end of the default time window is used
+     * @param unit The unit to retrieve the values in. If null, the effective retrieval unit for the parameter is used
+     * @return The cursor, which must be closed by the caller
+     * @throws SqlDssException If thrown by {@link TimeSeries#openTimeSeriesCursor(String, long, long, String, SqlDss)}
+     * @throws SQLException If thrown by {@link TimeSeries#openTimeSeriesCursor(String, long, long, String, SqlDss)}
+     * @throws EncodedDateTimeException If thrown by {@link TimeSeries#openTimeSeriesCursor(String, long, long, String, SqlDss)}
+     */
+    public TimeSeriesCursor openTimeSeriesCursor(
+            @NotNull String name,
+            Long startTime,
+            Long endTime,
+            String unit) throws SqlDssException, SQLException, EncodedDateTimeException {
+
+        return TimeSeries.openTimeSeriesCursor(
+                name,
+                startTime == null ? getStartTime() : startTime,
+                endTime == null ? getEndTime() : endTime,
+                unit == null ? getEffectiveRetrieveUnit(name.split("\\|", -1)[1]) : unit,
+                this);
+    }
+
+    /**
+     * Compute the counts, minimum, maximum, mean, variance, and availability of a regular time series over a time
+     * window, mostly from stored block information instead of the values themselves
+     * @param name The SQLDSS time series name
+     * @param startTime The start of the time window. If null, the start of the default time window is used
+     * @param endTime The end of the time window. If null, the end of the default time window is used
+     * @param unit The unit to return the minimum and maximum in. If null, the effective retrieval unit for the
+     *             parameter is used
+     * @return The statistics
+     * @throws SqlDssException If thrown by {@link TimeSeries#getTimeSeriesStatistics(String, long, long, String, SqlDss)}
+     * @throws SQLException If thrown by {@link TimeSeries#getTimeSeriesStatistics(String, long, long, String, SqlDss)}
+     * @throws EncodedDateTimeException If thrown by {@link TimeSeries#getTimeSeriesStatistics(String, long, long, String, SqlDss)}
+     */
+    public TimeSeries.TimeSeriesStatistics getTimeSeriesStatistics(
+            @NotNull String name,
+            Long startTime,
+            Long endTime,
+            String unit) throws SqlDssException, SQLException, EncodedDateTimeException {
+
+        return TimeSeries.getTimeSeriesStatistics(
+                name,
+                startTime == null ? getStartTime() : startTime,
+                endTime == null ? getEndTime() : endTime,
+                unit == null ? getEffectiveRetrieveUnit(name.split("\\|", -1)[1]) : unit,
+                this);
+    }
+
+    /**
+     * Retrieve the first and last value times of a time series without reading any of its values
+     * @param name The SQLDSS time series name
+     * @return The first and last value times, both null if the time series has no data
+     * @throws SqlDssException If thrown by {@link TimeSeries#getTimeSeriesExtents(String, Long[], Connection)}
+     * @throws SQLException If thrown by {@link TimeSeries#getTimeSeriesExtents(String, Long[], Connection)}
+     */
+    public Long[] getTimeSeriesExtents(@NotNull String name) throws SqlDssException, SQLException {
+
+        Long[] extents = new Long[2];
+        TimeSeries.getTimeSeriesExtents(name, extents, conn);
+        return extents;
+    }
+
+    /**
+     * Retrieve the first and last value times of multiple time series without reading any of their values. This is
+     * much faster than retrieving the extents of each time series separately.
+     * @param names The SQLDSS time series names
+     * @return The first and last value times of each time series, keyed by name in the iteration order of
+     * <code>names</code>. Both times are null for time series that have no data
+     * @throws SqlDssException If thrown by {@link TimeSeries#getTimeSeriesExtents(Collection, Connection)}
+     * @throws SQLException If thrown by {@link TimeSeries#getTimeSeriesExtents(Collection, Connection)}
+     */
+    public Map<String, Long[]> getTimeSeriesExtents(@NotNull Collection<String> names)
+            throws SqlDssException, SQLException {
+
+        return TimeSeries.getTimeSeriesExtents(names, conn);
+    }
+
+    /**
+     * Create a rollup of a regular time series at a coarser resolution. The rollup is populated from the existing
+     * values and kept up to date as values are stored.
+     * @param name The SQLDSS time series name
+     * @param resolution The interval name of the rollup
+     * @throws SqlDssException If thrown by {@link Rollup#createRollup(String, String, SqlDss)}
+     * @throws SQLException If thrown by {@link Rollup#createRollup(String, String, SqlDss)}
+     * @throws EncodedDateTimeException If thrown by {@link Rollup#createRollup(String, String, SqlDss)}
+     */
+    public void createRollup(@NotNull String name, @NotNull String resolution)
+            throws SqlDssException, SQLException, EncodedDateTimeException {
+
+        Rollup.createRollup(name, resolution, this);
+    }
+
+    /**
+     * Remove a rollup of a time series
+     * @param name The SQLDSS time series name
+     * @param resolution The interval name of the rollup
+     * @throws SqlDssException If thrown by {@link Rollup#dropRollup(String, String, SqlDss)}
+     * @throws SQLException If thrown by {@link Rollup#dropRollup(String, String, SqlDss)}
+     */
+    public void dropRollup(@NotNull String name, @NotNull String resolution) throws SqlDssException, SQLException {
+
+        Rollup.dropRollup(name, resolution, this);
+    }
+
+    /**
+     * Retrieve the resolutions of the rollups of a time series
+     * @param name The SQLDSS time series name
+     * @return The interval names of the rollups, from finest to coarsest
+     * @throws SqlDssException If thrown by {@link Rollup#getRollupResolutions(String, SqlDss)}
+     * @throws SQLException If thrown by {@link Rollup#getRollupResolutions(String, SqlDss)}
+     */
+    public List<String> getRollupResolutions(@NotNull String name) throws SqlDssException, SQLException {
+
+        return Rollup.getRollupResolutions(name, this);
+    }
+
+    /**
+     * Retrieve the minimum, mean, maximum, and count of the values of a time series for each interval of a rollup
+     * @param name The SQLDSS time series name
+     * @param startTime The start of the time window. If null, the start of the default time window is used
+     * @param endTime The end of the time window. If null, the end of the default time window is used
+     * @param resolution The interval name of the rollup
+     * @param unit The unit to retrieve the values in. If null, the effective retrieval unit for the parameter is used
+     * @return The rollup
+     * @throws SqlDssException If thrown by {@link Rollup#retrieveRollup(String, long, long, String, String, SqlDss)}
+     * @throws SQLException If thrown by {@link Rollup#retrieveRollup(String, long, long, String, String, SqlDss)}
+     * @throws EncodedDateTimeException If thrown by {@link Rollup#retrieveRollup(String, long, long, String, String, SqlDss)}
+     */
+    public TimeSeries.TimeSeriesRollup retrieveRollup(
+            @NotNull String name,
+            Long startTime,
+            Long endTime,
+            @NotNull String resolution,
+            String unit) throws SqlDssException, SQLException, EncodedDateTimeException {
+
+        return Rollup.retrieveRollup(
+                name,
+                startTime == null ? getStartTime() : startTime,
+                endTime == null ? getEndTime() : endTime,
+                resolution,
+                unit == null ? getEffectiveRetrieveUnit(name.split("\\|", -1)[1]) : unit,
+                this);
+    }
+
     /**
      * Retrieve all values for a time series from the database
      * @param name The SQLDSS time series name
@@ -592,6 +1137,20 @@ public class SqlDss implements AutoCloseable {
         TimeSeries.storeTimeSeriesValues(tsc, storeRule, this);
     }
 
+    /**
+     * Store multiple time series to the database in a single transaction, using batched statements
+     * @param tscs The time series to store
+     * @param storeRule The store rule to use
+     * @return The time series that could not be stored, keyed by name, with the exception that prevented storing each.
+     * Every time series not in the map was stored successfully.
+     * @throws SQLException If thrown by {@link TimeSeries#storeTimeSeriesValues(Collection, String, SqlDss)}
+     */
+    public Map<String, Exception> storeTimeSeries(Collection<TimeSeriesContainer> tscs, String storeRule)
+            throws SQLException {
+
+        return TimeSeries.storeTimeSeriesValues(tscs, storeRule, this);
+    }
+
     /**
      * Generates a catalog of time series in the database that have values
      * @param nameRegex A regular expression of the time series names to match. May be null to match every name
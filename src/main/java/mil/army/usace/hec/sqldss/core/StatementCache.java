@@ -0,0 +1,210 @@
+package mil.army.usace.hec.sqldss.core;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-connection cache of prepared statements, keyed by SQL text.
+ *
+ * Each {@link SqlDss} creates the cache for its connection when it opens the file and holds it until it is closed.
+ * The caches are also registered by connection so that the static data access methods, which are passed only the
+ * connection, can find them.
+ *
+ * Statements obtained from {@link #prepare(Connection, String)} are owned by the cache and <b>must not</b> be closed
+ * by the caller. Callers must close any <code>ResultSet</code> obtained from a cached statement before the same SQL
+ * text is executed again. The statements for a connection are closed by {@link #release(Connection)}, which
+ * {@link SqlDss#close()} calls before closing the connection.
+ *
+ * Every SQL text prepared through the cache is fixed by the code of this package, so the number of statements is
+ * bounded and the cache does not normally evict. If it ever does, the evicted statement is not closed until the cache
+ * is released, since a caller may still be iterating its <code>ResultSet</code> during a nested call.
+ */
+final class StatementCache {
+
+    /**
+     * The maximum number of statements cached for each connection
+     */
+    static final int CAPACITY = 128;
+
+    /**
+     * The caches for each connection
+     */
+    private static final Map<Connection, StatementCache> caches = new IdentityHashMap<>();
+
+    /**
+     * The cached statements, in least-recently-used order
+     */
+    private final LinkedHashMap<String, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The statements evicted from the cache, which are closed when the cache is cleared
+     */
+    private final List<PreparedStatement> evicted = new ArrayList<>();
+
+    /**
+     * The JDBC connection the statements are prepared on
+     */
+    private final Connection conn;
+
+    /**
+     * The number of times a statement was found in the cache
+     */
+    private long hits = 0;
+
+    /**
+     * The number of times a statement had to be prepared
+     */
+    private long misses = 0;
+
+    /**
+     * Constructor
+     * @param conn The JDBC connection
+     */
+    private StatementCache(Connection conn) {
+        this.conn = conn;
+    }
+
+    /**
+     * Creates and registers the statement cache for a newly opened connection. Caches of connections that have been
+     * closed without being released are discarded.
+     * @param conn The JDBC connection
+     * @return The statement cache for the connection
+     * @throws SQLException If SQL error
+     */
+    @NotNull
+    static StatementCache register(@NotNull Connection conn) throws SQLException {
+        synchronized (caches) {
+            Iterator<Map.Entry<Connection, StatementCache>> it = caches.entrySet().iterator();
+            while (it.hasNext()) {
+                if (it.next().getKey().isClosed()) {
+                    it.remove();
+                }
+            }
+            StatementCache cache = new StatementCache(conn);
+            caches.put(conn, cache);
+            return cache;
+        }
+    }
+
+    /**
+     * Retrieves the statement cache for a connection. A cache is registered for a connection that was not opened by
+     * {@link SqlDss}.
+     * @param conn The JDBC connection
+     * @return The statement cache for the connection
+     * @throws SQLException If the connection is closed or SQL error
+     */
+    @NotNull
+    static StatementCache forConnection(@NotNull Connection conn) throws SQLException {
+        StatementCache cache;
+        synchronized (caches) {
+            cache = caches.get(conn);
+        }
+        if (cache == null) {
+            if (conn.isClosed()) {
+                throw new SQLException("Connection is closed");
+            }
+            cache = register(conn);
+        }
+        return cache;
+    }
+
+    /**
+     * Retrieves a cached prepared statement for a connection and SQL text, preparing it if necessary. The returned
+     * statement must not be closed by the caller.
+     * @param conn The JDBC connection
+     * @param sql The SQL text
+     * @return The prepared statement
+     * @throws SQLException If SQL error
+     */
+    @NotNull
+    static PreparedStatement prepare(@NotNull Connection conn, @NotNull String sql) throws SQLException {
+        return forConnection(conn).get(sql);
+    }
+
+    /**
+     * Closes and removes all cached statements for a connection
+     * @param conn The JDBC connection
+     * @throws SQLException If thrown while closing a statement
+     */
+    static void release(@NotNull Connection conn) throws SQLException {
+        StatementCache cache;
+        synchronized (caches) {
+            cache = caches.remove(conn);
+        }
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Retrieves a cached prepared statement, preparing it if necessary and evicting the least-recently-used statement
+     * if the cache is full. Evicted statements are closed when the cache is cleared.
+     * @param sql The SQL text
+     * @return The prepared statement
+     * @throws SQLException If SQL error
+     */
+    @NotNull
+    synchronized PreparedStatement get(@NotNull String sql) throws SQLException {
+        PreparedStatement ps = statements.get(sql);
+        if (ps != null) {
+            ++hits;
+            return ps;
+        }
+        ++misses;
+        ps = conn.prepareStatement(sql);
+        statements.put(sql, ps);
+        if (statements.size() > CAPACITY) {
+            Iterator<PreparedStatement> it = statements.values().iterator();
+            evicted.add(it.next());
+            it.remove();
+        }
+        return ps;
+    }
+
+    /**
+     * Closes and removes all cached and evicted statements
+     * @throws SQLException If thrown while closing a statement
+     */
+    synchronized void clear() throws SQLException {
+        SQLException ex = null;
+        evicted.addAll(statements.values());
+        for (PreparedStatement ps : evicted) {
+            try {
+                ps.close();
+            }
+            catch (SQLException e) {
+                if (ex == null) {
+                    ex = e;
+                }
+            }
+        }
+        statements.clear();
+        evicted.clear();
+        if (ex != null) {
+            throw ex;
+        }
+    }
+
+    /**
+     * @return The number of times a statement was found in the cache
+     */
+    synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return The number of times a statement had to be prepared
+     */
+    synchronized long getMisses() {
+        return misses;
+    }
+}
@@ -3,6 +3,7 @@ package mil.army.usace.hec.sqldss.core;
 import com.google.common.flogger.FluentLogger;
 import hec.heclib.util.HecTime;
 import hec.io.TimeSeriesContainer;
+import mil.army.usace.hec.sqldss.core.init.Init;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -13,10 +14,25 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Types;
 import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
 
 import static hec.lang.Const.UNDEFINED_DOUBLE;
 import static mil.army.usace.hec.sqldss.core.Constants.*;
@@ -41,6 +57,30 @@ public final class TimeSeries {
      */
     static FluentLogger logger = FluentLogger.forEnclosingClass();
 
+    /**
+     * The number of time series keys bound to each <code>in (...)</code> list when retrieving multiple time series
+     */
+    static final int KEY_BATCH_SIZE = 256;
+
+    /**
+     * The flag in the header flags byte of a block that has quality codes
+     */
+    static final int BLOCK_FLAG_QUALITY = 0x01;
+
+    /**
+     * The flag in the header flags byte of a block whose body is deflated
+     */
+    static final int BLOCK_FLAG_DEFLATED = 0x02;
+
+    /**
+     * The size of the header of an RTD block
+     */
+    static final int RTD_HEADER_SIZE = Byte.BYTES   // data type
+            + Byte.BYTES                            // data type version
+            + Integer.BYTES                         // value count
+            + Byte.BYTES                            // flags
+            + Long.BYTES;                           // date/time of first value
+
     /**
      * Class to hold BLOB header information from time series records
      */
@@ -53,6 +93,10 @@ public final class TimeSeries {
          * The version of the record type
          */
         int version;
+        /**
+         * The codec for the record type and version
+         */
+        BlockCodec codec;
         /**
          * The number of values in the block
          */
@@ -61,6 +105,10 @@ public final class TimeSeries {
          * Whether quality codes are stored in the block
          */
         boolean hasQuality;
+        /**
+         * Whether the block body is deflated
+         */
+        boolean isDeflated;
         /**
          * The time of the first value in the block
          */
@@ -94,13 +142,140 @@ public final class TimeSeries {
         /**
          * The maximum non-missing value in the block
          */
-        double maxValue = Double.MIN_VALUE;
+        double maxValue = -Double.MAX_VALUE;
+        /**
+         * The number of values in the block that are not missing or rejected
+         */
+        int validCount;
+        /**
+         * The sum of the values in the block that are not missing or rejected
+         */
+        double sum;
+        /**
+         * The sum of the squares of the values in the block that are not missing or rejected
+         */
+        double sumOfSquares;
         /**
          * The time the block was lasts updated
          */
         long lastUpdate;
     }
 
+    /**
+     * Class to hold summary statistics of a time series over a time window
+     */
+    public static class TimeSeriesStatistics {
+        /**
+         * The unit of the minimum and maximum values
+         */
+        public String unit = null;
+        /**
+         * The number of stored values in the time window, including missing values
+         */
+        public long count = 0;
+        /**
+         * The minimum non-missing value in the time window, or UNDEFINED_DOUBLE if none
+         */
+        public double minValue = UNDEFINED_DOUBLE;
+        /**
+         * The maximum non-missing value in the time window, or UNDEFINED_DOUBLE if none
+         */
+        public double maxValue = UNDEFINED_DOUBLE;
+        /**
+         * The number of values in the time window that are not missing or rejected
+         */
+        public long validCount = 0;
+        /**
+         * The number of regular interval times in the time window
+         */
+        public long expectedCount = 0;
+        /**
+         * The percentage of regular interval times in the time window that have values that are not missing or
+         * rejected
+         */
+        public double availability = 0;
+        /**
+         * The mean of the values in the time window that are not missing or rejected, or UNDEFINED_DOUBLE if none or
+         * if the unit conversion is not linear
+         */
+        public double mean = UNDEFINED_DOUBLE;
+        /**
+         * The population variance of the values in the time window that are not missing or rejected, or
+         * UNDEFINED_DOUBLE if none or if the unit conversion is not linear
+         */
+        public double variance = UNDEFINED_DOUBLE;
+        /**
+         * The number of blocks summarized from their block information without being decoded
+         */
+        public int summarizedBlocks = 0;
+        /**
+         * The number of blocks that had to be decoded because they are only partly in the time window or have no block
+         * information
+         */
+        public int decodedBlocks = 0;
+    }
+
+    /**
+     * Class to hold statistics of how the regular time series blocks of a file are stored
+     */
+    public static class BlockStorageStatistics {
+        /**
+         * The number of blocks
+         */
+        public long blockCount = 0;
+        /**
+         * The number of bytes in the blocks
+         */
+        public long byteCount = 0;
+        /**
+         * The number of blocks of each RTD version
+         */
+        public Map<Integer, Long> versionBlockCounts = new TreeMap<>();
+        /**
+         * The number of bytes in the blocks of each RTD version
+         */
+        public Map<Integer, Long> versionByteCounts = new TreeMap<>();
+        /**
+         * The number of blocks of a single repeated value and quality code (RTD version 3)
+         */
+        public long constantBlockCount = 0;
+        /**
+         * The number of blocks stored as 32-bit floats (RTD version 4)
+         */
+        public long floatBlockCount = 0;
+        /**
+         * The number of blocks whose bodies are deflated
+         */
+        public long deflatedBlockCount = 0;
+    }
+
+    /**
+     * Class to hold a rollup of a regular time series over a time window
+     */
+    public static class TimeSeriesRollup {
+        /**
+         * The interval name of the rollup
+         */
+        public String resolution = null;
+        /**
+         * The mean of the valid values in each rollup interval, as a time series at the rollup resolution. Rollup
+         * intervals without valid values have values of UNDEFINED_DOUBLE
+         */
+        public TimeSeriesContainer means = null;
+        /**
+         * The minimum valid value in each rollup interval, or UNDEFINED_DOUBLE if none
+         */
+        public double[] minValues = null;
+        /**
+         * The maximum valid value in each rollup interval, or UNDEFINED_DOUBLE if none
+         */
+        public double[] maxValues = null;
+        /**
+         * The number of valid values in each rollup interval
+         */
+        public int[] counts = null;
+    }
+
     /**
      * Class to hold time series data for merge operations
      */
@@ -127,6 +302,107 @@ public final class TimeSeries {
         public int count = -1;
     }
 
+    /**
+     * Class to hold a time series block waiting to be written
+     */
+    static class BlockWrite {
+        /**
+         * The time series specification key
+         */
+        long key;
+        /**
+         * The block start date
+         */
+        long blockStartDate;
+        /**
+         * The encoded block
+         */
+        byte[] data;
+        /**
+         * The block information
+         */
+        TsvInfo info = new TsvInfo();
+        /**
+         * The encoded rollups of the block, by rollup resolution, or null if the time series has no rollups
+         */
+        Map<String, byte[]> rollups = null;
+    }
+
+    /**
+     * Class to hold the state of a regular time series retrieval while its blocks are decoded
+     */
+    static class RegularRetrieval {
+        /**
+         * The time series name
+         */
+        String name;
+        /**
+         * The time series specification key
+         */
+        long key = -1;
+        /**
+         * The interval name from the time series specification
+         */
+        String intervalName = null;
+        /**
+         * The interval minutes
+         */
+        int intervalMinutes;
+        /**
+         * The interval offset minutes
+         */
+        int offsetMinutes;
+        /**
+         * The first interval time in the time window
+         */
+        HecTime firstHecTime;
+        /**
+         * The first interval time in the time window, encoded
+         */
+        long firstTime;
+        /**
+         * The number of interval times in the time window
+         */
+        int count;
+        /**
+         * The block start date of the first block in the time window
+         */
+        long firstBlockStartDate;
+        /**
+         * The block start date of the last block in the time window
+         */
+        long lastBlockStartDate;
+        /**
+         * The output times
+         */
+        int[] times;
+        /**
+         * The output values
+         */
+        double[] values;
+        /**
+         * The output quality codes
+         */
+        int[] qualities;
+        /**
+         * The number of output values populated so far
+         */
+        int filled;
+        /**
+         * The conversion from the storage unit to the retrieve unit, applied to each block as it is decoded, or null
+         * if the values are retrieved in the storage unit
+         */
+        UnitConversion conversion = null;
+        /**
+         * Whether the blocks were decoded in parallel, so the times are also generated in parallel
+         */
+        boolean parallel = false;
+        /**
+         * The TimeSeriesContainer being retrieved
+         */
+        TimeSeriesContainer tsc;
+    }
+
     /**
      * Read the BLOB header information
      *
@@ -135,7 +411,8 @@ public final class TimeSeries {
      * @throws SqlDssException If:
      *                       <ul>
      *                           <li>The record type is unknown or unexpected</li>
-     *                           <li>The record type version is unexpected</li>
+     *                           <li>No codec is registered for the record type version</li>
+     *                           <li>The header has unknown flags</li>
      *                       </ul>
      */
     @NotNull
@@ -153,15 +430,18 @@ public final class TimeSeries {
         }
         switch (header.redordType) {
             case RTD:
-                header.version = buf.get(bufPosition);
+                header.version = buf.get(bufPosition) & 0xff;
                 bufPosition += Byte.BYTES;
-                if (header.version != 1) {
-                    throw new SqlDssException("Don't know how to decode RTS version " + header.version);
-                }
+                header.codec = BlockCodecs.get(RTD, header.version);
                 header.valueCount = buf.getInt(bufPosition);
                 bufPosition += Integer.BYTES;
-                header.hasQuality = buf.get(bufPosition) != 0;
+                int flags = buf.get(bufPosition) & 0xff;
                 bufPosition += Byte.BYTES;
+                if ((flags & ~(BLOCK_FLAG_QUALITY | BLOCK_FLAG_DEFLATED)) != 0) {
+                    throw new SqlDssException(String.format("Unknown RTD block flags: 0x%02x", flags));
+                }
+                header.hasQuality = (flags & BLOCK_FLAG_QUALITY) != 0;
+                header.isDeflated = (flags & BLOCK_FLAG_DEFLATED) != 0;
                 header.firstTime = buf.getLong(bufPosition);
                 bufPosition += Long.BYTES;
                 buf.position(bufPosition);
@@ -210,9 +490,9 @@ public final class TimeSeries {
      * @param unit        The unit to retrieve the time series in
      * @param sqldss      The SQLDSS object to use
      * @return The retrieved time series
-     * @throws SqlDssException          If thrown by {@link #retrieveRegularTimeSeriesValues(String, long, long, String, SqlDss)} or {@link #retrieveIrregularTimeSeriesValues(String, long, long, String, SqlDss)}
-     * @throws SQLException             If thrown by {@link #retrieveRegularTimeSeriesValues(String, long, long, String, SqlDss)} or {@link #retrieveIrregularTimeSeriesValues(String, long, long, String, SqlDss)}
-     * @throws EncodedDateTimeException If thrown by {@link #retrieveRegularTimeSeriesValues(String, long, long, String, SqlDss)} or {@link #retrieveIrregularTimeSeriesValues(String, long, long, String, SqlDss)}
+     * @throws SqlDssException          If thrown by {@link #retrieveRegularTimeSeriesValues(String, long, long, String, SqlDss)}, {@link #retrieveTrimmedRegularTimeSeriesValues(String, long, long, String, SqlDss)} or {@link #retrieveIrregularTimeSeriesValues(String, long, long, String, SqlDss)}
+     * @throws SQLException             If thrown by {@link #retrieveRegularTimeSeriesValues(String, long, long, String, SqlDss)}, {@link #retrieveTrimmedRegularTimeSeriesValues(String, long, long, String, SqlDss)} or {@link #retrieveIrregularTimeSeriesValues(String, long, long, String, SqlDss)}
+     * @throws EncodedDateTimeException If thrown by {@link #retrieveRegularTimeSeriesValues(String, long, long, String, SqlDss)}, {@link #retrieveTrimmedRegularTimeSeriesValues(String, long, long, String, SqlDss)} or {@link #retrieveIrregularTimeSeriesValues(String, long, long, String, SqlDss)}
      * @throws IOException              If thrown by {@link #retrieveRegularTimeSeriesValues(String, long, long, String, SqlDss)} or {@link #retrieveIrregularTimeSeriesValues(String, long, long, String, SqlDss)}
      */
     @NotNull
@@ -222,15 +502,60 @@ public final class TimeSeries {
         TimeSeriesContainer tsc;
         if (isIrregular(name)) {
             tsc = retrieveIrregularTimeSeriesValues(name, startTime, endTime, unit, sqldss);
+            if (trimMissing) {
+                trimTimeSeriesContainer(tsc);
+            }
+        } else if (trimMissing) {
+            tsc = retrieveTrimmedRegularTimeSeriesValues(name, startTime, endTime, unit, sqldss);
         } else {
             tsc = retrieveRegularTimeSeriesValues(name, startTime, endTime, unit, sqldss);
         }
-        if (trimMissing) {
-            trimTimeSeriesContainer(tsc);
-        }
         return tsc;
     }
 
+    /**
+     * Retrieve a specified time series for a time window in a specified unit, from a rollup if one is available at or
+     * finer than a requested resolution
+     *
+     * @param name        The time series name
+     * @param startTime   The start of the time window
+     * @param endTime     The end of the time window
+     * @param trimMissing Whether to trim blocks of missing values from the beginning and end of the retrieved data
+     * @param unit        The unit to retrieve the time series in
+     * @param resolution  The interval name of the coarsest resolution needed. If the time series has any rollups at
+     *                    this resolution or finer, the means of the coarsest such rollup are retrieved, with the
+     *                    interval of the name and TimeSeriesContainer set to the rollup resolution. Otherwise, or if
+     *                    null, the values of the time series are retrieved.
+     * @param sqldss      The SQLDSS object to use
+     * @return The retrieved time series
+     * @throws SqlDssException          If thrown by {@link Rollup#retrieveRollup(String, long, long, String, String, SqlDss)} or {@link #retrieveTimeSeriesValues(String, long, long, boolean, String, SqlDss)}
+     * @throws SQLException             If thrown by {@link Rollup#retrieveRollup(String, long, long, String, String, SqlDss)} or {@link #retrieveTimeSeriesValues(String, long, long, boolean, String, SqlDss)}
+     * @throws EncodedDateTimeException If thrown by {@link Rollup#retrieveRollup(String, long, long, String, String, SqlDss)} or {@link #retrieveTimeSeriesValues(String, long, long, boolean, String, SqlDss)}
+     * @throws IOException              If thrown by {@link #retrieveTimeSeriesValues(String, long, long, boolean, String, SqlDss)}
+     */
+    @NotNull
+    public static TimeSeriesContainer retrieveTimeSeriesValues(String name, long startTime, long endTime, boolean trimMissing,
+                                                               String unit, String resolution, SqlDss sqldss)
+            throws SqlDssException, SQLException, EncodedDateTimeException, IOException {
+        if (resolution != null && !isIrregular(name)) {
+            String rollupResolution = Rollup.selectResolution(name, resolution, sqldss.getConnection());
+            if (rollupResolution != null) {
+                TimeSeriesContainer tsc = Rollup.retrieveRollup(
+                        name,
+                        startTime,
+                        endTime,
+                        rollupResolution,
+                        unit,
+                        sqldss).means;
+                if (trimMissing) {
+                    trimTimeSeriesContainer(tsc);
+                }
+                return tsc;
+            }
+        }
+        return retrieveTimeSeriesValues(name, startTime, endTime, trimMissing, unit, sqldss);
+    }
+
     /**
      * Retrieve a specified time series for its full time extents
      *
@@ -261,8 +586,8 @@ public final class TimeSeries {
      * @return The retrieved time series
      * @throws SqlDssException            If time series has no data or thrown by {@link #getTimeSeriesExtents(String, Long[], Connection)} or {@link #retrieveTimeSeriesValues(String, long, long, boolean, String, SqlDss)}
      * @throws SQLException             If thrown by {@link #getTimeSeriesExtents(String, Long[], Connection)} or {@link #retrieveTimeSeriesValues(String, long, long, boolean, String, SqlDss)}
-     * @throws EncodedDateTimeException If thrown by {@link #getTimeSeriesExtents(String, Long[], Connection)} or {@link #retrieveTimeSeriesValues(String, long, long, boolean, String, SqlDss)}
-     * @throws IOException              If thrown by {@link #getTimeSeriesExtents(String, Long[], Connection)} or {@link #retrieveTimeSeriesValues(String, long, long, boolean, String, SqlDss)}
+     * @throws EncodedDateTimeException If thrown by {@link #retrieveTimeSeriesValues(String, long, long, boolean, String, SqlDss)}
+     * @throws IOException              If thrown by {@link #retrieveTimeSeriesValues(String, long, long, boolean, String, SqlDss)}
      */
     @NotNull
     public static TimeSeriesContainer retrieveAllTimeSeriesValues(String name, boolean trimMissing, String unit, @NotNull SqlDss sqldss) throws SqlDssException,
@@ -273,7 +598,7 @@ public final class TimeSeries {
         if (extents[0] == null) {
             throw new SqlDssException("No data for time series");
         }
-        return retrieveTimeSeriesValues(name, extents[0], extents[1], true, unit, sqldss);
+        return retrieveTimeSeriesValues(name, extents[0], extents[1], trimMissing, unit, sqldss);
     }
 
     /**
@@ -293,21 +618,31 @@ public final class TimeSeries {
         if (intervalName == null || intervalName.length < 1) {
             throw new SqlDssException("Parameter 'intervalName' must be of length 1");
         }
-        String sql = "select interval, min(block_start_date), max(block_start_date) from tsv where time_series = ?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setLong(1, key);
-            try (ResultSet rs = ps.executeQuery()) {
-                rs.next();
-                intervalName[0] = rs.getString("interval");
-                blockExtents[0] = rs.getLong("max(block_start_date)");
-                if (rs.wasNull()) {
-                    return;
-                }
-                blockExtents[1] = rs.getLong("min(block_start_date");
-                if (rs.wasNull()) {
-                    throw new SqlDssException("Error getting first/last block dates");
-                }
+        blockExtents[0] = blockExtents[1] = null;
+        PreparedStatement ps = StatementCache.prepare(conn, "select interval from time_series where key = ?");
+        ps.setLong(1, key);
+        try (ResultSet rs = ps.executeQuery()) {
+            intervalName[0] = rs.next() ? rs.getString("interval") : null;
+        }
+        ps = StatementCache.prepare(conn, """
+                select min(block_start_date) as first_block,
+                       max(block_start_date) as last_block
+                  from tsv
+                 where time_series = ?
+                   and deleted = 0""");
+        ps.setLong(1, key);
+        try (ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            long firstBlock = rs.getLong("first_block");
+            if (rs.wasNull()) {
+                return;
             }
+            long lastBlock = rs.getLong("last_block");
+            if (rs.wasNull()) {
+                throw new SqlDssException("Error getting first/last block dates");
+            }
+            blockExtents[0] = firstBlock;
+            blockExtents[1] = lastBlock;
         }
     }
 
@@ -337,22 +672,23 @@ public final class TimeSeries {
     }
 
     /**
-     * Retrieve the time extents for a time series
+     * Retrieve the time extents for a time series. The extents are answered from the TSV_INFO table without reading
+     * any blocks.
      *
      * @param name    The time series name to retrieve the extents for
-     * @param extents An array of length at least two to hold the extents
+     * @param extents An array of length at least two to hold the first and last value times. Both are set to null
+     *                if the time series has no data
      * @param conn    The JDBC connection
      * @throws SqlDssException            If:
      *                                  <ul>
      *                                      <li><code>extents</code> is null or too small</li>
      *                                      <li>time series <code>name</code> is not found</li>
-     *                                      <li>thrown by {@link #getTimeSeriesSpecKey(String, Connection)} or {@link #getFirstLastBlockAndInterval(long, Long[], String[], Connection)}</li>
+     *                                      <li>thrown by {@link #getTimeSeriesSpecKey(String, Connection)}</li>
      *                                  </ul>
      * @throws SQLException             If SQL error
-     * @throws EncodedDateTimeException If thrown by {@link #getLastTimeFromHeader(TsvRecordHeader, int)}
      */
     public static void getTimeSeriesExtents(String name, Long[] extents, Connection conn) throws SqlDssException,
-            SQLException, EncodedDateTimeException {
+            SQLException {
         if (extents == null || extents.length < 2) {
             throw new SqlDssException("Parameter 'extents' must be of length 2 or more");
         }
@@ -361,30 +697,75 @@ public final class TimeSeries {
         if (key < 0) {
             throw new SqlDssException("No such time series: " + name);
         }
-        Long[] blockExtentsArr = new Long[2];
-        String[] intervalNameArr = new String[1];
-        getFirstLastBlockAndInterval(key, blockExtentsArr, intervalNameArr, conn);
-        byte[] blob;
-        String sql = "select data from tsv where key = ? and block_start_date = ?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setLong(1, key);
-            for (int i = 0; i < 2; ++i) {
-                ps.setLong(2, blockExtentsArr[i]);
-                try (ResultSet rs = ps.executeQuery()) {
-                    rs.next();
-                    blob = rs.getBytes("data");
-                }
-                ByteBuffer buf = ByteBuffer.wrap(blob);
-                buf.order(ByteOrder.LITTLE_ENDIAN);
-                TsvRecordHeader header = readHeader(buf);
-                int intervalMinutes = Interval.getIntervalMinutes(intervalNameArr[0]);
-                if (i == 0) {
-                    extents[0] = header.firstTime;
-                } else {
-                    extents[1] = getLastTimeFromHeader(header, intervalMinutes);
+        PreparedStatement ps = StatementCache.prepare(conn, SQL_SELECT_TS_EXTENTS);
+        ps.setLong(1, key);
+        try (ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            long firstTime = rs.getLong("first_time");
+            if (!rs.wasNull()) {
+                extents[0] = firstTime;
+                extents[1] = rs.getLong("last_time");
+            }
+        }
+    }
+
+    /**
+     * Retrieve the time extents for multiple time series. The extents are answered from the TSV_INFO table for many
+     * time series at once without reading any blocks.
+     *
+     * @param names The time series names to retrieve the extents for
+     * @param conn  The JDBC connection
+     * @return The first and last value times of each time series, keyed by name in the iteration order of
+     * <code>names</code>. Both times are null for time series that have no data
+     * @throws SqlDssException If any time series is not found or if thrown by {@link #getTimeSeriesSpecKey(String, Connection)}
+     * @throws SQLException    If SQL error
+     */
+    @NotNull
+    public static Map<String, Long[]> getTimeSeriesExtents(@NotNull Collection<String> names, @NotNull Connection conn)
+            throws SqlDssException, SQLException {
+        Map<String, Long[]> extentsByName = new LinkedHashMap<>();
+        Map<Long, List<Long[]>> extentsByKey = new HashMap<>();
+        for (String name : names) {
+            if (extentsByName.containsKey(name)) {
+                continue;
+            }
+            long key = getTimeSeriesSpecKey(name, conn);
+            if (key < 0) {
+                throw new SqlDssException("No such time series: " + name);
+            }
+            Long[] extents = new Long[2];
+            extentsByName.put(name, extents);
+            extentsByKey.computeIfAbsent(key, k -> new ArrayList<>()).add(extents);
+        }
+        Long[] keys = extentsByKey.keySet().toArray(new Long[0]);
+        String sql = String.format("""
+                select i.time_series,
+                       min(i.first_time) as first_time,
+                       max(i.last_time) as last_time
+                  from tsv_info i
+                       join tsv t
+                         on t.time_series = i.time_series
+                        and t.block_start_date = i.block_start_date
+                 where i.time_series in (%s)
+                   and t.deleted = 0
+                   and t.data is not null
+                 group by i.time_series""",
+                String.join(",", Collections.nCopies(KEY_BATCH_SIZE, "?")));
+        for (int i = 0; i < keys.length; i += KEY_BATCH_SIZE) {
+            PreparedStatement ps = StatementCache.prepare(conn, sql);
+            bindKeyBatch(ps, 1, keys, i);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    long firstTime = rs.getLong("first_time");
+                    long lastTime = rs.getLong("last_time");
+                    for (Long[] extents : extentsByKey.get(rs.getLong("time_series"))) {
+                        extents[0] = firstTime;
+                        extents[1] = lastTime;
+                    }
                 }
             }
         }
+        return extentsByName;
     }
 
 
@@ -438,311 +819,1363 @@ public final class TimeSeries {
                                                                String unit, @NotNull SqlDss sqldss) throws SqlDssException, SQLException,
             EncodedDateTimeException {
         Connection conn = sqldss.getConnection();
-        HecTime startHecTime = EncodedDateTime.toHecTime(startTime);
-        HecTime endHecTime = EncodedDateTime.toHecTime(endTime);
-        TimeSeriesContainer tsc = new TimeSeriesContainer();
-        String[] nameParts = name.split("\\|", -1);
-        String locationName = nameParts[0];
-        String context = "";
-        if (locationName.indexOf(':') != -1) {
-            String[] parts = locationName.split(":", 2);
-            context = parts[0];
-            locationName = parts[1];
-        }
-        String baseLocationName = locationName;
-        String subLocationName = "";
-        if (locationName.indexOf('-') != -1) {
-            String[] parts = locationName.split("-", 2);
-            baseLocationName = parts[0];
-            subLocationName = parts[1];
-        }
-        String parameterName = nameParts[1];
-        String baseParameterName = parameterName;
-        String subParameterName = "";
-        if (parameterName.indexOf('-') != -1) {
-            String[] parts = parameterName.split("-", 2);
-            baseParameterName = parts[0];
-            subParameterName = parts[1];
+        RegularRetrieval retrieval = newRegularRetrieval(name);
+        TimeSeriesContainer tsc = retrieval.tsc;
+        String[] spec = getRegularTimeSeriesSpec(retrieval, conn);
+        long key = retrieval.key;
+        setRegularRetrievalWindow(retrieval, key, spec[0], spec[1], startTime, endTime);
+        if (unit != null && !unit.equals(tsc.units)) {
+            retrieval.conversion = UnitConversion.forUnits(tsc.units, unit, conn);
         }
-        String paramTypeName = nameParts[2];
-        String intervalName = nameParts[3];
-        String versionName = nameParts[5];
-        tsc.setFullName(String.format(name));
-        tsc.watershed = context;
-        tsc.location = baseLocationName;
-        tsc.subLocation = subLocationName;
-        tsc.parameter = baseParameterName;
-        tsc.subParameter = subParameterName;
-        tsc.version = versionName;
-        tsc.type = paramTypeName;
-        // get the units
-        try (PreparedStatement ps = conn.prepareStatement(
-                "select default_si_unit from base_parameter where name = ?"
-        )) {
-            ps.setString(1, baseParameterName);
-            try (ResultSet rs = ps.executeQuery()) {
-                rs.next();
-                tsc.units = rs.getString("default_si_unit");
+        if (retrieval.count > 0) {
+            BlockCache cache = BlockCache.forConnection(conn);
+            Map<Long, BlockCache.Block> cachedBlocks = getCachedBlocks(retrieval, cache);
+            if (cachedBlocks != null) {
+                // every block is cached, so no SQL is needed
+                for (Map.Entry<Long, BlockCache.Block> entry : cachedBlocks.entrySet()) {
+                    copyRegularBlock(retrieval, entry.getKey(), entry.getValue());
+                }
             }
-        }
-
-        // get the time series spec key
-        long key = getTimeSeriesSpecKey(name, conn);
-        if (key < 0) {
-            throw new SqlDssException("No such time series: " + name);
-        }
-        // get the interval and offset
-        String existingOffsetStr = null;
-        int intervalMinutes;
-        int existingOffsetMinutes;
-        try (PreparedStatement ps = conn.prepareStatement("select deleted, interval, interval_offset from time_series where " +
-                "key = ?")) {
-            ps.setLong(1, key);
-            try (ResultSet rs = ps.executeQuery()) {
-                rs.next();
-                if (rs.getLong("deleted") == 1) {
-                    throw new SqlDssException("No such time series: " + name);
+            else {
+                // get all existing blocks in a single range scan and decode each directly into its slice of the output
+                Map<Long, BlockCache.Block> blocksToCache = cache.isEnabled() && conn.getAutoCommit() ? new HashMap<>() : null;
+                int parallelThreshold = sqldss.getParallelDecodeThreshold();
+                boolean parallel = blocksToCache == null
+                        && parallelThreshold > 0
+                        && getRetrievalBlockStartDates(retrieval).length >= parallelThreshold;
+                List<Long> blockStartDates = new ArrayList<>();
+                List<byte[]> blobs = new ArrayList<>();
+                PreparedStatement ps = StatementCache.prepare(conn, SQL_SELECT_TS_BLOCKS);
+                ps.setLong(1, key);
+                ps.setLong(2, retrieval.firstBlockStartDate);
+                ps.setLong(3, retrieval.lastBlockStartDate);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        if (rs.getLong("deleted") == 1) {
+                            continue;
+                        }
+                        long blockStartDate = rs.getLong("block_start_date");
+                        if (parallel) {
+                            // only fetch on this thread, decode after the scan
+                            blockStartDates.add(blockStartDate);
+                            blobs.add(rs.getBytes("data"));
+                        }
+                        else if (blocksToCache == null) {
+                            decodeRegularBlock(retrieval, blockStartDate, rs.getBytes("data"));
+                        }
+                        else {
+                            BlockCache.Block block = decodeBlock(rs.getBytes("data"));
+                            blocksToCache.put(blockStartDate, block);
+                            copyRegularBlock(retrieval, blockStartDate, block);
+                        }
+                    }
+                }
+                if (parallel) {
+                    decodeRegularBlocksInParallel(retrieval, blockStartDates, blobs);
+                }
+                if (blocksToCache != null) {
+                    cacheRegularBlocks(retrieval, blocksToCache, cache);
                 }
-                intervalName = rs.getString("interval");
-                existingOffsetStr = rs.getString("interval_offset");
             }
         }
-        if (existingOffsetStr == null || existingOffsetStr.isEmpty()) {
-            throw new SqlDssException("Interval offset is not set for time series!");
-        }
-        intervalMinutes = Interval.getIntervalMinutes(intervalName);
-        if (intervalMinutes == 0) {
-            throw new SqlDssException("Error getting interval minutes for " + name);
-        }
-        tsc.interval = intervalMinutes;
-        existingOffsetMinutes = Duration.iso8601ToMinutes(existingOffsetStr);
-        // determine blocks
-        long[] encodedBlockDates = getBlockStartDates(startHecTime, endHecTime, intervalName);
-        byte[] blob;
-        int[][] timeArrays = new int[encodedBlockDates.length - 1][];
-        double[][] valueArrays = new double[encodedBlockDates.length - 1][];
-        int[][] qualityArrays = new int[encodedBlockDates.length - 1][];
-        // get each block
-        for (int i = 0; i < encodedBlockDates.length - 1; ++i) {
+        return finishRegularRetrieval(retrieval, startTime, endTime, unit, conn);
+    }
 
-            try (PreparedStatement ps = conn.prepareStatement(String.format(SQL_SELECT_TS_BLOCK, key))) {
-                ps.setLong(1, encodedBlockDates[i]);
-                try (ResultSet rs = ps.executeQuery()) {
-                    rs.next();
-                    blob = rs.getLong("deleted") == 1 ? null : rs.getBytes("data");
+    /**
+     * Retrieves a regular time series for a time window and in a specified unit, trimmed of missing and rejected values
+     * at the beginning and end. The time window is first narrowed to the first and last valid values using
+     * {@link #getValidTimeWindow(long, String, String, long, long, Connection)}, so only the values in the trimmed
+     * window are allocated and decoded. If there are no valid values in the time window, no blocks are decoded and the
+     * time series is returned with empty values and quality codes, as the untrimmed retrieval would be trimmed to.
+     *
+     * @param name      The time series to retrieve
+     * @param startTime The start of the time window
+     * @param endTime   The end of the time window
+     * @param unit      The unit to retrieve the values in
+     * @param sqldss    The SQLDSS object
+     * @return The trimmed regular time series, which has no values if there are no valid values in the time window
+     * @throws SqlDssException          If thrown by {@link #retrieveRegularTimeSeriesValues(String, long, long, String, SqlDss)} or {@link #getValidTimeWindow(long, String, String, long, long, Connection)}
+     * @throws SQLException             If SQL error
+     * @throws EncodedDateTimeException If thrown by EncodedDateTime method
+     */
+    @NotNull
+    static TimeSeriesContainer retrieveTrimmedRegularTimeSeriesValues(@NotNull String name, long startTime, long endTime,
+                                                                      String unit, @NotNull SqlDss sqldss)
+            throws SqlDssException, SQLException, EncodedDateTimeException {
+        Connection conn = sqldss.getConnection();
+        RegularRetrieval retrieval = newRegularRetrieval(name);
+        String[] spec = getRegularTimeSeriesSpec(retrieval, conn);
+        long[] window = getValidTimeWindow(retrieval.key, spec[0], spec[1], startTime, endTime, conn);
+        if (window != null) {
+            return retrieveRegularTimeSeriesValues(name, window[0], window[1], unit, sqldss);
+        }
+        TimeSeriesContainer tsc = retrieval.tsc;
+        tsc.interval = Interval.getIntervalMinutes(spec[0]);
+        tsc.times = new int[0];
+        tsc.values = new double[0];
+        tsc.quality = new int[0];
+        tsc.numberValues = 0;
+        tsc.setStartTime(new HecTime());
+        tsc.setEndTime(new HecTime());
+        if (unit != null) {
+            tsc.units = unit;
+        }
+        return tsc;
+    }
+
+    /**
+     * Finds the times of the first and last valid (not missing or rejected) values of a regular time series in a time
+     * window. The block information in the TSV_INFO table is used to skip blocks without valid values, and blocks are
+     * decoded from each end of the time window only until a valid value is found, so normally only the first and last
+     * blocks with valid values are decoded.
+     *
+     * @param key          The time series specification key
+     * @param intervalName The interval name of the time series
+     * @param offsetStr    The ISO 8601 interval offset of the time series
+     * @param startTime    The start of the time window
+     * @param endTime      The end of the time window
+     * @param conn         The JDBC connection
+     * @return The times of the first and last valid values, or null if there are no valid values in the time window
+     * @throws SqlDssException          If the interval or interval offset is invalid or a block cannot be decoded
+     * @throws SQLException             If SQL error
+     * @throws EncodedDateTimeException If thrown by EncodedDateTime method
+     */
+    static long @Nullable [] getValidTimeWindow(
+            long key,
+            @NotNull String intervalName,
+            String offsetStr,
+            long startTime,
+            long endTime,
+            @NotNull Connection conn) throws SqlDssException, SQLException, EncodedDateTimeException {
+        if (offsetStr == null || offsetStr.isEmpty()) {
+            throw new SqlDssException("Interval offset is not set for time series!");
+        }
+        int intervalMinutes = Interval.getIntervalMinutes(intervalName);
+        if (intervalMinutes == 0) {
+            throw new SqlDssException("Error getting interval minutes for interval " + intervalName);
+        }
+        long firstTime = EncodedDateTime.encodeDateTime(
+                getFirstIntervalTime(startTime, intervalMinutes, Duration.iso8601ToMinutes(offsetStr)));
+        if (firstTime > endTime) {
+            return null;
+        }
+        //---------------------------------------------------------------//
+        // find the blocks that may have valid values in the time window //
+        //---------------------------------------------------------------//
+        List<Long> candidates = new ArrayList<>();
+        PreparedStatement ps = StatementCache.prepare(conn, SQL_SELECT_TS_BLOCK_INFO);
+        ps.setLong(1, key);
+        ps.setLong(2, getBlockStartDate(firstTime, intervalName));
+        ps.setLong(3, getBlockStartDate(endTime, intervalName));
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                long validCount = rs.getLong("valid_count");
+                if (!rs.wasNull() && validCount == 0) {
+                    continue;
+                }
+                long blockFirstTime = rs.getLong("first_time");
+                if (!rs.wasNull() && (blockFirstTime > endTime || rs.getLong("last_time") < firstTime)) {
+                    continue;
                 }
+                candidates.add(rs.getLong("block_start_date"));
             }
-            if (blob == null) {
-                // create missing data for the record
-                long encodedFirstTime = EncodedDateTime.toEncodedDateTime(encodedBlockDates[i]);
-                long encodedLastTime = EncodedDateTime.addMinutes(
-                        EncodedDateTime.toEncodedDateTime(encodedBlockDates[i + 1]),
-                        -intervalMinutes);
-                int blockValueCount = EncodedDateTime.intervalsBetween(
-                        encodedFirstTime,
-                        encodedLastTime,
-                        intervalMinutes
-                ) + 1;
-                int firstValueOffset = -1;
-                int lastValueOffset = -1;
-                if (startTime <= encodedFirstTime) {
-                    firstValueOffset = 0;
-                } else {
-                    firstValueOffset = EncodedDateTime.intervalsBetween(
-                            encodedFirstTime,
-                            startTime,
-                            intervalMinutes);
-                }
-                if (endTime >= encodedLastTime) {
-                    lastValueOffset = blockValueCount - 1;
-                } else {
-                    lastValueOffset = blockValueCount - EncodedDateTime.intervalsBetween(
-                            endTime,
-                            encodedLastTime,
-                            intervalMinutes) - 1;
-                }
-                int valueCount = lastValueOffset - firstValueOffset + 1;
-                timeArrays[i] = new int[valueCount];
-                valueArrays[i] = new double[valueCount];
-                qualityArrays[i] = new int[valueCount];
-                HecTime t = EncodedDateTime.toHecTime(encodedFirstTime);
-                if (intervalMinutes < MONTH_MINUTES) {
-                    int minutes = t.value();
-                    for (int j = 0; j < valueCount; ++j) {
-                        timeArrays[i][j] = minutes;
-                        minutes += intervalMinutes;
-                    }
-                } else {
-                    for (int j = 0; j < valueCount; ++j) {
-                        timeArrays[i][j] = t.value();
-                        t.increment(1, intervalMinutes);
+        }
+        //----------------------------------------------------------//
+        // decode blocks from each end until a valid value is found //
+        //----------------------------------------------------------//
+        BlockCache cache = BlockCache.forConnection(conn);
+        Map<Long, BlockCache.Block> decoded = new HashMap<>();
+        long[] window = null;
+        for (int i = 0; i < candidates.size() && window == null; ++i) {
+            BlockCache.Block block = getValidTimeWindowBlock(key, candidates.get(i), decoded, cache, conn);
+            int[] range = getBlockIndexRange(block, firstTime, endTime, intervalMinutes);
+            for (int j = range[0]; j <= range[1]; ++j) {
+                if (isValidValue(block.values[j], block.qualities, j)) {
+                    long time = EncodedDateTime.incrementEncodedDateTime(block.firstTime, intervalMinutes, j);
+                    window = new long[]{time, time};
+                    break;
+                }
+            }
+        }
+        if (window == null) {
+            return null;
+        }
+        for (int i = candidates.size() - 1; i >= 0; --i) {
+            BlockCache.Block block = getValidTimeWindowBlock(key, candidates.get(i), decoded, cache, conn);
+            int[] range = getBlockIndexRange(block, firstTime, endTime, intervalMinutes);
+            for (int j = range[1]; j >= range[0]; --j) {
+                if (isValidValue(block.values[j], block.qualities, j)) {
+                    window[1] = EncodedDateTime.incrementEncodedDateTime(block.firstTime, intervalMinutes, j);
+                    return window;
+                }
+            }
+        }
+        return window;
+    }
+
+    /**
+     * Gets a decoded block for {@link #getValidTimeWindow(long, String, String, long, long, Connection)}, from the
+     * blocks already decoded, the block cache, or the database
+     * @param key The time series specification key
+     * @param blockStartDate The block start date
+     * @param decoded The blocks already decoded, keyed by block start date, which the block is added to
+     * @param cache The block cache
+     * @param conn The JDBC connection
+     * @return The decoded block
+     * @throws SqlDssException If the block cannot be decoded
+     * @throws SQLException If SQL error
+     */
+    @NotNull
+    private static BlockCache.Block getValidTimeWindowBlock(
+            long key,
+            long blockStartDate,
+            @NotNull Map<Long, BlockCache.Block> decoded,
+            @NotNull BlockCache cache,
+            @NotNull Connection conn) throws SqlDssException, SQLException {
+        BlockCache.Block block = decoded.get(blockStartDate);
+        if (block == null && cache.isEnabled()) {
+            block = cache.get(key, blockStartDate);
+        }
+        if (block == null) {
+            PreparedStatement ps = StatementCache.prepare(conn, SQL_SELECT_TS_BLOCK);
+            ps.setLong(1, key);
+            ps.setLong(2, blockStartDate);
+            try (ResultSet rs = ps.executeQuery()) {
+                block = rs.next() ? decodeBlock(rs.getBytes("data")) : BlockCache.EMPTY;
+            }
+        }
+        decoded.put(blockStartDate, block);
+        return block;
+    }
+
+    /**
+     * Computes the range of indices of the values of a decoded block that are in a time window
+     * @param block The decoded block
+     * @param firstTime The first interval time in the time window
+     * @param endTime The end of the time window
+     * @param intervalMinutes The interval minutes of the time series
+     * @return The first and last indices, which are an empty range if the block has no values in the time window
+     * @throws EncodedDateTimeException If thrown by EncodedDateTime method
+     */
+    private static int @NotNull [] getBlockIndexRange(
+            @NotNull BlockCache.Block block,
+            long firstTime,
+            long endTime,
+            int intervalMinutes) throws EncodedDateTimeException {
+        if (block.valueCount == 0 || endTime < block.firstTime) {
+            return new int[]{0, -1};
+        }
+        int first = 0;
+        if (block.firstTime < firstTime) {
+            first = EncodedDateTime.intervalsBetween(block.firstTime, firstTime, intervalMinutes);
+        }
+        int last = Math.min(
+                block.valueCount - 1,
+                EncodedDateTime.intervalsBetween(block.firstTime, endTime, intervalMinutes));
+        return new int[]{first, last};
+    }
+
+    /**
+     * Looks up the storage unit, time series specification key, interval and interval offset for a regular time series
+     * retrieval, setting the unit of its TimeSeriesContainer and its key
+     * @param retrieval The retrieval state from {@link #newRegularRetrieval(String)}
+     * @param conn The JDBC connection
+     * @return The interval name and the ISO 8601 interval offset of the time series
+     * @throws SqlDssException If the time series does not exist or is deleted
+     * @throws SQLException If SQL error
+     */
+    static String @NotNull [] getRegularTimeSeriesSpec(@NotNull RegularRetrieval retrieval, Connection conn)
+            throws SqlDssException, SQLException {
+        String name = retrieval.name;
+        // get the units
+        PreparedStatement ps = StatementCache.prepare(conn, "select default_si_unit from base_parameter where name = ?");
+        ps.setString(1, retrieval.tsc.parameter);
+        try (ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            retrieval.tsc.units = rs.getString("default_si_unit");
+        }
+
+        // get the time series spec key
+        long key = getTimeSeriesSpecKey(name, conn);
+        if (key < 0) {
+            throw new SqlDssException("No such time series: " + name);
+        }
+        retrieval.key = key;
+        // get the interval and offset
+        String intervalName;
+        String existingOffsetStr = null;
+        ps = StatementCache.prepare(conn, "select deleted, interval, interval_offset from time_series where " +
+                "key = ?");
+        ps.setLong(1, key);
+        try (ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            if (rs.getLong("deleted") == 1) {
+                throw new SqlDssException("No such time series: " + name);
+            }
+            intervalName = rs.getString("interval");
+            existingOffsetStr = rs.getString("interval_offset");
+        }
+        return new String[]{intervalName, existingOffsetStr};
+    }
+
+    /**
+     * Opens a cursor that reads a regular time series one block at a time
+     *
+     * @param name      The time series to read
+     * @param startTime The start of the time window
+     * @param endTime   The end of the time window
+     * @param unit      The unit to retrieve the values in
+     * @param sqldss    The SQLDSS object
+     * @return The cursor, which must be closed by the caller
+     * @throws SqlDssException          If the time series is irregular, does not exist, or is deleted, or if thrown
+     *                                  by {@link UnitConversion#forUnits(String, String, Connection)}
+     * @throws SQLException             If SQL error
+     * @throws EncodedDateTimeException If thrown by EncodedDateTime method
+     */
+    @NotNull
+    public static TimeSeriesCursor openTimeSeriesCursor(
+            @NotNull String name,
+            long startTime,
+            long endTime,
+            String unit,
+            @NotNull SqlDss sqldss) throws SqlDssException, SQLException, EncodedDateTimeException {
+        if (isIrregular(name)) {
+            throw new SqlDssException("Cannot yet read irregular time series with a cursor");
+        }
+        Connection conn = sqldss.getConnection();
+        RegularRetrieval retrieval = newRegularRetrieval(name);
+        String[] spec = getRegularTimeSeriesSpec(retrieval, conn);
+        return new TimeSeriesCursor(
+                name,
+                retrieval.key,
+                spec[0],
+                spec[1],
+                retrieval.tsc.units,
+                startTime,
+                endTime,
+                unit,
+                conn);
+    }
+
+    /**
+     * Counts the regular time series blocks of a file by how they are stored. The counting is done by SQLite from the
+     * header bytes of each block, so the blocks are not transferred to Java, although SQLite still reads every block.
+     * @param conn The JDBC connection
+     * @return The statistics
+     * @throws SQLException If SQL error
+     */
+    @NotNull
+    public static BlockStorageStatistics getBlockStorageStatistics(@NotNull Connection conn) throws SQLException {
+        BlockStorageStatistics stats = new BlockStorageStatistics();
+        PreparedStatement ps = StatementCache.prepare(conn, SQL_SELECT_TS_BLOCK_STORAGE);
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                String typeVersion = rs.getString("type_version");
+                if (typeVersion.length() != 4 || Integer.parseInt(typeVersion.substring(0, 2), 16) != RTD.getCode()) {
+                    continue;
+                }
+                int version = Integer.parseInt(typeVersion.substring(2), 16);
+                int flags = Integer.parseInt(rs.getString("flags"), 16);
+                long blockCount = rs.getLong("block_count");
+                long byteCount = rs.getLong("byte_count");
+                stats.blockCount += blockCount;
+                stats.byteCount += byteCount;
+                stats.versionBlockCounts.merge(version, blockCount, Long::sum);
+                stats.versionByteCounts.merge(version, byteCount, Long::sum);
+                if (version == RtdConstantCodec.VERSION) {
+                    stats.constantBlockCount += blockCount;
+                }
+                else if (version == RtdFloatCodec.VERSION) {
+                    stats.floatBlockCount += blockCount;
+                }
+                if ((flags & BLOCK_FLAG_DEFLATED) != 0) {
+                    stats.deflatedBlockCount += blockCount;
+                }
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Computes the counts, minimum, maximum, mean, variance, and availability of a regular time series over a time
+     * window. Blocks completely within the time window are summarized from the TSV_INFO table without being read; only
+     * blocks partly in the time window (at most the first and last) and blocks without complete block information are
+     * decoded. The mean and variance are computed from the sums and sums of squares of the values in the storage unit.
+     *
+     * @param name      The time series name
+     * @param startTime The start of the time window
+     * @param endTime   The end of the time window
+     * @param unit      The unit to return the minimum and maximum values in. If null, the storage unit is used
+     * @param sqldss    The SQLDSS object
+     * @return The statistics
+     * @throws SqlDssException          If the time series is irregular, does not exist, or is deleted, or if thrown
+     *                                  while decoding blocks or converting units
+     * @throws SQLException             If SQL error
+     * @throws EncodedDateTimeException If thrown by EncodedDateTime method
+     */
+    @NotNull
+    public static TimeSeriesStatistics getTimeSeriesStatistics(
+            @NotNull String name,
+            long startTime,
+            long endTime,
+            String unit,
+            @NotNull SqlDss sqldss) throws SqlDssException, SQLException, EncodedDateTimeException {
+        if (isIrregular(name)) {
+            throw new SqlDssException("Cannot yet compute statistics for irregular time series");
+        }
+        Connection conn = sqldss.getConnection();
+        RegularRetrieval retrieval = newRegularRetrieval(name);
+        String[] spec = getRegularTimeSeriesSpec(retrieval, conn);
+        String intervalName = spec[0];
+        if (spec[1] == null || spec[1].isEmpty()) {
+            throw new SqlDssException("Interval offset is not set for time series!");
+        }
+        int intervalMinutes = Interval.getIntervalMinutes(intervalName);
+        if (intervalMinutes == 0) {
+            throw new SqlDssException("Error getting interval minutes for " + name);
+        }
+        TimeSeriesStatistics stats = new TimeSeriesStatistics();
+        stats.unit = retrieval.tsc.units;
+        long firstTime = EncodedDateTime.encodeDateTime(
+                getFirstIntervalTime(startTime, intervalMinutes, Duration.iso8601ToMinutes(spec[1])));
+        if (firstTime > endTime) {
+            return stats;
+        }
+        stats.expectedCount = EncodedDateTime.intervalsBetween(firstTime, endTime, intervalMinutes) + 1L;
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        double sum = 0;
+        double sumOfSquares = 0;
+        List<Long> partialBlocks = new ArrayList<>();
+        //------------------------------------------------------------------//
+        // summarize the blocks completely in the time window from TSV_INFO //
+        //------------------------------------------------------------------//
+        PreparedStatement ps = StatementCache.prepare(conn, SQL_SELECT_TS_BLOCK_INFO);
+        ps.setLong(1, retrieval.key);
+        ps.setLong(2, getBlockStartDate(firstTime, intervalName));
+        ps.setLong(3, getBlockStartDate(endTime, intervalName));
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                long blockFirstTime = rs.getLong("first_time");
+                boolean hasInfo = !rs.wasNull();
+                long blockLastTime = rs.getLong("last_time");
+                long blockValidCount = rs.getLong("valid_count");
+                hasInfo &= !rs.wasNull();
+                if (!hasInfo || blockFirstTime < firstTime || blockLastTime > endTime) {
+                    partialBlocks.add(rs.getLong("block_start_date"));
+                    continue;
+                }
+                stats.count += rs.getLong("value_count");
+                stats.validCount += blockValidCount;
+                sum += rs.getDouble("sum_value");
+                sumOfSquares += rs.getDouble("sum_sq_value");
+                double blockMin = rs.getDouble("min_value");
+                if (!rs.wasNull()) {
+                    double blockMax = rs.getDouble("max_value");
+                    if (blockMin <= blockMax) {
+                        min = Math.min(min, blockMin);
+                        max = Math.max(max, blockMax);
                     }
                 }
-                Arrays.fill(valueArrays[i], UNDEFINED_DOUBLE);
-            } else {
-                // read the record
-                ByteBuffer buf = ByteBuffer.wrap(blob);
-                buf.order(ByteOrder.LITTLE_ENDIAN);
-                int bufPosition = 0;
-                byte dataType = buf.get(bufPosition);
-                bufPosition += Byte.BYTES;
-                if (dataType != RTD.getCode()) {
-                    throw new SqlDssException(String.format(
-                            "Expected data type of %d (%s), got %d",
-                            RTD.getCode(),
-                            RTD.name(),
-                            dataType));
+                ++stats.summarizedBlocks;
+            }
+        }
+        //--------------------------------------------------------------------------//
+        // decode the blocks partly in the time window or without block information //
+        //--------------------------------------------------------------------------//
+        for (long blockStartDate : partialBlocks) {
+            ps = StatementCache.prepare(conn, SQL_SELECT_TS_BLOCK);
+            ps.setLong(1, retrieval.key);
+            ps.setLong(2, blockStartDate);
+            BlockCache.Block block;
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                block = decodeBlock(rs.getBytes("data"));
+            }
+            if (block.valueCount == 0) {
+                continue;
+            }
+            int first = 0;
+            if (block.firstTime < firstTime) {
+                first = EncodedDateTime.intervalsBetween(block.firstTime, firstTime, intervalMinutes);
+            }
+            int last = block.valueCount - 1;
+            if (endTime < block.firstTime) {
+                last = -1;
+            }
+            else {
+                last = Math.min(last, EncodedDateTime.intervalsBetween(block.firstTime, endTime, intervalMinutes));
+            }
+            for (int i = first; i <= last; ++i) {
+                ++stats.count;
+                double value = block.values[i];
+                if (!isValidValue(value, block.qualities, i)) {
+                    continue;
                 }
-                byte dataTypeVersion = buf.get(bufPosition);
-                bufPosition += Byte.BYTES;
-                if (dataTypeVersion != 1) {
-                    throw new SqlDssException("Don't know how to decode RTD version " + dataTypeVersion);
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                ++stats.validCount;
+                sum += value;
+                sumOfSquares += value * value;
+            }
+            ++stats.decodedBlocks;
+        }
+        stats.availability = 100.0 * stats.validCount / stats.expectedCount;
+        if (stats.validCount > 0) {
+            double mean = sum / stats.validCount;
+            // guard against a slightly negative variance from rounding when all values are nearly equal
+            double variance = Math.max(sumOfSquares / stats.validCount - mean * mean, 0.);
+            stats.minValue = min;
+            stats.maxValue = max;
+            stats.mean = mean;
+            stats.variance = variance;
+            if (unit != null && !unit.equals(stats.unit)) {
+                UnitConversion conversion = UnitConversion.forUnits(stats.unit, unit, conn);
+                double convertedMin = conversion.applyAsDouble(min);
+                double convertedMax = conversion.applyAsDouble(max);
+                stats.minValue = Math.min(convertedMin, convertedMax);
+                stats.maxValue = Math.max(convertedMin, convertedMax);
+                if (conversion.isLinear()) {
+                    stats.mean = conversion.applyAsDouble(mean);
+                    stats.variance = variance * conversion.getFactor() * conversion.getFactor();
                 }
-                int blockValueCount = buf.getInt(bufPosition);
-                bufPosition += Integer.BYTES;
-                byte hasQuality = buf.get(bufPosition);
-                bufPosition += Byte.BYTES;
-                long encodedFirstTime = buf.getLong(bufPosition);
-                bufPosition += Long.BYTES;
-                long encodedLastTime = EncodedDateTime.incrementEncodedDateTime(
-                        encodedFirstTime,
-                        intervalMinutes,
-                        blockValueCount - 1);
-                int firstValueOffset = -1;
-                int lastValueOffset = -1;
-                if (startTime <= encodedFirstTime) {
-                    firstValueOffset = 0;
-                } else {
-                    firstValueOffset = EncodedDateTime.intervalsBetween(
-                            encodedFirstTime,
-                            startTime,
-                            intervalMinutes);
-                }
-                if (endTime >= encodedLastTime) {
-                    lastValueOffset = blockValueCount - 1;
-                } else {
-                    lastValueOffset = blockValueCount - EncodedDateTime.intervalsBetween(
-                            endTime,
-                            encodedLastTime,
-                            intervalMinutes) - 1;
-                }
-                int valueCount = lastValueOffset - firstValueOffset + 1;
-                if (firstValueOffset > 0) {
-                    encodedFirstTime = EncodedDateTime.incrementEncodedDateTime(encodedFirstTime, intervalMinutes, firstValueOffset);
-                }
-                HecTime firstTime = EncodedDateTime.toHecTime(encodedFirstTime);
-                HecTime intervalTime = new HecTime(firstTime);
-                intervalTime.adjustToIntervalOffset(intervalMinutes, 0);
-                if (intervalTime.greaterThan(firstTime)) {
-                    intervalTime.subtractMinutes(intervalMinutes);
+                else {
+                    stats.mean = stats.variance = UNDEFINED_DOUBLE;
                 }
-                int thisOffset = (int) ((firstTime.getTimeInMillis() - intervalTime.getTimeInMillis()) / 60000);
-                if (thisOffset != existingOffsetMinutes) {
-                    throw new SqlDssException(String.format(
-                            "Interval offset for block starting at %d (%d) doesn't match offset for time series (%d)",
-                            encodedBlockDates[i], thisOffset, existingOffsetMinutes));
-                }
-                double[] values = new double[valueCount];
-                bufPosition += firstValueOffset * Double.BYTES;
-                for (int j = 0; j < valueCount; ++j) {
-                    values[j] = buf.getDouble(bufPosition);
-                    bufPosition += Double.BYTES;
-                }
-                int[] qualities = new int[valueCount];
-                if (hasQuality != 0) {
-                    bufPosition += (valueCount - lastValueOffset - 1) * Double.BYTES;
-                    for (int j = 0; j < valueCount; ++j) {
-                        qualities[j] = buf.getInt(bufPosition);
-                        bufPosition += Integer.BYTES;
+            }
+        }
+        if (unit != null) {
+            stats.unit = unit;
+        }
+        return stats;
+    }
+
+    /**
+     * Retrieves a downsampled regular time series for a time window, keeping at most a target number of values chosen
+     * to preserve the visual shape of the full-resolution values. The blocks are read one at a time with a
+     * {@link TimeSeriesCursor} and fed to a streaming downsampler, so the full-resolution values of the time window are
+     * never held in memory together. Missing and rejected values are skipped.
+     *
+     * If the time window has no more interval times than the target count, the time series is retrieved at full
+     * resolution. Otherwise the kept values are not evenly spaced, so the returned TimeSeriesContainer is irregular,
+     * with the interval part of its name prefixed by <code>~</code> and no qualities.
+     *
+     * @param name        The time series name
+     * @param startTime   The start of the time window
+     * @param endTime     The end of the time window
+     * @param unit        The unit to retrieve the time series in
+     * @param targetCount The maximum number of values to retrieve. Must be at least 3 for {@link DOWNSAMPLE_METHOD#LTTB}
+     *                    and 2 for {@link DOWNSAMPLE_METHOD#MIN_MAX}
+     * @param method      The downsampling method
+     * @param sqldss      The SQLDSS object
+     * @return The retrieved time series
+     * @throws SqlDssException          If the time series is irregular, does not exist, or is deleted, if the target
+     *                                  count is too small, or if thrown while decoding blocks or converting units
+     * @throws SQLException             If SQL error
+     * @throws EncodedDateTimeException If thrown by EncodedDateTime method
+     */
+    @NotNull
+    public static TimeSeriesContainer retrieveDownsampledTimeSeriesValues(
+            @NotNull String name,
+            long startTime,
+            long endTime,
+            String unit,
+            int targetCount,
+            @NotNull DOWNSAMPLE_METHOD method,
+            @NotNull SqlDss sqldss) throws SqlDssException, SQLException, EncodedDateTimeException {
+        if (isIrregular(name)) {
+            throw new SqlDssException("Cannot yet downsample irregular time series");
+        }
+        int minimumCount = method == DOWNSAMPLE_METHOD.LTTB ? 3 : 2;
+        if (targetCount < minimumCount) {
+            throw new SqlDssException(String.format(
+                    "Target count for %s downsampling must be at least %d, got %d",
+                    method,
+                    minimumCount,
+                    targetCount));
+        }
+        Connection conn = sqldss.getConnection();
+        RegularRetrieval retrieval = newRegularRetrieval(name);
+        String[] spec = getRegularTimeSeriesSpec(retrieval, conn);
+        if (spec[1] == null || spec[1].isEmpty()) {
+            throw new SqlDssException("Interval offset is not set for time series!");
+        }
+        int intervalMinutes = Interval.getIntervalMinutes(spec[0]);
+        if (intervalMinutes == 0) {
+            throw new SqlDssException("Error getting interval minutes for " + name);
+        }
+        long firstTime = EncodedDateTime.encodeDateTime(
+                getFirstIntervalTime(startTime, intervalMinutes, Duration.iso8601ToMinutes(spec[1])));
+        if (firstTime > endTime
+                || EncodedDateTime.intervalsBetween(firstTime, endTime, intervalMinutes) < targetCount) {
+            return retrieveRegularTimeSeriesValues(name, startTime, endTime, unit, sqldss);
+        }
+        int gridCount = EncodedDateTime.intervalsBetween(firstTime, endTime, intervalMinutes) + 1;
+        Downsampler downsampler = new Downsampler(method, gridCount, targetCount);
+        try (TimeSeriesCursor cursor = new TimeSeriesCursor(
+                name,
+                retrieval.key,
+                spec[0],
+                spec[1],
+                retrieval.tsc.units,
+                startTime,
+                endTime,
+                unit,
+                conn)) {
+            TimeSeriesContainer chunk;
+            while ((chunk = cursor.nextBlock()) != null) {
+                int gridIndex = EncodedDateTime.intervalsBetween(
+                        firstTime,
+                        EncodedDateTime.encodeDateTime(chunk.times[0]),
+                        intervalMinutes);
+                for (int i = 0; i < chunk.numberValues; ++i, ++gridIndex) {
+                    double value = chunk.values[i];
+                    if (!isValidValue(value, chunk.quality, i)) {
+                        continue;
+                    }
+                    downsampler.add(gridIndex, chunk.times[i], value);
+                }
+            }
+        }
+        downsampler.finish();
+        TimeSeriesContainer tsc = retrieval.tsc;
+        String[] parts = name.split("\\|", -1);
+        parts[3] = "~" + parts[3];
+        tsc.setFullName(String.join("|", parts));
+        tsc.interval = 0;
+        tsc.times = downsampler.getTimes();
+        tsc.values = downsampler.getValues();
+        tsc.quality = null;
+        tsc.numberValues = tsc.values.length;
+        if (unit != null) {
+            tsc.units = unit;
+        }
+        tsc.setStartTime(EncodedDateTime.toHecTime(startTime));
+        tsc.setEndTime(EncodedDateTime.toHecTime(endTime));
+        return tsc;
+    }
+
+    /**
+     * Retrieves multiple time series for a common time window. Keys, time series specifications and blocks are queried
+     * for many time series at once instead of once per time series.
+     *
+     * @param names       The time series to retrieve
+     * @param startTime   The start of the time window
+     * @param endTime     The end of the time window
+     * @param trimMissing Whether to trim blocks of missing values from the beginning and end of the retrieved data
+     * @param unit        The unit to retrieve all time series in. If null, each time series is retrieved in the
+     *                    effective retrieve unit for its parameter
+     * @param sqldss      The SQLDSS object
+     * @return The retrieved time series, keyed by name in the iteration order of <code>names</code>
+     * @throws SqlDssException          If any time series is not found, is deleted, or is irregular, or if thrown
+     *                                  while decoding blocks
+     * @throws SQLException             If SQL error
+     * @throws EncodedDateTimeException If thrown by EncodedDateTime method
+     */
+    @NotNull
+    public static Map<String, TimeSeriesContainer> retrieveTimeSeriesValues(
+            @NotNull Collection<String> names,
+            long startTime,
+            long endTime,
+            boolean trimMissing,
+            String unit,
+            @NotNull SqlDss sqldss) throws SqlDssException, SQLException, EncodedDateTimeException {
+        Connection conn = sqldss.getConnection();
+        Map<String, RegularRetrieval> retrievals = new LinkedHashMap<>();
+        Map<Long, List<RegularRetrieval>> retrievalsByKey = new HashMap<>();
+        Map<String, String> siUnits = new HashMap<>();
+        //------------------------------------------------//
+        // parse the names and resolve the keys and units //
+        //------------------------------------------------//
+        for (String name : names) {
+            if (retrievals.containsKey(name)) {
+                continue;
+            }
+            if (isIrregular(name)) {
+                throw new SqlDssException("Irregular time series not supported in bulk retrieve: " + name);
+            }
+            RegularRetrieval retrieval = newRegularRetrieval(name);
+            long key = getTimeSeriesSpecKey(name, conn);
+            if (key < 0) {
+                throw new SqlDssException("No such time series: " + name);
+            }
+            String baseParameter = NameCache.fold(retrieval.tsc.parameter);
+            if (!siUnits.containsKey(baseParameter)) {
+                PreparedStatement ps = StatementCache.prepare(conn, "select default_si_unit from base_parameter where name = ?");
+                ps.setString(1, baseParameter);
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    siUnits.put(baseParameter, rs.getString("default_si_unit"));
+                }
+            }
+            retrieval.tsc.units = siUnits.get(baseParameter);
+            retrieval.key = key;
+            retrievals.put(name, retrieval);
+            retrievalsByKey.computeIfAbsent(key, k -> new ArrayList<>()).add(retrieval);
+        }
+        Long[] keys = retrievalsByKey.keySet().toArray(new Long[0]);
+        //---------------------------------------------------------------------//
+        // get the conversion to the retrieve unit, applied as blocks are read //
+        //---------------------------------------------------------------------//
+        Map<String, String> retrieveUnits = new HashMap<>();
+        Map<RegularRetrieval, String> retrieveUnitsByRetrieval = new HashMap<>();
+        for (RegularRetrieval retrieval : retrievals.values()) {
+            String retrieveUnit = unit;
+            if (retrieveUnit == null) {
+                String parameter = retrieval.name.split("\\|", 3)[1];
+                if (!retrieveUnits.containsKey(parameter)) {
+                    retrieveUnits.put(parameter, sqldss.getEffectiveRetrieveUnit(parameter));
+                }
+                retrieveUnit = retrieveUnits.get(parameter);
+            }
+            if (retrieveUnit != null && !retrieveUnit.equals(retrieval.tsc.units)) {
+                retrieval.conversion = UnitConversion.forUnits(retrieval.tsc.units, retrieveUnit, conn);
+            }
+            retrieveUnitsByRetrieval.put(retrieval, retrieveUnit);
+        }
+        //---------------------------------------------------//
+        // get the interval and offset of every time series  //
+        //---------------------------------------------------//
+        String sqlSpecs = String.format(
+                "select key, deleted, interval, interval_offset from time_series where key in (%s)",
+                String.join(",", Collections.nCopies(KEY_BATCH_SIZE, "?")));
+        for (int i = 0; i < keys.length; i += KEY_BATCH_SIZE) {
+            PreparedStatement ps = StatementCache.prepare(conn, sqlSpecs);
+            bindKeyBatch(ps, 1, keys, i);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    for (RegularRetrieval retrieval : retrievalsByKey.get(rs.getLong("key"))) {
+                        if (rs.getLong("deleted") == 1) {
+                            throw new SqlDssException("No such time series: " + retrieval.name);
+                        }
+                        setRegularRetrievalWindow(
+                                retrieval,
+                                retrieval.key,
+                                rs.getString("interval"),
+                                rs.getString("interval_offset"),
+                                startTime,
+                                endTime);
                     }
                 }
-                timeArrays[i] = new int[valueCount];
-                valueArrays[i] = new double[valueCount];
-                qualityArrays[i] = new int[valueCount];
-                if (intervalMinutes < MONTH_MINUTES) {
-                    int minutes = firstTime.value();
-                    for (int j = 0; j < valueCount; ++j) {
-                        timeArrays[i][j] = minutes;
-                        minutes += intervalMinutes;
-                        valueArrays[i][j] = values[j];
-                        qualityArrays[i][j] = qualities[j];
+            }
+        }
+        //--------------------------------------------------------------------------------//
+        // copy the blocks of time series that are completely cached, then get the blocks //
+        // for all other time series that share a range of block dates                    //
+        //--------------------------------------------------------------------------------//
+        BlockCache cache = BlockCache.forConnection(conn);
+        Map<Long, Map<Long, BlockCache.Block>> blocksToCache = cache.isEnabled() && conn.getAutoCommit() ? new HashMap<>() : null;
+        Map<List<Long>, List<Long>> keysByBlockRange = new LinkedHashMap<>();
+        for (Long key : keys) {
+            RegularRetrieval retrieval = retrievalsByKey.get(key).get(0);
+            if (retrieval.intervalName == null) {
+                throw new SqlDssException("No such time series: " + retrieval.name);
+            }
+            if (retrieval.count > 0) {
+                Map<Long, BlockCache.Block> cachedBlocks = getCachedBlocks(retrieval, cache);
+                if (cachedBlocks != null) {
+                    for (Map.Entry<Long, BlockCache.Block> entry : cachedBlocks.entrySet()) {
+                        for (RegularRetrieval r : retrievalsByKey.get(key)) {
+                            copyRegularBlock(r, entry.getKey(), entry.getValue());
+                        }
                     }
-                } else {
-                    HecTime t = new HecTime(firstTime);
-                    for (int j = 0; j < valueCount; ++j) {
-                        timeArrays[i][j] = t.value();
-                        t.increment(1, intervalMinutes);
-                        valueArrays[i][j] = values[j];
-                        qualityArrays[i][j] = qualities[j];
+                    continue;
+                }
+                if (blocksToCache != null) {
+                    blocksToCache.put(key, new HashMap<>());
+                }
+                keysByBlockRange.computeIfAbsent(
+                        List.of(retrieval.firstBlockStartDate, retrieval.lastBlockStartDate),
+                        k -> new ArrayList<>()).add(key);
+            }
+        }
+        String sqlBlocks = String.format("""
+                select time_series,
+                       block_start_date,
+                       deleted,
+                       data
+                  from tsv
+                 where time_series in (%s)
+                   and block_start_date between ? and ?
+                 order by time_series, block_start_date""",
+                String.join(",", Collections.nCopies(KEY_BATCH_SIZE, "?")));
+        for (Map.Entry<List<Long>, List<Long>> entry : keysByBlockRange.entrySet()) {
+            Long[] rangeKeys = entry.getValue().toArray(new Long[0]);
+            for (int i = 0; i < rangeKeys.length; i += KEY_BATCH_SIZE) {
+                PreparedStatement ps = StatementCache.prepare(conn, sqlBlocks);
+                bindKeyBatch(ps, 1, rangeKeys, i);
+                ps.setLong(KEY_BATCH_SIZE + 1, entry.getKey().get(0));
+                ps.setLong(KEY_BATCH_SIZE + 2, entry.getKey().get(1));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        if (rs.getLong("deleted") == 1) {
+                            continue;
+                        }
+                        long key = rs.getLong("time_series");
+                        long blockStartDate = rs.getLong("block_start_date");
+                        byte[] blob = rs.getBytes("data");
+                        if (blocksToCache == null) {
+                            for (RegularRetrieval retrieval : retrievalsByKey.get(key)) {
+                                decodeRegularBlock(retrieval, blockStartDate, blob);
+                            }
+                        }
+                        else {
+                            BlockCache.Block block = decodeBlock(blob);
+                            blocksToCache.get(key).put(blockStartDate, block);
+                            for (RegularRetrieval retrieval : retrievalsByKey.get(key)) {
+                                copyRegularBlock(retrieval, blockStartDate, block);
+                            }
+                        }
                     }
                 }
             }
         }
-        // concatenate arrays
-        int size = 0;
-        for (int[] a : timeArrays) size += a.length;
-        int[] times = new int[size];
-        double[] values = new double[size];
-        int[] qualities = new int[size];
-        int count = 0;
-        for (int i = 0; i < timeArrays.length; ++i) {
-            if (i > 0) {
-                if (intervalMinutes < 30 * DAY_MINUTES) {
-                    int nextTime = times[count - 1] + intervalMinutes;
-                    for (; nextTime < timeArrays[i][0]; nextTime += intervalMinutes, ++count) {
-                        if (count == size) {
-                            size *= 2;
-                            times = Arrays.copyOf(times, size);
-                            values = Arrays.copyOf(values, size);
-                            qualities = Arrays.copyOf(qualities, size);
-                        }
-                        times[count] = nextTime;
-                        values[count] = UNDEFINED_DOUBLE;
-                        qualities[count] = 0;
-                    }
-                } else {
-                    HecTime nextTime = new HecTime();
-                    for (nextTime.set(times[count - 1]); nextTime.value() < timeArrays[i][0]; nextTime.increment(1,
-                            intervalMinutes), ++count) {
-                        if (count == size) {
-                            size *= 2;
-                            times = Arrays.copyOf(times, size);
-                            values = Arrays.copyOf(values, size);
-                            qualities = Arrays.copyOf(qualities, size);
-                        }
-                        times[count] = nextTime.value();
-                        values[count] = UNDEFINED_DOUBLE;
-                        qualities[count] = 0;
-                    }
-                }
+        if (blocksToCache != null) {
+            for (Map.Entry<Long, Map<Long, BlockCache.Block>> entry : blocksToCache.entrySet()) {
+                cacheRegularBlocks(retrievalsByKey.get(entry.getKey()).get(0), entry.getValue(), cache);
+            }
+        }
+        //-----------------------------------//
+        // populate the TimeSeriesContainers //
+        //-----------------------------------//
+        Map<String, TimeSeriesContainer> results = new LinkedHashMap<>();
+        for (RegularRetrieval retrieval : retrievals.values()) {
+            TimeSeriesContainer tsc = finishRegularRetrieval(
+                    retrieval,
+                    startTime,
+                    endTime,
+                    retrieveUnitsByRetrieval.get(retrieval),
+                    conn);
+            if (trimMissing) {
+                trimTimeSeriesContainer(tsc);
+            }
+            results.put(retrieval.name, tsc);
+        }
+        return results;
+    }
+
+    /**
+     * Binds a batch of {@link #KEY_BATCH_SIZE} keys to consecutive parameters of a statement. If fewer keys remain,
+     * the last key is repeated so that every batch can use the same SQL text.
+     * @param ps The statement to bind the keys to
+     * @param firstParameter The index of the first parameter to bind
+     * @param keys The keys
+     * @param offset The index of the first key in the batch
+     * @throws SQLException If SQL error
+     */
+    static void bindKeyBatch(@NotNull PreparedStatement ps, int firstParameter, Long @NotNull [] keys, int offset) throws SQLException {
+        int last = Math.min(offset + KEY_BATCH_SIZE, keys.length) - 1;
+        for (int i = 0; i < KEY_BATCH_SIZE; ++i) {
+            ps.setLong(firstParameter + i, keys[Math.min(offset + i, last)]);
+        }
+    }
+
+    /**
+     * Creates the retrieval state for a regular time series, populating the name fields of its TimeSeriesContainer
+     * @param name The time series name
+     * @return The retrieval state
+     */
+    @NotNull
+    static RegularRetrieval newRegularRetrieval(@NotNull String name) {
+        RegularRetrieval retrieval = new RegularRetrieval();
+        TimeSeriesContainer tsc = new TimeSeriesContainer();
+        String[] nameParts = name.split("\\|", -1);
+        String locationName = nameParts[0];
+        String context = "";
+        if (locationName.indexOf(':') != -1) {
+            String[] parts = locationName.split(":", 2);
+            context = parts[0];
+            locationName = parts[1];
+        }
+        String baseLocationName = locationName;
+        String subLocationName = "";
+        if (locationName.indexOf('-') != -1) {
+            String[] parts = locationName.split("-", 2);
+            baseLocationName = parts[0];
+            subLocationName = parts[1];
+        }
+        String parameterName = nameParts[1];
+        String baseParameterName = parameterName;
+        String subParameterName = "";
+        if (parameterName.indexOf('-') != -1) {
+            String[] parts = parameterName.split("-", 2);
+            baseParameterName = parts[0];
+            subParameterName = parts[1];
+        }
+        tsc.setFullName(name);
+        tsc.watershed = context;
+        tsc.location = baseLocationName;
+        tsc.subLocation = subLocationName;
+        tsc.parameter = baseParameterName;
+        tsc.subParameter = subParameterName;
+        tsc.version = nameParts[5];
+        tsc.type = nameParts[2];
+        retrieval.name = name;
+        retrieval.tsc = tsc;
+        return retrieval;
+    }
+
+    /**
+     * Sets the interval, interval offset and time window of a regular time series retrieval and allocates its exactly
+     * sized output arrays
+     * @param retrieval The retrieval state
+     * @param key The time series specification key
+     * @param intervalName The interval name from the time series specification
+     * @param offsetStr The ISO 8601 interval offset from the time series specification
+     * @param startTime The start of the time window
+     * @param endTime The end of the time window
+     * @throws SqlDssException If the interval offset is not set or invalid, or the interval is invalid
+     * @throws EncodedDateTimeException If thrown by EncodedDateTime method
+     */
+    static void setRegularRetrievalWindow(
+            @NotNull RegularRetrieval retrieval,
+            long key,
+            String intervalName,
+            String offsetStr,
+            long startTime,
+            long endTime) throws SqlDssException, EncodedDateTimeException {
+        if (offsetStr == null || offsetStr.isEmpty()) {
+            throw new SqlDssException("Interval offset is not set for time series!");
+        }
+        int intervalMinutes = Interval.getIntervalMinutes(intervalName);
+        if (intervalMinutes == 0) {
+            throw new SqlDssException("Error getting interval minutes for " + retrieval.name);
+        }
+        retrieval.key = key;
+        retrieval.intervalName = intervalName;
+        retrieval.intervalMinutes = intervalMinutes;
+        retrieval.offsetMinutes = Duration.iso8601ToMinutes(offsetStr);
+        retrieval.tsc.interval = intervalMinutes;
+        // size the output exactly from the interval grid in the time window
+        retrieval.firstHecTime = getFirstIntervalTime(startTime, intervalMinutes, retrieval.offsetMinutes);
+        retrieval.firstTime = EncodedDateTime.encodeDateTime(retrieval.firstHecTime);
+        retrieval.count = retrieval.firstTime > endTime ? 0 : EncodedDateTime.intervalsBetween(
+                retrieval.firstTime,
+                endTime,
+                intervalMinutes) + 1;
+        retrieval.times = new int[retrieval.count];
+        retrieval.values = new double[retrieval.count];
+        retrieval.qualities = new int[retrieval.count];
+        retrieval.filled = 0;
+        if (retrieval.count > 0) {
+            retrieval.firstBlockStartDate = getBlockStartDate(retrieval.firstTime, intervalName);
+            retrieval.lastBlockStartDate = getBlockStartDate(endTime, intervalName);
+        }
+    }
+
+    /**
+     * Decodes a regular time series block directly into its slice of the retrieval output, converting it to the
+     * retrieve unit and filling any gap since the previously decoded block with missing values. Blocks must be decoded
+     * in block start date order.
+     * @param retrieval The retrieval state
+     * @param blockStartDate The block start date, for error messages
+     * @param blob The block data. If null, nothing is decoded
+     * @throws SqlDssException If the record type is not RTD or the block interval offset doesn't match the time series
+     * @throws EncodedDateTimeException If thrown by EncodedDateTime method
+     */
+    static void decodeRegularBlock(@NotNull RegularRetrieval retrieval, long blockStartDate, byte[] blob)
+            throws SqlDssException, EncodedDateTimeException {
+        int[] slice = decodeRegularSlice(retrieval, blockStartDate, blob);
+        if (slice != null) {
+            fillRegularGap(retrieval, slice[0], slice[1]);
+        }
+    }
+
+    /**
+     * Decodes a regular time series block directly into its slice of the retrieval output and converts it to the
+     * retrieve unit. Only the slice is modified, so blocks may be decoded concurrently and in any order.
+     * @param retrieval The retrieval state
+     * @param blockStartDate The block start date, for error messages
+     * @param blob The block data. If null, nothing is decoded
+     * @return The index in the output of the first decoded value and the number of values decoded, or null if nothing
+     * was decoded
+     * @throws SqlDssException If the record type is not RTD or the block interval offset doesn't match the time series
+     * @throws EncodedDateTimeException If thrown by EncodedDateTime method
+     */
+    static int @Nullable [] decodeRegularSlice(@NotNull RegularRetrieval retrieval, long blockStartDate, byte[] blob)
+            throws SqlDssException, EncodedDateTimeException {
+        if (blob == null || retrieval.count == 0) {
+            return null;
+        }
+        ByteBuffer buf = ByteBuffer.wrap(blob);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        TsvRecordHeader header = readRtdHeader(buf);
+        int[] slice = locateRegularBlock(retrieval, blockStartDate, header.firstTime, header.valueCount);
+        if (slice == null) {
+            return null;
+        }
+        int skip = slice[0];
+        int index = slice[1];
+        int blockCount = slice[2];
+        readRtdValues(buf, header, skip, retrieval.values, retrieval.qualities, index, blockCount);
+        if (retrieval.conversion != null) {
+            retrieval.conversion.convert(
+                    retrieval.values,
+                    header.hasQuality ? retrieval.qualities : null,
+                    index,
+                    index + blockCount,
+                    false);
+        }
+        return new int[]{index, blockCount};
+    }
+
+    /**
+     * Fills the gap in the retrieval output between the previously populated slice and a newly populated slice with
+     * missing values, and marks the output as populated through the new slice
+     * @param retrieval The retrieval state
+     * @param index The index in the output of the first value of the new slice
+     * @param count The number of values in the new slice
+     */
+    static void fillRegularGap(@NotNull RegularRetrieval retrieval, int index, int count) {
+        if (index > retrieval.filled) {
+            Arrays.fill(retrieval.values, retrieval.filled, index, UNDEFINED_DOUBLE);
+        }
+        retrieval.filled = index + count;
+    }
+
+    /**
+     * Decodes regular time series blocks concurrently on the common fork-join pool, each directly into its slice of
+     * the retrieval output, then fills the gaps between the slices with missing values
+     * @param retrieval The retrieval state
+     * @param blockStartDates The block start dates, in order
+     * @param blobs The block data, in the same order
+     * @throws SqlDssException If the record type of any block is not RTD, the interval offset of any block doesn't
+     * match the time series, or the decoding is interrupted
+     * @throws EncodedDateTimeException If thrown by EncodedDateTime method
+     */
+    static void decodeRegularBlocksInParallel(
+            @NotNull RegularRetrieval retrieval,
+            @NotNull List<Long> blockStartDates,
+            @NotNull List<byte[]> blobs) throws SqlDssException, EncodedDateTimeException {
+        int[][] slices = new int[blobs.size()][];
+        List<Callable<Void>> tasks = new ArrayList<>(blobs.size());
+        for (int i = 0; i < slices.length; ++i) {
+            int block = i;
+            tasks.add(() -> {
+                slices[block] = decodeRegularSlice(retrieval, blockStartDates.get(block), blobs.get(block));
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> future : ForkJoinPool.commonPool().invokeAll(tasks)) {
+                future.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SqlDssException("Interrupted while decoding blocks for " + retrieval.name, e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SqlDssException) {
+                throw (SqlDssException) cause;
+            }
+            if (cause instanceof EncodedDateTimeException) {
+                throw (EncodedDateTimeException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SqlDssException("Error decoding blocks for " + retrieval.name, cause);
+        }
+        for (int[] slice : slices) {
+            if (slice != null) {
+                fillRegularGap(retrieval, slice[0], slice[1]);
+            }
+        }
+        retrieval.parallel = true;
+    }
+
+    /**
+     * Copies a decoded regular time series block into its slice of the retrieval output, converting it to the retrieve
+     * unit and filling any gap since the previously copied block with missing values. Blocks must be copied in block
+     * start date order.
+     * @param retrieval The retrieval state
+     * @param blockStartDate The block start date, for error messages
+     * @param block The decoded block. If {@link BlockCache#EMPTY}, nothing is copied
+     * @throws SqlDssException If the block interval offset doesn't match the time series
+     * @throws EncodedDateTimeException If thrown by EncodedDateTime method
+     */
+    static void copyRegularBlock(@NotNull RegularRetrieval retrieval, long blockStartDate, BlockCache.@NotNull Block block)
+            throws SqlDssException, EncodedDateTimeException {
+        if (block.valueCount == 0 || retrieval.count == 0) {
+            return;
+        }
+        int[] slice = locateRegularBlock(retrieval, blockStartDate, block.firstTime, block.valueCount);
+        if (slice == null) {
+            return;
+        }
+        int skip = slice[0];
+        int index = slice[1];
+        int blockCount = slice[2];
+        System.arraycopy(block.values, skip, retrieval.values, index, blockCount);
+        if (block.qualities != null) {
+            System.arraycopy(block.qualities, skip, retrieval.qualities, index, blockCount);
+        }
+        if (retrieval.conversion != null) {
+            retrieval.conversion.convert(
+                    retrieval.values,
+                    block.qualities == null ? null : retrieval.qualities,
+                    index,
+                    index + blockCount,
+                    false);
+        }
+        fillRegularGap(retrieval, index, blockCount);
+    }
+
+    /**
+     * Decodes a regular time series block into primitive arrays, for the block cache
+     * @param blob The block data
+     * @return The decoded block, or {@link BlockCache#EMPTY} if <code>blob</code> is null
+     * @throws SqlDssException If the record type is not RTD
+     */
+    @NotNull
+    static BlockCache.Block decodeBlock(byte[] blob) throws SqlDssException {
+        if (blob == null) {
+            return BlockCache.EMPTY;
+        }
+        ByteBuffer buf = ByteBuffer.wrap(blob);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        TsvRecordHeader header = readRtdHeader(buf);
+        double[] values = new double[header.valueCount];
+        int[] qualities = header.hasQuality ? new int[header.valueCount] : null;
+        readRtdValues(buf, header, 0, values, qualities, 0, header.valueCount);
+        return new BlockCache.Block(header.firstTime, values, qualities);
+    }
+
+    /**
+     * Reads the values and quality codes of an RTD block of any version, using the block's codec. A deflated body is
+     * inflated first.
+     * @param buf The block data, in little-endian order, positioned after the header
+     * @param header The block header
+     * @param skip The number of block values to skip
+     * @param values The array to read the values into
+     * @param qualities The array to read the quality codes into, if the block has quality codes. If null, or if the
+     *                  block has no quality codes, the quality codes are not read
+     * @param index The index in the arrays of the first value read
+     * @param count The number of values to read
+     * @throws SqlDssException If the deflated body is invalid or if thrown by
+     * {@link BlockCodec#decode(ByteBuffer, int, boolean, int, double[], int[], int, int)}
+     */
+    static void readRtdValues(
+            @NotNull ByteBuffer buf,
+            @NotNull TsvRecordHeader header,
+            int skip,
+            double @NotNull [] values,
+            int[] qualities,
+            int index,
+            int count) throws SqlDssException {
+        ByteBuffer body = buf;
+        if (header.isDeflated) {
+            // inflated body length followed by the deflated body
+            int bodyStart = buf.arrayOffset() + buf.position();
+            try {
+                body = ByteBuffer.wrap(Util.inflateBytes(
+                        buf.array(),
+                        bodyStart + Integer.BYTES,
+                        buf.remaining() - Integer.BYTES,
+                        buf.getInt(buf.position())));
+            }
+            catch (IOException e) {
+                throw new SqlDssException(e);
+            }
+            body.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        header.codec.decode(body, header.valueCount, header.hasQuality, skip, values, qualities, index, count);
+    }
+
+    /**
+     * Reads the header of a block, leaving the buffer positioned at the first value
+     * @param buf The block data, in little-endian order
+     * @return The header
+     * @throws SqlDssException If the record type is not RTD
+     */
+    @NotNull
+    static TsvRecordHeader readRtdHeader(@NotNull ByteBuffer buf) throws SqlDssException {
+        TsvRecordHeader header = readHeader(buf);
+        if (header.redordType != RTD) {
+            throw new SqlDssException(String.format(
+                    "Expected data type of %d (%s), got %d",
+                    RTD.getCode(),
+                    RTD.name(),
+                    header.redordType.getCode()));
+        }
+        return header;
+    }
+
+    /**
+     * Locates the slice of the retrieval output that a block's values belong in, after verifying the block's interval
+     * offset
+     * @param retrieval The retrieval state
+     * @param blockStartDate The block start date, for error messages
+     * @param blockFirstTime The encoded date/time of the first value in the block
+     * @param valueCount The number of values in the block
+     * @return The number of block values to skip, the index in the output of the first value to use, and the number of
+     * values to use, or null if none of the block values are in the time window
+     * @throws SqlDssException If the block interval offset doesn't match the time series
+     * @throws EncodedDateTimeException If thrown by EncodedDateTime method
+     */
+    static int @Nullable [] locateRegularBlock(
+            @NotNull RegularRetrieval retrieval,
+            long blockStartDate,
+            long blockFirstTime,
+            int valueCount) throws SqlDssException, EncodedDateTimeException {
+        int intervalMinutes = retrieval.intervalMinutes;
+        HecTime blockFirstHecTime = EncodedDateTime.toHecTime(blockFirstTime);
+        HecTime intervalTime = new HecTime(blockFirstHecTime);
+        intervalTime.adjustToIntervalOffset(intervalMinutes, 0);
+        if (intervalTime.greaterThan(blockFirstHecTime)) {
+            intervalTime.subtractMinutes(intervalMinutes);
+        }
+        int thisOffset = (int) ((blockFirstHecTime.getTimeInMillis() - intervalTime.getTimeInMillis()) / 60000);
+        if (thisOffset != retrieval.offsetMinutes) {
+            throw new SqlDssException(String.format(
+                    "Interval offset for block starting at %d (%d) doesn't match offset for time series (%d)",
+                    blockStartDate, thisOffset, retrieval.offsetMinutes));
+        }
+        // locate the block values in the output
+        int skip = 0;
+        int index = 0;
+        if (blockFirstTime < retrieval.firstTime) {
+            skip = EncodedDateTime.intervalsBetween(blockFirstTime, retrieval.firstTime, intervalMinutes);
+        }
+        else {
+            index = EncodedDateTime.intervalsBetween(retrieval.firstTime, blockFirstTime, intervalMinutes);
+        }
+        int blockCount = Math.min(valueCount - skip, retrieval.count - index);
+        if (blockCount <= 0) {
+            return null;
+        }
+        return new int[]{skip, index, blockCount};
+    }
+
+    /**
+     * Generates the start dates of every block in the time window of a regular time series retrieval
+     * @param retrieval The retrieval state
+     * @return The block start dates, in order
+     * @throws SqlDssException If thrown by {@link Interval#getBlockSizeMinutes(String)}
+     * @throws EncodedDateTimeException If thrown by EncodedDateTime method
+     */
+    static long @NotNull [] getRetrievalBlockStartDates(@NotNull RegularRetrieval retrieval)
+            throws SqlDssException, EncodedDateTimeException {
+        int blockMinutes = Interval.getBlockSizeMinutes(retrieval.intervalName);
+        List<Long> dates = new ArrayList<>();
+        long blockStartTime = EncodedDateTime.toEncodedDateTime(retrieval.firstBlockStartDate);
+        long lastBlockStartTime = EncodedDateTime.toEncodedDateTime(retrieval.lastBlockStartDate);
+        while (blockStartTime <= lastBlockStartTime) {
+            dates.add(EncodedDateTime.toEncodedDate(blockStartTime));
+            blockStartTime = EncodedDateTime.incrementEncodedDateTime(blockStartTime, blockMinutes, 1);
+        }
+        long[] blockStartDates = new long[dates.size()];
+        for (int i = 0; i < blockStartDates.length; ++i) {
+            blockStartDates[i] = dates.get(i);
+        }
+        return blockStartDates;
+    }
+
+    /**
+     * Retrieves every block in the time window of a regular time series retrieval from the block cache
+     * @param retrieval The retrieval state
+     * @param cache The block cache
+     * @return The cached blocks by block start date, in order, or null if the cache is disabled or any block is not
+     * cached
+     * @throws SqlDssException If thrown by {@link #getRetrievalBlockStartDates(RegularRetrieval)}
+     * @throws EncodedDateTimeException If thrown by EncodedDateTime method
+     */
+    static @Nullable Map<Long, BlockCache.Block> getCachedBlocks(@NotNull RegularRetrieval retrieval, @NotNull BlockCache cache)
+            throws SqlDssException, EncodedDateTimeException {
+        if (!cache.isEnabled()) {
+            return null;
+        }
+        Map<Long, BlockCache.Block> blocks = new LinkedHashMap<>();
+        for (long blockStartDate : getRetrievalBlockStartDates(retrieval)) {
+            BlockCache.Block block = cache.get(retrieval.key, blockStartDate);
+            if (block == null) {
+                return null;
+            }
+            blocks.put(blockStartDate, block);
+        }
+        return blocks;
+    }
+
+    /**
+     * Adds every block in the time window of a regular time series retrieval to the block cache, caching blocks that
+     * were not read as {@link BlockCache#EMPTY}
+     * @param retrieval The retrieval state
+     * @param blocks The blocks that were read, by block start date
+     * @param cache The block cache
+     * @throws SqlDssException If thrown by {@link #getRetrievalBlockStartDates(RegularRetrieval)}
+     * @throws EncodedDateTimeException If thrown by EncodedDateTime method
+     */
+    static void cacheRegularBlocks(
+            @NotNull RegularRetrieval retrieval,
+            @NotNull Map<Long, BlockCache.Block> blocks,
+            @NotNull BlockCache cache) throws SqlDssException, EncodedDateTimeException {
+        for (long blockStartDate : getRetrievalBlockStartDates(retrieval)) {
+            cache.put(retrieval.key, blockStartDate, blocks.getOrDefault(blockStartDate, BlockCache.EMPTY));
+        }
+    }
+
+    /**
+     * Completes a regular time series retrieval: fills trailing missing values, generates the times, populates the
+     * TimeSeriesContainer and converts it to the retrieve unit if it was not converted as its blocks were decoded
+     * @param retrieval The retrieval state
+     * @param startTime The start of the time window
+     * @param endTime The end of the time window
+     * @param unit The unit to retrieve the values in
+     * @param conn The JDBC connection
+     * @return The populated TimeSeriesContainer
+     * @throws SqlDssException If thrown by {@link Unit#convertUnits(TimeSeriesContainer, String, Connection)}
+     * @throws SQLException If thrown by {@link Unit#convertUnits(TimeSeriesContainer, String, Connection)}
+     * @throws EncodedDateTimeException If thrown by EncodedDateTime method
+     */
+    @NotNull
+    static TimeSeriesContainer finishRegularRetrieval(
+            @NotNull RegularRetrieval retrieval,
+            long startTime,
+            long endTime,
+            String unit,
+            Connection conn) throws SqlDssException, SQLException, EncodedDateTimeException {
+        TimeSeriesContainer tsc = retrieval.tsc;
+        int count = retrieval.count;
+        int intervalMinutes = retrieval.intervalMinutes;
+        int[] times = retrieval.times;
+        if (retrieval.filled < count) {
+            Arrays.fill(retrieval.values, retrieval.filled, count, UNDEFINED_DOUBLE);
+        }
+        // generate the times
+        if (intervalMinutes < MONTH_MINUTES) {
+            int minutes = count > 0 ? retrieval.firstHecTime.value() : 0;
+            if (retrieval.parallel) {
+                IntStream.range(0, count).parallel().forEach(i -> times[i] = minutes + i * intervalMinutes);
             }
-            for (int j = 0; j < timeArrays[i].length; ++j, ++count) {
-                if (count == size) {
-                    size *= 2;
-                    times = Arrays.copyOf(times, size);
-                    values = Arrays.copyOf(values, size);
-                    qualities = Arrays.copyOf(qualities, size);
+            else {
+                for (int i = 0; i < count; ++i) {
+                    times[i] = minutes + i * intervalMinutes;
                 }
-                times[count] = timeArrays[i][j];
-                values[count] = valueArrays[i][j];
-                qualities[count] = qualityArrays[i][j];
             }
         }
-        // populate TimeSeriesContainer
-        if (count == size) {
-            tsc.times = times;
-            tsc.setValues(values);
-            tsc.setQuality(qualities);
-        } else {
-            tsc.times = Arrays.copyOf(times, count);
-            tsc.setValues(Arrays.copyOf(values, count));
-            tsc.setQuality(Arrays.copyOf(qualities, count));
+        else {
+            HecTime t = new HecTime(retrieval.firstHecTime);
+            for (int i = 0; i < count; ++i) {
+                times[i] = t.value();
+                t.increment(1, intervalMinutes);
+            }
         }
+        // populate TimeSeriesContainer
+        tsc.times = times;
+        tsc.setValues(retrieval.values);
+        tsc.setQuality(retrieval.qualities);
         tsc.numberValues = count;
-        tsc.setStartTime(startHecTime);
-        tsc.setEndTime(endHecTime);
+        tsc.setStartTime(EncodedDateTime.toHecTime(startTime));
+        tsc.setEndTime(EncodedDateTime.toHecTime(endTime));
         if (unit != null && !unit.equals(tsc.units)) {
-            Unit.convertUnits(tsc, unit, conn);
+            if (retrieval.conversion == null) {
+                Unit.convertUnits(tsc, unit, conn);
+            }
+            else {
+                tsc.units = unit;
+            }
         }
         return tsc;
     }
@@ -810,7 +2243,10 @@ public final class TimeSeries {
         blockInfo.firstTime = firstTime;
         blockInfo.lastTime = lastTime;
         blockInfo.minValue = Double.MAX_VALUE;
-        blockInfo.maxValue = Double.MIN_VALUE;
+        blockInfo.maxValue = -Double.MAX_VALUE;
+        blockInfo.validCount = 0;
+        blockInfo.sum = 0;
+        blockInfo.sumOfSquares = 0;
         if (qualities == null) {
             for (int i = valueOffset; i < valueOffset + count; ++i) {
                 if (values[i] != UNDEFINED_DOUBLE) {
@@ -820,6 +2256,9 @@ public final class TimeSeries {
                     if (values[i] > blockInfo.maxValue) {
                         blockInfo.maxValue = values[i];
                     }
+                    ++blockInfo.validCount;
+                    blockInfo.sum += values[i];
+                    blockInfo.sumOfSquares += values[i] * values[i];
                 }
             }
         } else {
@@ -833,12 +2272,82 @@ public final class TimeSeries {
                     if (values[i] > blockInfo.maxValue) {
                         blockInfo.maxValue = values[i];
                     }
+                    ++blockInfo.validCount;
+                    blockInfo.sum += values[i];
+                    blockInfo.sumOfSquares += values[i] * values[i];
                 }
             }
         }
         blockInfo.lastUpdate = System.currentTimeMillis();
     }
 
+    /**
+     * Adds the value statistics columns to the TSV_INFO table of a file created before they existed and recomputes the
+     * information of every block that has block information. The minimum and maximum values are recomputed as well,
+     * since files written before the columns existed could have recorded an incorrect maximum for blocks with only
+     * negative values. Has no effect if the columns already exist.
+     * @param conn The JDBC connection
+     * @throws SQLException If SQL error
+     * @throws SqlDssException If a block cannot be decoded
+     */
+    static void upgradeTsvInfo(@NotNull Connection conn) throws SQLException, SqlDssException {
+        boolean isAutoCommit = conn.getAutoCommit();
+        if (isAutoCommit) {
+            conn.setAutoCommit(false);
+        }
+        try {
+            if (Init.upgradeTsvInfoTable(conn)) {
+                try (PreparedStatement psSelect = conn.prepareStatement(SQL_SELECT_ALL_TS_BLOCKS_WITH_INFO);
+                     PreparedStatement psUpdate = conn.prepareStatement(SQL_UPDATE_TS_INFO_STATISTICS);
+                     ResultSet rs = psSelect.executeQuery()) {
+                    TsvInfo info = new TsvInfo();
+                    while (rs.next()) {
+                        BlockCache.Block block = decodeBlock(rs.getBytes("data"));
+                        populateTsvInfo(
+                                info,
+                                block.valueCount,
+                                rs.getLong("first_time"),
+                                rs.getLong("last_time"),
+                                block.values,
+                                block.qualities,
+                                0);
+                        psUpdate.setLong(1, info.valueCount);
+                        if (info.minValue > info.maxValue) {
+                            // no non-missing values
+                            psUpdate.setNull(2, Types.REAL);
+                            psUpdate.setNull(3, Types.REAL);
+                        }
+                        else {
+                            psUpdate.setDouble(2, info.minValue);
+                            psUpdate.setDouble(3, info.maxValue);
+                        }
+                        psUpdate.setLong(4, info.validCount);
+                        psUpdate.setDouble(5, info.sum);
+                        psUpdate.setDouble(6, info.sumOfSquares);
+                        psUpdate.setLong(7, rs.getLong("time_series"));
+                        psUpdate.setLong(8, rs.getLong("block_start_date"));
+                        psUpdate.addBatch();
+                    }
+                    psUpdate.executeBatch();
+                }
+            }
+            if (isAutoCommit) {
+                conn.commit();
+            }
+        }
+        catch (SQLException | SqlDssException e) {
+            if (isAutoCommit) {
+                conn.rollback();
+            }
+            throw e;
+        }
+        finally {
+            if (isAutoCommit) {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
     /**
      * Store irregular interval time series values
      * @param tsc The time series to store
@@ -869,6 +2378,123 @@ public final class TimeSeries {
             @NotNull TimeSeriesContainer tsc,
             REGULAR_STORE_RULE storeRule,
             Connection conn
+    ) throws SqlDssException, SQLException, EncodedDateTimeException {
+        List<BlockWrite> writes = new ArrayList<>();
+        prepareRegularBlockWrites(tsc, storeRule, writes, conn);
+        writeBlocks(writes, conn);
+    }
+
+    /**
+     * Store multiple time series in a single transaction. The blocks of all time series are written with batched
+     * upsert statements after every time series has been merged with any existing data. Each time series is stored
+     * under a savepoint, so one that fails leaves no rows behind. If auto-commit is on, the transaction is committed on
+     * success and rolled back on any exception thrown; otherwise the caller controls the transaction.
+     * @param tscs The time series to store
+     * @param storeRule The store rule to use for every time series
+     * @param sqldss The SqlDss object
+     * @return The time series that could not be stored, keyed by name, with the exception that prevented storing each.
+     * Every time series not in the map was stored successfully.
+     * @throws SQLException If SQL error. No time series are stored if auto-commit is on.
+     */
+    @NotNull
+    public static Map<String, Exception> storeTimeSeriesValues(
+            @NotNull Collection<TimeSeriesContainer> tscs,
+            String storeRule,
+            @NotNull SqlDss sqldss) throws SQLException {
+        Connection conn = sqldss.getConnection();
+        Map<String, Exception> failures = new LinkedHashMap<>();
+        List<BlockWrite> writes = new ArrayList<>();
+        Set<String> preparedNames = new HashSet<>();
+        boolean isAutoCommit = conn.getAutoCommit();
+        if (isAutoCommit) {
+            conn.setAutoCommit(false);
+        }
+        try {
+            for (TimeSeriesContainer tsc : tscs) {
+                //----------------------------------------------------------------------------------//
+                // write the blocks of an earlier time series of the same name before the savepoint //
+                //----------------------------------------------------------------------------------//
+                if (!preparedNames.add(NameCache.fold(tsc.fullName))) {
+                    writeBlocks(writes, conn);
+                }
+                Savepoint savepoint = conn.setSavepoint();
+                try {
+                    if (isIrregular(tsc.fullName)) {
+                        IRREGULAR_STORE_RULE sr = IRREGULAR_STORE_RULE.valueOf(storeRule.toUpperCase());
+                        storeIrregularTimeSeriesValues(tsc, sr, conn);
+                    }
+                    else {
+                        REGULAR_STORE_RULE sr = REGULAR_STORE_RULE.valueOf(storeRule.toUpperCase());
+                        prepareRegularBlockWrites(tsc, sr, writes, conn);
+                    }
+                    conn.releaseSavepoint(savepoint);
+                }
+                catch (SqlDssException | EncodedDateTimeException | IllegalArgumentException e) {
+                    rollbackAndClearCaches(savepoint, conn);
+                    failures.put(tsc.fullName, e);
+                }
+                catch (SQLException | RuntimeException e) {
+                    rollbackAndClearCaches(savepoint, conn);
+                    throw e;
+                }
+            }
+            writeBlocks(writes, conn);
+            if (isAutoCommit) {
+                conn.commit();
+            }
+        }
+        catch (Exception e) {
+            if (isAutoCommit) {
+                rollbackAndClearCaches(null, conn);
+            }
+            throw e;
+        }
+        finally {
+            if (isAutoCommit) {
+                conn.setAutoCommit(true);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Rolls back the current transaction or to a savepoint, and discards the cached name keys and blocks of the
+     * connection, which may refer to rows written by the rolled-back statements
+     * @param savepoint The savepoint to roll back to, or null to roll back the whole transaction
+     * @param conn The JDBC connection
+     * @throws SQLException If SQL error
+     */
+    private static void rollbackAndClearCaches(@Nullable Savepoint savepoint, @NotNull Connection conn)
+            throws SQLException {
+        if (savepoint == null) {
+            conn.rollback();
+        }
+        else {
+            conn.rollback(savepoint);
+            conn.releaseSavepoint(savepoint);
+        }
+        NameCache.forConnection(conn).clear(conn);
+        BlockCache.forConnection(conn).clear();
+    }
+
+    /**
+     * Merges regular interval time series values with any existing blocks and adds the resulting blocks to a list of
+     * pending block writes. The time series specification and interval offset are stored immediately. If
+     * <code>writes</code> already contains blocks for the same time series, they are written first so the merge sees
+     * them.
+     * @param tsc The time series to store
+     * @param storeRule The store rule to use
+     * @param writes The pending block writes
+     * @param conn The JDBC connection
+     * @throws SqlDssException If problem with time series name, interval, etc...
+     * @throws SQLException If SQL error
+     * @throws EncodedDateTimeException Tf thrown by an {@link EncodedDateTime} method
+     */
+    static void prepareRegularBlockWrites(
+            @NotNull TimeSeriesContainer tsc,
+            REGULAR_STORE_RULE storeRule,
+            @NotNull List<BlockWrite> writes,
+            Connection conn
     ) throws SqlDssException, SQLException, EncodedDateTimeException {
         // parse the name
         String[] parts = tsc.fullName.split("\\|", -1);
@@ -884,7 +2510,7 @@ public final class TimeSeries {
         }
         else {
             HecTime t = new HecTime(tsc.getStartTime());
-            for (int i = 0; ; t.increment(1, intervalMinutes), ++i) {
+            for (int i = 0; i < tsc.numberValues; t.increment(1, intervalMinutes), ++i) {
                 if (t.value() != tsc.times[i]) {
                     throw new SqlDssException("Time series is not regular interval");
                 }
@@ -898,28 +2524,30 @@ public final class TimeSeries {
             toZone = ZoneId.of("UTC");
         }
         // get the unit conversion
-        double[] unitConvFactor = new double[1];
-        double[] unitConvOffset = new double[1];
-        String[] unitConvFunction = new String[1];
-        Unit.getUnitConverisonForStoring(
-                tsc.units,
-                tsc.parameter,
-                unitConvFactor,
-                unitConvOffset,
-                unitConvFunction,
-                conn);
-        boolean mustConvert = (
-                unitConvFunction[0] != null && !unitConvFunction[0].isEmpty()) ||
-                !(unitConvFactor[0] == 1.0 && unitConvOffset[0] == 0.);
+        UnitConversion unitConversion = Unit.getUnitConversionForStoring(tsc.units, tsc.parameter, conn);
         // store the time series spec or get the key if already exists
         long key = putTimeSeriesSpec(tsc.fullName, conn);
+        // a time series created during a bulk load has no existing offset or blocks to read
+        boolean isNew = NameCache.forConnection(conn).removeNewTimeSeries(key);
+        BlockFormat format = BlockFormat.forConnection(conn);
+        BlockCodec rtdCodec = BlockCodecs.get(RTD, format.getRtdVersion());
+        int compressionLevel = format.getCompressionLevel(intervalName);
+        double compressionRatio = format.getCompressionRatio();
+        for (BlockWrite write : writes) {
+            if (write.key == key) {
+                writeBlocks(writes, conn);
+                break;
+            }
+        }
         // verify interval offset against database
         String existingOffsetStr = null;
         HecTime t = new HecTime(tsc.getStartTime());
         t.adjustToIntervalOffset(intervalMinutes, 0);
         int tscOffsetMinutes = (int) ((t.getTimeInMillis() - tsc.getStartTime().getTimeInMillis()) / 60000L);
         int existingOffsetMinutes = -1;
-        try (PreparedStatement ps = conn.prepareStatement("select interval_offset from time_series where key = ?")) {
+        PreparedStatement ps;
+        if (!isNew) {
+            ps = StatementCache.prepare(conn, "select interval_offset from time_series where key = ?");
             ps.setLong(1, key);
             try (ResultSet rs = ps.executeQuery()) {
                 rs.next();
@@ -932,7 +2560,7 @@ public final class TimeSeries {
                 throw new SqlDssException("Expected interval offset of " + existingOffsetMinutes + ", got " + tscOffsetMinutes);
             }
         }
-        // prepare arrays
+        // prepare arrays, converting the values to the storage unit once
         long[] encodedTimes = new long[tsc.numberValues];
         for (int i = 0; i < tsc.numberValues; ++i) {
             encodedTimes[i] = EncodedDateTime.encodeDateTime(tsc.times[i]);
@@ -945,6 +2573,7 @@ public final class TimeSeries {
         if (tsc.quality != null && Arrays.stream(tsc.quality).anyMatch(q -> q != 0)) {
             qualities = Arrays.copyOf(tsc.quality, tsc.numberValues);
         }
+        unitConversion.convert(values, qualities, values.length, true);
         // determine blocks
         long[] encodedBlockDates = getBlockStartDates(tsc.startHecTime, tsc.endHecTime, intervalName);
         long[] encodedBlockTimes = Arrays.stream(encodedBlockDates).map(EncodedDateTime::toEncodedDateTime).toArray();
@@ -959,152 +2588,81 @@ public final class TimeSeries {
             }
             blockCounts[j]++;
         }
-        // store the time series values
-        boolean deleted;
-        byte[] blob;
-        byte format = (byte) RTD.getCode();
-        byte version = 1;
-        byte hasQuality = 0;
-        for (int i = 0; i < encodedBlockDates.length - 1; ++i) {
-            // retrieve any existing blob for the start date
-            try (PreparedStatement ps = conn.prepareStatement(String.format(SQL_SELECT_TS_BLOCK, key))) {
-                ps.setLong(1, encodedBlockDates[i]);
-                try (ResultSet rs = ps.executeQuery()) {
-                    rs.next();
-                    deleted = rs.getLong("deleted") == 1;
-                    blob = rs.getBytes("data");
+        // get the extents of all existing, non-deleted blocks in the time window in a single range scan, without
+        // reading any blobs
+        Map<Long, long[]> existingExtents = new HashMap<>();
+        if (!isNew && encodedBlockDates.length > 1) {
+            ps = StatementCache.prepare(conn, SQL_SELECT_TS_BLOCK_EXTENTS);
+            ps.setLong(1, key);
+            ps.setLong(2, encodedBlockDates[0]);
+            ps.setLong(3, encodedBlockDates[encodedBlockDates.length - 2]);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    long first = rs.getLong("first_time");
+                    boolean noInfo = rs.wasNull();
+                    long last = rs.getLong("last_time");
+                    existingExtents.put(rs.getLong("block_start_date"), noInfo ? null : new long[]{first, last});
                 }
             }
+        }
+        boolean replaceAll = storeRule == REGULAR_STORE_RULE.REPLACE_ALL
+                || storeRule == REGULAR_STORE_RULE.REPLACE_ALL_CREATE
+                || storeRule == REGULAR_STORE_RULE.REPLACE_ALL_DELETE;
+        // get the rollups to keep up to date with the blocks
+        List<String> rollupResolutions = isNew ? Collections.emptyList() : Rollup.getRollupResolutions(key, conn);
+        // merge each block with any existing data
+        List<BlockWrite> seriesWrites = new ArrayList<>();
+        for (int i = 0; i < encodedBlockDates.length - 1; ++i) {
             long firstTime = EncodedDateTime.encodeDateTime(tsc.times[blockStarts[i]]);
-            TsvInfo blockInfo = new TsvInfo();
-            if (deleted || blob == null) {
-                //------------------------------------//
-                // record is deleted or doesn't exist //
-                //------------------------------------//
-                // create the blob
-                int size = Byte.BYTES                       // data type
-                        + Byte.BYTES                            // data type version
-                        + Integer.BYTES                         // value count
-                        + Byte.BYTES                            // has quality?
-                        + Long.BYTES                            // date/time of first value
-                        + blockCounts[i] * Double.BYTES;        // values
-                if (tsc.quality != null) {
-                    for (int j = 0; j < tsc.numberValues; ++j) {
-                        if (tsc.quality[j] != 0) {
-                            size += blockCounts[i] * Integer.BYTES; // quality codes
-                            hasQuality = 1;
-                            break;
-                        }
+            BlockWrite write = new BlockWrite();
+            write.key = key;
+            write.blockStartDate = encodedBlockDates[i];
+            byte[] blob = null;
+            if (existingExtents.containsKey(encodedBlockDates[i])) {
+                long[] extents = existingExtents.get(encodedBlockDates[i]);
+                boolean covered = replaceAll
+                        && extents != null
+                        && encodedTimes[blockStarts[i]] <= extents[0]
+                        && encodedTimes[blockStarts[i] + blockCounts[i] - 1] >= extents[1];
+                if (!covered) {
+                    ps = StatementCache.prepare(conn, SQL_SELECT_TS_BLOCK);
+                    ps.setLong(1, key);
+                    ps.setLong(2, encodedBlockDates[i]);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        rs.next();
+                        blob = rs.getBytes("data");
                     }
                 }
+            }
+            if (blob == null) {
+                //-------------------------------------------------------------------------------//
+                // record is deleted, doesn't exist, or will be completely replaced: write as is //
+                //-------------------------------------------------------------------------------//
                 populateTsvInfo(
-                        blockInfo,
+                        write.info,
                         blockCounts[i],
                         firstTime,
                         EncodedDateTime.incrementEncodedDateTime(firstTime, intervalMinutes, blockCounts[i] - 1),
-                        tsc.values,
-                        tsc.quality,
+                        values,
+                        qualities,
                         blockStarts[i]
                 );
-                ByteBuffer buf = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
-                buf.put(format);
-                buf.put(version);
-                buf.putInt(blockCounts[i]);
-                buf.put(hasQuality);
-                buf.putLong(firstTime);
-                for (int j = blockStarts[i]; j < blockStarts[i] + blockCounts[i]; ++j) {
-                    double value = tsc.values[j];
-                    int quality = hasQuality == 1 ? tsc.quality[j] : 0;
-                    if (mustConvert
-                            && value != UNDEFINED_DOUBLE
-                            && (quality & QUALITY_SCREENED_VALIDITY_MASK) != QUALITY_MISSING_VALUE
-                            && (quality & QUALITY_SCREENED_VALIDITY_MASK) != QUALITY_REJECTED_VALUE) {
-                        value = Unit.performConversion(value, unitConvFactor[0], unitConvOffset[0], unitConvFunction[0]);
-                    }
-                    buf.putDouble(value);
-                }
-                if (hasQuality != 0) {
-                    for (int j = blockStarts[i]; j < blockStarts[i] + blockCounts[i]; ++j) {
-                        buf.putInt(tsc.quality[j]);
-                    }
-                }
-                blob = buf.array();
-                if (deleted) {
-                    // overwrite the existing the blob
-                    try (PreparedStatement ps = conn.prepareStatement(
-                            "update tsv set deleted = 0, data=? where time_series=? and block_start_date=?"
-                    )) {
-                        ps.setBytes(1, blob);
-                        ps.setLong(2, key);
-                        ps.setLong(3, encodedBlockDates[i]);
-                        ps.executeUpdate();
-                    }
-                    // overwrite the existing the block info
-                    try (PreparedStatement ps = conn.prepareStatement(
-                            """
-                                    update tsv_info
-                                       set value_count = ?,
-                                           first_time  = ?,
-                                           last_time   = ?,
-                                           min_value   = ?,
-                                           max_value   = ?,
-                                           last_update = ?
-                                     where time_series = ?
-                                       and block_start_date = ?"""
-                    )) {
-                        ps.setLong(1, blockInfo.valueCount);
-                        ps.setLong(2, blockInfo.firstTime);
-                        ps.setLong(3, blockInfo.lastTime);
-                        ps.setDouble(4, blockInfo.minValue);
-                        ps.setDouble(5, blockInfo.maxValue);
-                        ps.setLong(6, blockInfo.lastUpdate);
-                        ps.setLong(7, key);
-                        ps.setLong(8, encodedBlockDates[i]);
-                        ps.executeUpdate();
-                    }
-                }
-                else {
-                    // insert the blob
-                    try (PreparedStatement ps = conn.prepareStatement("""
-                            insert
-                              into tsv
-                                   (time_series,
-                                    block_start_date,
-                                    deleted,
-                                    data
-                                   )
-                            values (?, ?, 0, ?)""" 
-                    )) {
-                        ps.setLong(1, key);
-                        ps.setLong(2, encodedBlockDates[i]);
-                        ps.setBytes(3, blob);
-                        ps.executeUpdate();
-                    }
-                    // insert the block info
-                    try (PreparedStatement ps = conn.prepareStatement("""
-                            insert
-                             into tsv_info
-                                  (time_series,
-                                   block_start_date,
-                                   value_count,
-                                   first_time,
-                                   last_time,
-                                   min_value,
-                                   max_value,
-                                   last_update
-                                  )
-                           values (?, ?, ?, ? , ?, ?, ?, ?)"""
-                    )) {
-                        ps.setLong(1, key);
-                        ps.setLong(2, encodedBlockDates[i]);
-                        ps.setLong(3, blockInfo.valueCount);
-                        ps.setLong(4, blockInfo.firstTime);
-                        ps.setLong(5, blockInfo.lastTime);
-                        ps.setDouble(6, blockInfo.minValue);
-                        ps.setDouble(7, blockInfo.maxValue);
-                        ps.setLong(8, blockInfo.lastUpdate);
-                        ps.executeUpdate();
+                write.data = deflateRtdBlock(
+                        encodeRtdBlock(rtdCodec, firstTime, values, qualities, blockStarts[i], blockCounts[i]),
+                        compressionLevel,
+                        compressionRatio);
+                for (String resolution : rollupResolutions) {
+                    if (write.rollups == null) {
+                        write.rollups = new LinkedHashMap<>();
                     }
+                    write.rollups.put(resolution, Rollup.encodeRollup(
+                            firstTime,
+                            values,
+                            qualities,
+                            blockStarts[i],
+                            blockCounts[i],
+                            intervalMinutes,
+                            Interval.getIntervalMinutes(resolution)));
                 }
             }
             else {
@@ -1115,34 +2673,17 @@ public final class TimeSeries {
                 HecTime firstIncomingTime = new HecTime();
                 firstIncomingTime.set(tsc.times[blockStarts[i]]);
                 HecTime intervalTime = new HecTime(firstIncomingTime);
+                intervalTime.adjustToIntervalOffset(intervalMinutes, 0);
                 if (intervalTime.greaterThan(firstIncomingTime)) {
                     intervalTime.subtractMinutes(intervalMinutes);
                 }
                 int incomingOffset =
-                        (int) ((intervalTime.getTimeInMillis() - firstIncomingTime.getTimeInMillis()) / 60000);
+                        (int) ((firstIncomingTime.getTimeInMillis() - intervalTime.getTimeInMillis()) / 60000);
                 ByteBuffer buf = ByteBuffer.wrap(blob);
                 buf.order(ByteOrder.LITTLE_ENDIAN);
-                int bufPosition = 0;
-                byte dataType = buf.get(bufPosition);
-                bufPosition += Byte.BYTES;
-                if (dataType != RTD.getCode()) {
-                    throw new SqlDssException(String.format(
-                            "Expected data type of %d (%s), got %d",
-                            RTD.getCode(),
-                            RTD.name(),
-                            dataType));
-                }
-                byte dataTypeVersion = buf.get(bufPosition);
-                bufPosition += Byte.BYTES;
-                if (dataTypeVersion != 1) {
-                    throw new SqlDssException("Don't know how to decode RTD version " + dataTypeVersion);
-                }
-                int valueCount = buf.getInt(bufPosition);
-                bufPosition += Integer.BYTES;
-                hasQuality = buf.get(bufPosition);
-                bufPosition += Byte.BYTES;
-                long encodedFirstTime = buf.getLong(bufPosition);
-                bufPosition += Long.BYTES;
+                TsvRecordHeader header = readRtdHeader(buf);
+                int valueCount = header.valueCount;
+                long encodedFirstTime = header.firstTime;
                 HecTime firstExistingTime = EncodedDateTime.toHecTime(encodedFirstTime);
                 intervalTime = new HecTime(firstExistingTime);
                 intervalTime.adjustToIntervalOffset(intervalMinutes, 0);
@@ -1159,17 +2700,8 @@ public final class TimeSeries {
                     ));
                 }
                 double[] existingValues = new double[valueCount];
-                for (int j = 0; j < valueCount; ++j) {
-                    existingValues[j] = buf.getDouble(bufPosition);
-                    bufPosition += Double.BYTES;
-                }
                 int[] existingQualities = new int[valueCount];
-                if (hasQuality != 0) {
-                    for (int j = 0; j < valueCount; ++j) {
-                        existingQualities[j] = buf.getInt(bufPosition);
-                        bufPosition += Integer.BYTES;
-                    }
-                }
+                readRtdValues(buf, header, 0, existingValues, existingQualities, 0, valueCount);
                 long[] existingEncodedTimes = EncodedDateTime.makeRegularEncodedDateTimeArray(encodedFirstTime,
                         valueCount, intervalMinutes);
                 // merge the data according to the store rule
@@ -1186,30 +2718,6 @@ public final class TimeSeries {
                 existing.offset = 0;
                 existing.count = existingValues.length;
                 TsvData merged = new TsvData();
-                if (mustConvert) {
-                    if (incoming.qualities == null) {
-                        for (int j = incoming.offset; j < incoming.offset + incoming.count; ++j) {
-                            if (incoming.values[j] != UNDEFINED_DOUBLE) {
-                                incoming.values[j] = Unit.performConversion(
-                                        incoming.values[j], unitConvFactor[0],
-                                        unitConvOffset[0],
-                                        unitConvFunction[0]);
-                            }
-                        }
-                    }
-                    else {
-                        for (int j = incoming.offset; j < incoming.offset + incoming.count; ++j) {
-                            if (incoming.values[j] != UNDEFINED_DOUBLE
-                                    && (incoming.qualities[j] & QUALITY_SCREENED_VALIDITY_MASK) != QUALITY_MISSING_VALUE
-                                    && (incoming.qualities[j] & QUALITY_SCREENED_VALIDITY_MASK) != QUALITY_REJECTED_VALUE) {
-                                incoming.values[j] = Unit.performConversion(
-                                        incoming.values[j], unitConvFactor[0],
-                                        unitConvOffset[0],
-                                        unitConvFunction[0]);
-                            }
-                        }
-                    }
-                }
                 mergeTimeSeries(
                         intervalMinutes,
                         storeRule,
@@ -1219,17 +2727,8 @@ public final class TimeSeries {
                 );
                 // create a new blob from the merged data
                 int count = merged.count;
-                hasQuality = 0;
-                if (merged.qualities != null) {
-                    for (int j = 0; j < merged.count; ++j) {
-                        if (merged.qualities[j] != 0) {
-                            hasQuality = 1;
-                            break;
-                        }
-                    }
-                }
                 populateTsvInfo(
-                        blockInfo,
+                        write.info,
                         count,
                         merged.times[0],
                         merged.times[count - 1],
@@ -1237,80 +2736,234 @@ public final class TimeSeries {
                         merged.qualities,
                         0
                 );
-                int size = Byte.BYTES        // data type
-                        + Byte.BYTES             // data type version
-                        + Integer.BYTES          // value count
-                        + Byte.BYTES             // has quality?
-                        + Long.BYTES             // date/time of first value
-                        + count * Double.BYTES;  // values
-                if (hasQuality == 1) {
-                    size += count * Integer.BYTES;
-                }
-                buf = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
-                buf.put(format);
-                buf.put(version);
-                buf.putInt(count);
-                buf.put(hasQuality);
-                buf.putLong(merged.times[0]);
-                for (int j = 0; j < count; ++j) {
-                    buf.putDouble(merged.values[j]);
-                }
-                if (hasQuality == 1) {
-                    for (int j = 0; j < count; ++j) {
-                        buf.putInt(merged.qualities[j]);
+                write.data = deflateRtdBlock(
+                        encodeRtdBlock(rtdCodec, merged.times[0], merged.values, merged.qualities, 0, count),
+                        compressionLevel,
+                        compressionRatio);
+                for (String resolution : rollupResolutions) {
+                    if (write.rollups == null) {
+                        write.rollups = new LinkedHashMap<>();
                     }
+                    write.rollups.put(resolution, Rollup.encodeRollup(
+                            merged.times[0],
+                            merged.values,
+                            merged.qualities,
+                            0,
+                            count,
+                            intervalMinutes,
+                            Interval.getIntervalMinutes(resolution)));
                 }
-                blob = buf.array();
-                // overwrite the existing the blob
-                try (PreparedStatement ps = conn.prepareStatement(
-                        "update tsv set data=? where time_series=? and block_start_date=?"
-                )) {
-                    ps.setBytes(1, blob);
-                    ps.setLong(2, key);
-                    ps.setLong(3, encodedBlockDates[i]);
-                    ps.executeUpdate();
-                }
-                // overwrite the existing the block info
-                try (PreparedStatement ps = conn.prepareStatement(
-                        """
-                                update tsv_info
-                                   set value_count = ?,
-                                       first_time  = ?,
-                                       last_time   = ?,
-                                       min_value   = ?,
-                                       max_value   = ?,
-                                       last_update = ?
-                                 where time_series = ?
-                                   and block_start_date = ?"""
-                )) {
-                    ps.setLong(1, blockInfo.valueCount);
-                    ps.setLong(2, blockInfo.firstTime);
-                    ps.setLong(3, blockInfo.lastTime);
-                    ps.setDouble(4, blockInfo.minValue);
-                    ps.setDouble(5, blockInfo.maxValue);
-                    ps.setLong(6, blockInfo.lastUpdate);
-                    ps.setLong(7, key);
-                    ps.setLong(8, encodedBlockDates[i]);
-                    ps.executeUpdate();
-                }
-            }
-            if (existingOffsetMinutes == -1) {
-                try (PreparedStatement ps = conn.prepareStatement("update time_series set interval_offset = ? where " +
-                        "key = ?")) {
-                    ps.setString(1, Duration.minutesToIso8601(tscOffsetMinutes));
-                    ps.setLong(2, key);
-                    ps.executeUpdate();
-                    existingOffsetMinutes = tscOffsetMinutes;
-                }
-            }
-        }
-        if (encodedBlockDates.length > 1) {
+            }
+            seriesWrites.add(write);
+        }
+        if (existingOffsetMinutes == -1 && !seriesWrites.isEmpty()) {
+            ps = StatementCache.prepare(conn, "update time_series set interval_offset = ? where " +
+                    "key = ?");
+            ps.setString(1, Duration.minutesToIso8601(tscOffsetMinutes));
+            ps.setLong(2, key);
+            ps.executeUpdate();
+        }
+        if (!isNew && encodedBlockDates.length > 1) {
             String sql = "update time_series set deleted = 0 where key = ?";
-            try (PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setLong(1, key);
-                ps.executeUpdate();
+            ps = StatementCache.prepare(conn, sql);
+            ps.setLong(1, key);
+            ps.executeUpdate();
+        }
+        writes.addAll(seriesWrites);
+    }
+
+    /**
+     * Encodes regular time series values as an RTD blob: the common header followed by the body written by the codec.
+     * Quality codes are included only if any quality code for the encoded values is non-zero. Unless the codec is for
+     * version 1, the values are also encoded with the first codec for blocks of particular content (see
+     * {@link BlockFormat#CONTENT_RTD_VERSIONS}) that can encode them, if any, and the smaller blob is returned.
+     * @param codec The codec of the RTD version to encode
+     * @param firstTime The encoded time of the first value
+     * @param values The values
+     * @param qualities The quality codes, if any
+     * @param offset The index of the first value to encode
+     * @param count The number of values to encode
+     * @return The blob
+     */
+    static byte @NotNull [] encodeRtdBlock(
+            @NotNull BlockCodec codec,
+            long firstTime,
+            double @NotNull [] values,
+            int[] qualities,
+            int offset,
+            int count) {
+        boolean hasQuality = false;
+        if (qualities != null) {
+            for (int j = offset; j < offset + count; ++j) {
+                if (qualities[j] != 0) {
+                    hasQuality = true;
+                    break;
+                }
+            }
+        }
+        byte[] blob = encodeRtdBlock(codec, hasQuality, firstTime, values, qualities, offset, count);
+        if (codec.getVersion() > 1) {
+            BlockCodec contentCodec = selectContentRtdCodec(values, qualities, offset, count);
+            if (contentCodec != null) {
+                byte[] contentBlob = encodeRtdBlock(contentCodec, hasQuality, firstTime, values, qualities, offset, count);
+                if (contentBlob.length < blob.length) {
+                    blob = contentBlob;
+                }
+            }
+        }
+        return blob;
+    }
+
+    /**
+     * Encodes regular time series values as an RTD blob with a specific codec
+     * @param codec The codec
+     * @param hasQuality Whether to include the quality codes
+     * @param firstTime The encoded time of the first value
+     * @param values The values
+     * @param qualities The quality codes, if any
+     * @param offset The index of the first value to encode
+     * @param count The number of values to encode
+     * @return The blob
+     */
+    private static byte @NotNull [] encodeRtdBlock(
+            @NotNull BlockCodec codec,
+            boolean hasQuality,
+            long firstTime,
+            double @NotNull [] values,
+            int[] qualities,
+            int offset,
+            int count) {
+        ByteBuffer buf = ByteBuffer.allocate(RTD_HEADER_SIZE + codec.getMaxEncodedSize(count, hasQuality))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buf.put((byte) RTD.getCode());
+        buf.put((byte) codec.getVersion());
+        buf.putInt(count);
+        buf.put((byte) (hasQuality ? BLOCK_FLAG_QUALITY : 0));
+        buf.putLong(firstTime);
+        codec.encode(values, hasQuality ? qualities : null, offset, count, buf);
+        byte[] blob = buf.array();
+        return buf.position() == blob.length ? blob : Arrays.copyOf(blob, buf.position());
+    }
+
+    /**
+     * Selects the codec for blocks of particular content that can encode values and quality codes
+     * @param values The values
+     * @param qualities The quality codes, if any
+     * @param offset The index of the first value to encode
+     * @param count The number of values to encode
+     * @return The first codec of {@link BlockFormat#CONTENT_RTD_VERSIONS} that can encode the values and quality codes,
+     * or null if none can
+     */
+    private static @Nullable BlockCodec selectContentRtdCodec(
+            double @NotNull [] values,
+            int[] qualities,
+            int offset,
+            int count) {
+        for (int version : BlockFormat.CONTENT_RTD_VERSIONS) {
+            BlockCodec contentCodec = BlockCodecs.find(RTD, version);
+            if (contentCodec != null && contentCodec.canEncode(values, qualities, offset, count)) {
+                return contentCodec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Deflates the body of an RTD blob if that makes the blob small enough. The header of a deflated blob has the
+     * {@link #BLOCK_FLAG_DEFLATED} flag set and is followed by the inflated body length and the deflated body.
+     * @param blob The blob, as returned by {@link #encodeRtdBlock(BlockCodec, long, double[], int[], int, int)}
+     * @param level The deflate level, or 0 to not deflate the body
+     * @param ratio The maximum ratio of the deflated blob size to the original blob size
+     * @return The blob with a deflated body, or the original blob if <code>level</code> is 0 or deflating the body
+     * doesn't make the blob small enough
+     */
+    static byte @NotNull [] deflateRtdBlock(byte @NotNull [] blob, int level, double ratio) {
+        if (level == 0 || blob.length <= RTD_HEADER_SIZE) {
+            return blob;
+        }
+        int bodySize = blob.length - RTD_HEADER_SIZE;
+        byte[] deflated = Util.deflateBytes(blob, RTD_HEADER_SIZE, bodySize, level);
+        int size = RTD_HEADER_SIZE + Integer.BYTES + deflated.length;
+        if (size > ratio * blob.length) {
+            return blob;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        int flagsPosition = Byte.BYTES + Byte.BYTES + Integer.BYTES;
+        buf.put(blob, 0, RTD_HEADER_SIZE);
+        buf.put(flagsPosition, (byte) (blob[flagsPosition] | BLOCK_FLAG_DEFLATED));
+        buf.putInt(bodySize);
+        buf.put(deflated);
+        return buf.array();
+    }
+
+    /**
+     * Writes pending blocks, their block information, and their rollups with batched upsert statements and clears the
+     * list. The blocks are invalidated in the block cache.
+     * @param writes The pending block writes
+     * @param conn The JDBC connection
+     * @throws SQLException If SQL error
+     */
+    static void writeBlocks(@NotNull List<BlockWrite> writes, Connection conn) throws SQLException {
+        if (writes.isEmpty()) {
+            return;
+        }
+        PreparedStatement psData = StatementCache.prepare(conn, SQL_UPSERT_TS_BLOCK);
+        PreparedStatement psInfo = StatementCache.prepare(conn, SQL_UPSERT_TS_INFO);
+        PreparedStatement psRollup = null;
+        BlockCache cache = BlockCache.forConnection(conn);
+        try {
+            for (BlockWrite write : writes) {
+                cache.invalidate(write.key, write.blockStartDate);
+                psData.setLong(1, write.key);
+                psData.setLong(2, write.blockStartDate);
+                psData.setBytes(3, write.data);
+                psData.addBatch();
+                psInfo.setLong(1, write.key);
+                psInfo.setLong(2, write.blockStartDate);
+                psInfo.setLong(3, write.info.valueCount);
+                psInfo.setLong(4, write.info.firstTime);
+                psInfo.setLong(5, write.info.lastTime);
+                if (write.info.minValue > write.info.maxValue) {
+                    // no non-missing values
+                    psInfo.setNull(6, Types.REAL);
+                    psInfo.setNull(7, Types.REAL);
+                }
+                else {
+                    psInfo.setDouble(6, write.info.minValue);
+                    psInfo.setDouble(7, write.info.maxValue);
+                }
+                psInfo.setLong(8, write.info.validCount);
+                psInfo.setDouble(9, write.info.sum);
+                psInfo.setDouble(10, write.info.sumOfSquares);
+                psInfo.setLong(11, write.info.lastUpdate);
+                psInfo.addBatch();
+                if (write.rollups != null) {
+                    if (psRollup == null) {
+                        psRollup = StatementCache.prepare(conn, SQL_UPSERT_TS_ROLLUP);
+                    }
+                    for (Map.Entry<String, byte[]> entry : write.rollups.entrySet()) {
+                        psRollup.setLong(1, write.key);
+                        psRollup.setString(2, entry.getKey());
+                        psRollup.setLong(3, write.blockStartDate);
+                        psRollup.setBytes(4, entry.getValue());
+                        psRollup.addBatch();
+                    }
+                }
+            }
+            psData.executeBatch();
+            psInfo.executeBatch();
+            if (psRollup != null) {
+                psRollup.executeBatch();
+            }
+        }
+        finally {
+            psData.clearBatch();
+            psInfo.clearBatch();
+            if (psRollup != null) {
+                psRollup.clearBatch();
             }
         }
+        writes.clear();
     }
 
     /**
@@ -1378,6 +3031,29 @@ public final class TimeSeries {
         return blockStartDates;
     }
 
+    /**
+     * Computes the first time on the regular interval grid of a time series that is on or after a specified time
+     * @param encodedTime The encoded date/time
+     * @param intervalMinutes The interval minutes of the time series
+     * @param offsetMinutes The interval offset minutes of the time series
+     * @return The first time on the interval grid that is on or after the specified time
+     * @throws EncodedDateTimeException If thrown by {@link EncodedDateTime#toHecTime(long)}
+     */
+    @NotNull
+    static HecTime getFirstIntervalTime(long encodedTime, int intervalMinutes, int offsetMinutes) throws EncodedDateTimeException {
+        HecTime time = EncodedDateTime.toHecTime(encodedTime);
+        HecTime intervalTime = new HecTime(time);
+        intervalTime.adjustToIntervalOffset(intervalMinutes, 0);
+        if (intervalTime.greaterThan(time)) {
+            intervalTime.increment(-1, intervalMinutes);
+        }
+        intervalTime.addMinutes(offsetMinutes);
+        if (intervalTime.lessThan(time)) {
+            intervalTime.increment(1, intervalMinutes);
+        }
+        return intervalTime;
+    }
+
     /**
      * Retrieves the database key for a specified time series name
      * @param name The time series name
@@ -1403,9 +3079,18 @@ public final class TimeSeries {
             return key;
         }
         String intvlName = Interval.getInterval(parts[3]);
+        NameCache cache = NameCache.forConnection(conn);
+        String id = NameCache.timeSeriesId(locKey, paramKey, parts[2], intvlName, parts[4], parts[5]);
+        Long cachedKey = cache.getTimeSeriesKey(id);
+        if (cachedKey != null) {
+            return cachedKey;
+        }
+        if (cache.isComplete()) {
+            return key;
+        }
         String durName = Duration.getDuration(parts[4], conn);
         boolean nullKey;
-        try (PreparedStatement ps = conn.prepareStatement(
+        PreparedStatement ps = StatementCache.prepare(conn,
                 """
                         select key
                           from time_series
@@ -1415,24 +3100,22 @@ public final class TimeSeries {
                            and parameter_type = ?
                            and interval = ?
                            and duration = ?
-                           and version = ?"""
-        )) {
-            ps.setLong(1, locKey);
-            ps.setLong(2, paramKey);
-            ps.setString(3, parts[2]);
-            ps.setString(4, intvlName);
-            ps.setString(5, durName);
-            ps.setString(6, parts[5]);
-            try (ResultSet rs = ps.executeQuery()) {
-                rs.next();
-                key = rs.getLong("key");
-                nullKey = rs.wasNull();
-            }
+                           and version = ?""");
+        ps.setLong(1, locKey);
+        ps.setLong(2, paramKey);
+        ps.setString(3, parts[2]);
+        ps.setString(4, intvlName);
+        ps.setString(5, durName);
+        ps.setString(6, parts[5]);
+        try (ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            key = rs.getLong("key");
+            nullKey = rs.wasNull();
         }
         if (nullKey) {
             key = -1;
         }
-
+        cache.putTimeSeriesKey(id, key);
         return key;
     }
 
@@ -1455,39 +3138,39 @@ public final class TimeSeries {
             String intvlName = Interval.getInterval(parts[3]);
             String durName = Duration.getDuration(parts[4], conn);
             boolean nullKey;
-            try (PreparedStatement ps = conn.prepareStatement("""
-                    insert
-                      into time_series
-                           (deleted,
-                            location,
-                            parameter,
-                            parameter_type,
-                            interval,
-                            duration,
-                            version
-                           )
-                    values (0, ?, ?, ?, ?, ?, ?)"""
-            )) {
-                ps.setLong(1, locKey);
-                ps.setLong(2, paramKey);
-                ps.setString(3, parts[2]);
-                ps.setString(4, intvlName);
-                ps.setString(5, durName);
-                ps.setString(6, parts[5]);
-                ps.executeUpdate();
-            }
-            try (PreparedStatement ps = conn.prepareStatement(
-                    SQL_SELECT_LAST_INSERT_ROWID
-            )) {
-                try (ResultSet rs = ps.executeQuery()) {
-                    rs.next();
-                    key = rs.getLong(LAST_INSERT_ROWID);
-                    nullKey = rs.wasNull();
-                }
+            PreparedStatement ps = StatementCache.prepare(conn, """
+                insert
+                  into time_series
+                       (deleted,
+                        location,
+                        parameter,
+                        parameter_type,
+                        interval,
+                        duration,
+                        version
+                       )
+                values (0, ?, ?, ?, ?, ?, ?)""");
+            ps.setLong(1, locKey);
+            ps.setLong(2, paramKey);
+            ps.setString(3, parts[2]);
+            ps.setString(4, intvlName);
+            ps.setString(5, durName);
+            ps.setString(6, parts[5]);
+            ps.executeUpdate();
+            ps = StatementCache.prepare(conn, SQL_SELECT_LAST_INSERT_ROWID);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                key = rs.getLong(LAST_INSERT_ROWID);
+                nullKey = rs.wasNull();
             }
             if (nullKey) {
                 key = -1;
             }
+            NameCache cache = NameCache.forConnection(conn);
+            cache.putTimeSeriesKey(
+                    NameCache.timeSeriesId(locKey, paramKey, parts[2], intvlName, parts[4], parts[5]),
+                    key);
+            cache.addNewTimeSeries(key);
         }
         return key;
     }
@@ -1905,6 +3588,7 @@ public final class TimeSeries {
                 }
             }
         }
+        BlockCache.forConnection(conn).invalidate(key, recordStartDate);
         try (PreparedStatement psUpdate = conn.prepareStatement(sqlUpdate)) {
             psUpdate.setLong(1, key);
             psUpdate.setLong(2, recordStartDate);
@@ -1919,6 +3603,24 @@ public final class TimeSeries {
         }
     }
 
+    /**
+     * Determines whether a value is valid, i.e., neither undefined nor flagged as missing or rejected
+     * @param value The value
+     * @param qualities The qualities of the values, or null if none
+     * @param index The index of the value in the qualities
+     * @return Whether the value is valid
+     */
+    static boolean isValidValue(double value, int[] qualities, int index) {
+        if (value == UNDEFINED_DOUBLE) {
+            return false;
+        }
+        if (qualities == null) {
+            return true;
+        }
+        int validity = qualities[index] & QUALITY_SCREENED_VALIDITY_MASK;
+        return validity != QUALITY_MISSING_VALUE && validity != QUALITY_REJECTED_VALUE;
+    }
+
     /**
      * Modifies a {@link TimeSeriesContainer} object in-place, removing blocks of contiguous missing or rejected values
      * from the beginning and end
@@ -1928,10 +3630,7 @@ public final class TimeSeries {
         int firstNonMissing = -1;
         int lastNonMissing = -1;
         for (int i = 0; i < tsc.numberValues; ++i) {
-            if (tsc.values[i] != UNDEFINED_DOUBLE
-                    && (tsc.quality == null
-                    || (tsc.quality[i] & QUALITY_SCREENED_VALIDITY_MASK) != QUALITY_MISSING_VALUE
-                    || (tsc.quality[i] & QUALITY_SCREENED_VALIDITY_MASK) != QUALITY_REJECTED_VALUE)) {
+            if (isValidValue(tsc.values[i], tsc.quality, i)) {
                 firstNonMissing = i;
                 break;
             }
@@ -1949,10 +3648,7 @@ public final class TimeSeries {
         }
         else {
             for (int i = tsc.numberValues - 1; i >= firstNonMissing; --i) {
-                if (tsc.values[i] != UNDEFINED_DOUBLE
-                        && (tsc.quality == null
-                        || (tsc.quality[i] & QUALITY_SCREENED_VALIDITY_MASK) != QUALITY_MISSING_VALUE
-                        || (tsc.quality[i] & QUALITY_SCREENED_VALIDITY_MASK) != QUALITY_REJECTED_VALUE)) {
+                if (isValidValue(tsc.values[i], tsc.quality, i)) {
                     lastNonMissing = i;
                     break;
                 }
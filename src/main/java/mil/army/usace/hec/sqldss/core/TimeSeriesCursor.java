@@ -0,0 +1,289 @@
+package mil.army.usace.hec.sqldss.core;
+
+import hec.io.TimeSeriesContainer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static mil.army.usace.hec.sqldss.core.Constants.SQL_SELECT_TS_BLOCKS;
+
+/**
+ * Forward-only cursor over the blocks of a regular time series.
+ *
+ * Each call to {@link #nextBlock()} (or {@link #next()}) reads and decodes a single block from an open result set and
+ * returns its values in the time window as a TimeSeriesContainer, so arbitrarily long time series can be processed in
+ * memory proportional to the block size. Blocks that do not exist or are deleted are skipped, so successive chunks are
+ * in time order but may not be contiguous. Blocks are not read from or added to the block cache.
+ *
+ * The cursor owns a statement on the connection and must be closed, either directly or by closing a stream from
+ * {@link #stream()}. The time series should not be stored to while the cursor is open.
+ */
+public final class TimeSeriesCursor implements Iterator<TimeSeriesContainer>, AutoCloseable {
+
+    /**
+     * The time series name
+     */
+    private final String name;
+
+    /**
+     * The time series specification key
+     */
+    private final long key;
+
+    /**
+     * The interval name of the time series
+     */
+    private final String intervalName;
+
+    /**
+     * The interval minutes of the time series
+     */
+    private final int intervalMinutes;
+
+    /**
+     * The ISO 8601 interval offset of the time series
+     */
+    private final String offsetStr;
+
+    /**
+     * The storage unit of the time series
+     */
+    private final String storageUnit;
+
+    /**
+     * The start of the time window
+     */
+    private final long startTime;
+
+    /**
+     * The end of the time window
+     */
+    private final long endTime;
+
+    /**
+     * The unit to retrieve the values in
+     */
+    private final String unit;
+
+    /**
+     * The conversion from the storage unit to the retrieve unit, or null if none is needed
+     */
+    private final UnitConversion conversion;
+
+    /**
+     * The JDBC connection
+     */
+    private final Connection conn;
+
+    /**
+     * The statement that selects the blocks, owned by the cursor
+     */
+    private PreparedStatement ps;
+
+    /**
+     * The open result set of blocks, or null when exhausted or closed
+     */
+    private ResultSet rs;
+
+    /**
+     * The next chunk, read ahead by {@link #hasNext()}
+     */
+    private TimeSeriesContainer pending = null;
+
+    /**
+     * Constructor, called by {@link TimeSeries#openTimeSeriesCursor(String, long, long, String, SqlDss)}
+     * @param name The time series name
+     * @param key The time series specification key
+     * @param intervalName The interval name of the time series
+     * @param offsetStr The ISO 8601 interval offset of the time series
+     * @param storageUnit The storage unit of the time series
+     * @param startTime The start of the time window
+     * @param endTime The end of the time window
+     * @param unit The unit to retrieve the values in
+     * @param conn The JDBC connection
+     * @throws SqlDssException If the interval is invalid or thrown by {@link UnitConversion#forUnits(String, String, Connection)}
+     * @throws SQLException If SQL error
+     * @throws EncodedDateTimeException If thrown by EncodedDateTime method
+     */
+    TimeSeriesCursor(
+            @NotNull String name,
+            long key,
+            @NotNull String intervalName,
+            String offsetStr,
+            String storageUnit,
+            long startTime,
+            long endTime,
+            String unit,
+            @NotNull Connection conn) throws SqlDssException, SQLException, EncodedDateTimeException {
+        this.name = name;
+        this.key = key;
+        this.intervalName = intervalName;
+        this.intervalMinutes = Interval.getIntervalMinutes(intervalName);
+        if (intervalMinutes == 0) {
+            throw new SqlDssException("Error getting interval minutes for " + name);
+        }
+        this.offsetStr = offsetStr;
+        this.storageUnit = storageUnit;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.unit = unit;
+        this.conversion = unit != null && !unit.equals(storageUnit)
+                ? UnitConversion.forUnits(storageUnit, unit, conn)
+                : null;
+        this.conn = conn;
+        if (startTime <= endTime) {
+            ps = conn.prepareStatement(SQL_SELECT_TS_BLOCKS);
+            ps.setLong(1, key);
+            ps.setLong(2, TimeSeries.getBlockStartDate(startTime, intervalName));
+            ps.setLong(3, TimeSeries.getBlockStartDate(endTime, intervalName));
+            rs = ps.executeQuery();
+        }
+    }
+
+    /**
+     * Reads and decodes the next block that has values in the time window
+     * @return The values of the block in the time window, or null if there are no more blocks, in which case the
+     * cursor is closed
+     * @throws SqlDssException If the block is not a valid regular time series block
+     * @throws SQLException If SQL error
+     * @throws EncodedDateTimeException If thrown by EncodedDateTime method
+     */
+    public @Nullable TimeSeriesContainer nextBlock() throws SqlDssException, SQLException, EncodedDateTimeException {
+        if (pending != null) {
+            TimeSeriesContainer tsc = pending;
+            pending = null;
+            return tsc;
+        }
+        while (rs != null && rs.next()) {
+            if (rs.getLong("deleted") == 1) {
+                continue;
+            }
+            byte[] blob = rs.getBytes("data");
+            if (blob == null) {
+                continue;
+            }
+            long blockStartDate = rs.getLong("block_start_date");
+            //-------------------------------------------------//
+            // clip the time window to the times in this block //
+            //-------------------------------------------------//
+            ByteBuffer buf = ByteBuffer.wrap(blob);
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            TimeSeries.TsvRecordHeader header = TimeSeries.readRtdHeader(buf);
+            if (header.valueCount == 0) {
+                continue;
+            }
+            long blockLastTime = EncodedDateTime.incrementEncodedDateTime(
+                    header.firstTime,
+                    intervalMinutes,
+                    header.valueCount - 1);
+            long chunkStartTime = Math.max(startTime, header.firstTime);
+            long chunkEndTime = Math.min(endTime, blockLastTime);
+            if (chunkStartTime > chunkEndTime) {
+                continue;
+            }
+            TimeSeries.RegularRetrieval retrieval = TimeSeries.newRegularRetrieval(name);
+            retrieval.tsc.units = storageUnit;
+            TimeSeries.setRegularRetrievalWindow(retrieval, key, intervalName, offsetStr, chunkStartTime, chunkEndTime);
+            if (retrieval.count == 0) {
+                continue;
+            }
+            retrieval.conversion = conversion;
+            TimeSeries.decodeRegularBlock(retrieval, blockStartDate, blob);
+            return TimeSeries.finishRegularRetrieval(retrieval, chunkStartTime, chunkEndTime, unit, conn);
+        }
+        close();
+        return null;
+    }
+
+    /**
+     * @return Whether there is another block with values in the time window
+     * @throws IllegalStateException If reading the next block throws a checked exception
+     */
+    @Override
+    public boolean hasNext() {
+        if (pending == null) {
+            try {
+                pending = nextBlock();
+            }
+            catch (SqlDssException | SQLException | EncodedDateTimeException e) {
+                throw new IllegalStateException("Error reading time series " + name, e);
+            }
+        }
+        return pending != null;
+    }
+
+    /**
+     * @return The values of the next block in the time window
+     * @throws NoSuchElementException If there are no more blocks
+     * @throws IllegalStateException If reading the next block throws a checked exception
+     */
+    @Override
+    public TimeSeriesContainer next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        TimeSeriesContainer tsc = pending;
+        pending = null;
+        return tsc;
+    }
+
+    /**
+     * @return A sequential stream of the remaining blocks. Closing the stream closes the cursor.
+     */
+    @NotNull
+    public Stream<TimeSeriesContainer> stream() {
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL),
+                false).onClose(() -> {
+                    try {
+                        close();
+                    }
+                    catch (SQLException e) {
+                        throw new IllegalStateException("Error closing cursor for time series " + name, e);
+                    }
+                });
+    }
+
+    /**
+     * @return Whether the cursor is open
+     */
+    public boolean isOpen() {
+        return ps != null;
+    }
+
+    /**
+     * Closes the result set and statement of the cursor. Has no effect if already closed.
+     * @throws SQLException If SQL error
+     */
+    @Override
+    public void close() throws SQLException {
+        try {
+            if (rs != null) {
+                rs.close();
+            }
+        }
+        finally {
+            rs = null;
+            try {
+                if (ps != null) {
+                    ps.close();
+                }
+            }
+            finally {
+                ps = null;
+            }
+        }
+    }
+}
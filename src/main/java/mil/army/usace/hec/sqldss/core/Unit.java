@@ -9,10 +9,6 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
 
-import static hec.lang.Const.UNDEFINED_DOUBLE;
-import static mil.army.usace.hec.sqldss.core.Constants.QUALITY_MISSING_VALUE;
-import static mil.army.usace.hec.sqldss.core.Constants.QUALITY_SCREENED_VALIDITY_MASK;
-
 /**
  * Utility class for working with units
  */
@@ -41,23 +37,21 @@ public class Unit {
     @NotNull
     public static String getUnit(String name, Connection conn) throws SQLException, SqlDssException {
         String unit = null;
-        try (PreparedStatement ps = conn.prepareStatement("select name from unit where name = ?")) {
+        PreparedStatement ps = StatementCache.prepare(conn, "select name from unit where name = ?");
+        ps.setString(1, name);
+        try (ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            unit = rs.getString("name");
+        }
+        if (unit == null || unit.isEmpty()) {
+            String sql = "select unit from unit_alias where alias = ?";
+            ps = StatementCache.prepare(conn, sql);
             ps.setString(1, name);
             try (ResultSet rs = ps.executeQuery()) {
                 rs.next();
                 unit = rs.getString("name");
             }
         }
-        if (unit == null || unit.isEmpty()) {
-            String sql = "select unit from unit_alias where alias = ?";
-            try (PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setString(1, name);
-                try (ResultSet rs = ps.executeQuery()) {
-                    rs.next();
-                    unit = rs.getString("name");
-                }
-            }
-        }
         if (unit == null || unit.isEmpty()) {
             throw new SqlDssException("No such unit or unit alias: " + name);
         }
@@ -78,12 +72,11 @@ public class Unit {
         List<String> list = new ArrayList<>();
         String sql = "select name from unit where abstract_parameter_key = (select abstract_parameter_key from unit " +
                 "where name = ?)";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, getUnit(name, conn));
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    list.add(rs.getString("name"));
-                }
+        PreparedStatement ps = StatementCache.prepare(conn, sql);
+        ps.setString(1, getUnit(name, conn));
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                list.add(rs.getString("name"));
             }
         }
         return list.toArray(new String[0]);
@@ -115,16 +108,7 @@ public class Unit {
             double[] offset,
             String[] function,
             Connection conn) throws SQLException, SqlDssException {
-        String baseParameter = parameter.split("-", 2)[0];
-        String sql = "select default_si_unit from base_parameter where name = ?";
-        String dbUnit;
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, baseParameter);
-            try (ResultSet rs = ps.executeQuery()) {
-                rs.next();
-                dbUnit = rs.getString("default_si_unit");
-            }
-        }
+        String dbUnit = getStorageUnit(parameter, conn);
         getUnitConversion(fromUnit, dbUnit, factor, offset, function, conn);
     }
 
@@ -154,16 +138,7 @@ public class Unit {
             double[] offset,
             String[] function,
             Connection conn) throws SQLException, SqlDssException {
-        String baseParameter = parameter.split("-", 2)[0];
-        String sql = "select default_si_unit from base_parameter where name ? ";
-        String dbUnit;
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, baseParameter);
-            try (ResultSet rs = ps.executeQuery()) {
-                rs.next();
-                dbUnit = rs.getString("default_si_unit");
-            }
-        }
+        String dbUnit = getStorageUnit(parameter, conn);
         getUnitConversion(dbUnit, toUnit, factor, offset, function, conn);
     }
 
@@ -183,7 +158,8 @@ public class Unit {
      * @param function An array of length at least one whose first element receives the unit conversion RPN function
      * @param conn The JDBC connection
      * @throws SQLException If SQL error
-     * @throws SqlDssException If <code>fromUnit</code> and <code>toUnit</code> are not compatible units
+     * @throws SqlDssException If <code>fromUnit</code> and <code>toUnit</code> are not compatible units, or if thrown by
+     * {@link UnitConversion#forUnits(String, String, Connection)}
      */
     public static void getUnitConversion(
             String fromUnit,
@@ -192,20 +168,62 @@ public class Unit {
             double[] offset,
             String[] function,
             Connection conn) throws SQLException, SqlDssException {
-        String sql = "select factor, offset, function from unit_conversion where from_unit=? and to_unit=?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, fromUnit);
-            ps.setString(2, toUnit);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    factor[0] = rs.getDouble("factor");
-                    offset[0] = rs.getDouble("offset");
-                    function[0] = rs.getString("function");
-                }
-                else {
-                    throw new SqlDssException("Cannot convert from unit " + fromUnit + " to unit " + toUnit);
-                }
-            }
+        UnitConversion conversion = UnitConversion.forUnits(fromUnit, toUnit, conn);
+        factor[0] = conversion.getFactor();
+        offset[0] = conversion.getOffset();
+        function[0] = conversion.getFunction();
+    }
+
+    /**
+     * Retrieves the compiled unit conversion necessary to convert values for a specified parameter in a specified unit
+     * to the database storage unit for the parameter
+     * @param fromUnit The current unit of values
+     * @param parameter The parameter of the values
+     * @param conn The JDBC connection
+     * @return The unit conversion
+     * @throws SQLException If SQL error
+     * @throws SqlDssException If thrown by {@link UnitConversion#forUnits(String, String, Connection)}
+     */
+    @NotNull
+    public static UnitConversion getUnitConversionForStoring(
+            String fromUnit,
+            @NotNull String parameter,
+            Connection conn) throws SQLException, SqlDssException {
+        return UnitConversion.forUnits(fromUnit, getStorageUnit(parameter, conn), conn);
+    }
+
+    /**
+     * Retrieves the compiled unit conversion necessary to convert database values for a specified parameter to a
+     * specified retrieval unit
+     * @param toUnit The retrieval unit for the values
+     * @param parameter The parameter of the values
+     * @param conn The JDBC connection
+     * @return The unit conversion
+     * @throws SQLException If SQL error
+     * @throws SqlDssException If thrown by {@link UnitConversion#forUnits(String, String, Connection)}
+     */
+    @NotNull
+    public static UnitConversion getUnitConversionForRetrieving(
+            String toUnit,
+            @NotNull String parameter,
+            Connection conn) throws SQLException, SqlDssException {
+        return UnitConversion.forUnits(getStorageUnit(parameter, conn), toUnit, conn);
+    }
+
+    /**
+     * Retrieves the database storage unit for a parameter
+     * @param parameter The parameter
+     * @param conn The JDBC connection
+     * @return The default SI unit of the base parameter
+     * @throws SQLException If SQL error
+     */
+    static String getStorageUnit(@NotNull String parameter, Connection conn) throws SQLException {
+        String baseParameter = parameter.split("-", 2)[0];
+        PreparedStatement ps = StatementCache.prepare(conn, "select default_si_unit from base_parameter where name = ?");
+        ps.setString(1, baseParameter);
+        try (ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return rs.getString("default_si_unit");
         }
     }
 
@@ -217,21 +235,14 @@ public class Unit {
      * @param conn The JDBC connection
      * @return The converted value
      * @throws SQLException If SQL error
-     * @throws SqlDssException If thrown by <ul>
-     *     <li>{@link #getUnitConversion(String, String, double[], double[], String[], Connection)}</li>
-     *     <li>{@link #performConversion(double, double, double, String)}</li>
-     * </ul>
+     * @throws SqlDssException If thrown by {@link UnitConversion#forUnits(String, String, Connection)}
      */
     public static double convertUnits(
             double value,
             String fromUnit,
             String toUnit,
             Connection conn) throws SQLException, SqlDssException {
-        double[] factor = new double[1];
-        double[] offset = new double[1];
-        String[] function = new String[1];
-        getUnitConversion(fromUnit, toUnit, factor, offset, function, conn);
-        return performConversion(value, factor[0], offset[0], function[0]);
+        return UnitConversion.forUnits(fromUnit, toUnit, conn).applyAsDouble(value);
     }
 
     /**
@@ -240,33 +251,13 @@ public class Unit {
      * @param toUnit The unit to convert to
      * @param conn The JDBC connection
      * @throws SQLException If SQL error
-     * @throws SqlDssException If thrown by <ul>
-     *     <li>{@link #getUnitConversion(String, String, double[], double[], String[], Connection)}</li>
-     *     <li>{@link #performConversion(double, double, double, String)}</li>
-     * </ul>
+     * @throws SqlDssException If thrown by {@link UnitConversion#forUnits(String, String, Connection)}
      */
     public static void convertUnits(
             @NotNull TimeSeriesContainer tsc,
             String toUnit,
             Connection conn) throws SqlDssException, SQLException {
-        double[] factor = new double[1];
-        double[] offset = new double[1];
-        String[] function = new String[1];
-        getUnitConversion(tsc.units, toUnit, factor, offset, function, conn);
-        if (tsc.quality == null) {
-            for (int i = 0; i < tsc.numberValues; ++i) {
-                if (tsc.values[i] != UNDEFINED_DOUBLE) {
-                    tsc.values[i]  = performConversion(tsc.values[i], factor[0], offset[0], function[0]);
-                }
-            }
-        }
-        else {
-            for (int i = 0; i < tsc.numberValues; ++i) {
-                if (tsc.values[i] != UNDEFINED_DOUBLE && (tsc.quality[i] & QUALITY_SCREENED_VALIDITY_MASK) != QUALITY_MISSING_VALUE) {
-                    tsc.values[i]  = performConversion(tsc.values[i], factor[0], offset[0], function[0]);
-                }
-            }
-        }
+        UnitConversion.forUnits(tsc.units, toUnit, conn).convert(tsc.values, tsc.quality, tsc.numberValues, false);
         tsc.units = toUnit;
     }
 
@@ -307,38 +298,7 @@ public class Unit {
      * @throws SqlDssException If <code>function</code> is not a valid RPN function of one variable (<code>ARG1</code>)
      */
     static double executeFunction(double value, @NotNull String function) throws SqlDssException {
-        String[] parts = function.split("\\s+", -1);
-        ArrayDeque<String> stack = new ArrayDeque<>();
-        for (String part : parts) {
-            try {
-                if (part.equalsIgnoreCase("ARG1")) {
-                    stack.push(String.valueOf(value));
-                }
-                else if (part.equalsIgnoreCase("-ARG1")) {
-                    stack.push(String.valueOf(-value));
-                }
-                else if (operators.contains(part)) {
-                    double arg2 = Double.parseDouble(stack.pop());
-                    double arg1 = Double.parseDouble(stack.pop());
-                    stack.push(String.valueOf(performOperation(arg1, arg2, part)));
-                }
-                else {
-                    stack.push(part);
-                }
-            }
-            catch (Exception e) {
-                throw new SqlDssException("Invalid conversion function: " + function);
-            }
-        }
-        if (stack.size() != 1) {
-            throw new SqlDssException("Invalid conversion function: " + function);
-        }
-        try {
-            return Double.parseDouble(stack.pop());
-        }
-        catch (Exception e) {
-            throw new SqlDssException("Invalid conversion function: " + function);
-        }
+        return UnitConversion.compile(Double.NaN, Double.NaN, function).applyAsDouble(value);
     }
 
     /**
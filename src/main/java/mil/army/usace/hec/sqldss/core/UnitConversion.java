@@ -0,0 +1,370 @@
+package mil.army.usace.hec.sqldss.core;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleUnaryOperator;
+
+import static hec.lang.Const.UNDEFINED_DOUBLE;
+import static mil.army.usace.hec.sqldss.core.Constants.QUALITY_MISSING_VALUE;
+import static mil.army.usace.hec.sqldss.core.Constants.QUALITY_REJECTED_VALUE;
+import static mil.army.usace.hec.sqldss.core.Constants.QUALITY_SCREENED_VALIDITY_MASK;
+
+/**
+ * A compiled unit conversion.
+ *
+ * A conversion is either linear (<code>toUnitVal = fromUnitVal * factor + offset</code>) or an RPN function of the
+ * <code>fromUnit</code> value, represented by the token <code>ARG1</code>. Functions are parsed once into a program of
+ * operation codes and constants that is evaluated on a primitive stack, so converting a value requires no parsing or
+ * string conversion. Conversions retrieved by {@link #forUnits(String, String, Connection)} are cached per connection
+ * and unit pair, and are discarded by {@link #release(Connection)}, which {@link SqlDss#close()} calls before closing
+ * the connection.
+ */
+public final class UnitConversion implements DoubleUnaryOperator {
+
+    //-----------------//
+    // operation codes //
+    //-----------------//
+    private static final int OP_CONST = 0;
+    private static final int OP_ARG = 1;
+    private static final int OP_NEG_ARG = 2;
+    private static final int OP_ADD = 3;
+    private static final int OP_SUBTRACT = 4;
+    private static final int OP_MULTIPLY = 5;
+    private static final int OP_DIVIDE = 6;
+    private static final int OP_FLOOR_DIVIDE = 7;
+    private static final int OP_POWER = 8;
+
+    /**
+     * The conversions cached for each connection, by unit pair
+     */
+    private static final Map<Connection, Map<String, UnitConversion>> caches = new IdentityHashMap<>();
+
+    /**
+     * The conversion factor, used only for linear conversions
+     */
+    private final double factor;
+
+    /**
+     * The conversion offset, used only for linear conversions
+     */
+    private final double offset;
+
+    /**
+     * The RPN function, or null for linear conversions
+     */
+    private final String function;
+
+    /**
+     * The operation codes of the compiled function, or null for linear conversions
+     */
+    private final int[] ops;
+
+    /**
+     * The constants pushed by the {@link #OP_CONST} operations of the compiled function, in order
+     */
+    private final double[] constants;
+
+    /**
+     * The maximum stack depth of the compiled function
+     */
+    private final int stackDepth;
+
+    /**
+     * Constructor
+     * @param factor The conversion factor
+     * @param offset The conversion offset
+     * @param function The RPN function, or null or empty for a linear conversion
+     * @throws SqlDssException If <code>function</code> is not a valid RPN function of one variable (<code>ARG1</code>)
+     */
+    private UnitConversion(double factor, double offset, String function) throws SqlDssException {
+        this.factor = factor;
+        this.offset = offset;
+        if (function == null || function.isEmpty()) {
+            this.function = null;
+            this.ops = null;
+            this.constants = null;
+            this.stackDepth = 0;
+            return;
+        }
+        this.function = function;
+        String[] parts = function.split("\\s+", -1);
+        int[] ops = new int[parts.length];
+        List<Double> constants = new ArrayList<>();
+        int depth = 0;
+        int maxDepth = 0;
+        for (int i = 0; i < parts.length; ++i) {
+            String part = parts[i];
+            if (part.equalsIgnoreCase("ARG1")) {
+                ops[i] = OP_ARG;
+            }
+            else if (part.equalsIgnoreCase("-ARG1")) {
+                ops[i] = OP_NEG_ARG;
+            }
+            else {
+                ops[i] = switch (part) {
+                    case "+" -> OP_ADD;
+                    case "-" -> OP_SUBTRACT;
+                    case "*" -> OP_MULTIPLY;
+                    case "/" -> OP_DIVIDE;
+                    case "//" -> OP_FLOOR_DIVIDE;
+                    case "^", "**" -> OP_POWER;
+                    default -> OP_CONST;
+                };
+                if (ops[i] == OP_CONST) {
+                    try {
+                        constants.add(Double.parseDouble(part));
+                    }
+                    catch (NumberFormatException e) {
+                        throw new SqlDssException("Invalid conversion function: " + function);
+                    }
+                }
+            }
+            if (ops[i] <= OP_NEG_ARG) {
+                maxDepth = Math.max(maxDepth, ++depth);
+            }
+            else if (--depth < 1) {
+                throw new SqlDssException("Invalid conversion function: " + function);
+            }
+        }
+        if (depth != 1) {
+            throw new SqlDssException("Invalid conversion function: " + function);
+        }
+        this.ops = ops;
+        this.constants = new double[constants.size()];
+        for (int i = 0; i < this.constants.length; ++i) {
+            this.constants[i] = constants.get(i);
+        }
+        this.stackDepth = maxDepth;
+    }
+
+    /**
+     * Compiles a unit conversion
+     * @param factor The conversion factor, used if <code>function</code> is null or empty
+     * @param offset The conversion offset, used if <code>function</code> is null or empty
+     * @param function The RPN function, with the value to convert represented by the token <code>ARG1</code>
+     * @return The unit conversion
+     * @throws SqlDssException If <code>function</code> is not a valid RPN function of one variable (<code>ARG1</code>)
+     */
+    @NotNull
+    public static UnitConversion compile(double factor, double offset, String function) throws SqlDssException {
+        return new UnitConversion(factor, offset, function);
+    }
+
+    /**
+     * Retrieves the conversion between two units from the database, compiling and caching it for the connection
+     * @param fromUnit The unit to convert from
+     * @param toUnit The unit to convert to
+     * @param conn The JDBC connection
+     * @return The unit conversion
+     * @throws SQLException If SQL error
+     * @throws SqlDssException If <code>fromUnit</code> and <code>toUnit</code> are not compatible units, or the
+     * conversion function is invalid
+     */
+    @NotNull
+    public static UnitConversion forUnits(String fromUnit, String toUnit, @NotNull Connection conn)
+            throws SQLException, SqlDssException {
+        Map<String, UnitConversion> cache = forConnection(conn);
+        String id = fromUnit + '\u0000' + toUnit;
+        UnitConversion conversion = cache.get(id);
+        if (conversion != null) {
+            return conversion;
+        }
+        String sql = "select factor, offset, function from unit_conversion where from_unit=? and to_unit=?";
+        PreparedStatement ps = StatementCache.prepare(conn, sql);
+        ps.setString(1, fromUnit);
+        ps.setString(2, toUnit);
+        try (ResultSet rs = ps.executeQuery()) {
+            if (rs.next()) {
+                conversion = new UnitConversion(rs.getDouble("factor"), rs.getDouble("offset"), rs.getString("function"));
+            }
+            else {
+                throw new SqlDssException("Cannot convert from unit " + fromUnit + " to unit " + toUnit);
+            }
+        }
+        cache.put(id, conversion);
+        return conversion;
+    }
+
+    /**
+     * Retrieves the conversion cache for a connection, creating it if necessary. Caches of connections that have been
+     * closed without being released are discarded when a new cache is created.
+     * @param conn The JDBC connection
+     * @return The conversion cache for the connection
+     * @throws SQLException If SQL error
+     */
+    @NotNull
+    private static Map<String, UnitConversion> forConnection(@NotNull Connection conn) throws SQLException {
+        synchronized (caches) {
+            Map<String, UnitConversion> cache = caches.get(conn);
+            if (cache == null) {
+                Iterator<Map.Entry<Connection, Map<String, UnitConversion>>> it = caches.entrySet().iterator();
+                while (it.hasNext()) {
+                    if (it.next().getKey().isClosed()) {
+                        it.remove();
+                    }
+                }
+                cache = new ConcurrentHashMap<>();
+                caches.put(conn, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Discards the conversion cache for a connection
+     * @param conn The JDBC connection
+     */
+    static void release(@NotNull Connection conn) {
+        synchronized (caches) {
+            caches.remove(conn);
+        }
+    }
+
+    /**
+     * @return Whether the conversion is <code>toUnitVal = fromUnitVal * factor + offset</code>
+     */
+    public boolean isLinear() {
+        return ops == null;
+    }
+
+    /**
+     * @return Whether the conversion leaves values unchanged
+     */
+    public boolean isIdentity() {
+        return ops == null && factor == 1.0 && offset == 0.0;
+    }
+
+    /**
+     * @return The conversion factor, used only if the conversion is linear
+     */
+    public double getFactor() {
+        return factor;
+    }
+
+    /**
+     * @return The conversion offset, used only if the conversion is linear
+     */
+    public double getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return The RPN conversion function, or null if the conversion is linear
+     */
+    public String getFunction() {
+        return function;
+    }
+
+    /**
+     * Converts a single value
+     * @param value The value to convert
+     * @return The converted value
+     */
+    @Override
+    public double applyAsDouble(double value) {
+        if (ops == null) {
+            return value * factor + offset;
+        }
+        return evaluate(value, new double[stackDepth]);
+    }
+
+    /**
+     * Converts an array of values in-place, leaving missing values (and rejected values, if specified) unchanged
+     * @param values The values to convert
+     * @param qualities The qualities of the values. May be null
+     * @param count The number of values to convert
+     * @param skipRejected Whether to leave values with rejected quality unchanged
+     */
+    public void convert(double @NotNull [] values, int[] qualities, int count, boolean skipRejected) {
+        convert(values, qualities, 0, count, skipRejected);
+    }
+
+    /**
+     * Converts a range of an array of values in-place, leaving missing values (and rejected values, if specified)
+     * unchanged. Linear conversions use loops with no branches in their bodies so that the JIT compiler can vectorize
+     * them.
+     * @param values The values to convert
+     * @param qualities The qualities of the values. May be null
+     * @param from The index of the first value to convert
+     * @param to The index after the last value to convert
+     * @param skipRejected Whether to leave values with rejected quality unchanged
+     */
+    public void convert(double @NotNull [] values, int[] qualities, int from, int to, boolean skipRejected) {
+        if (isIdentity()) {
+            return;
+        }
+        if (ops == null) {
+            if (qualities == null) {
+                for (int i = from; i < to; ++i) {
+                    double value = values[i];
+                    values[i] = value == UNDEFINED_DOUBLE ? value : value * factor + offset;
+                }
+            }
+            else {
+                int rejected = skipRejected ? QUALITY_REJECTED_VALUE : QUALITY_MISSING_VALUE;
+                for (int i = from; i < to; ++i) {
+                    double value = values[i];
+                    int validity = qualities[i] & QUALITY_SCREENED_VALIDITY_MASK;
+                    boolean skip = value == UNDEFINED_DOUBLE | validity == QUALITY_MISSING_VALUE | validity == rejected;
+                    values[i] = skip ? value : value * factor + offset;
+                }
+            }
+            return;
+        }
+        double[] stack = new double[stackDepth];
+        for (int i = from; i < to; ++i) {
+            if (values[i] == UNDEFINED_DOUBLE) {
+                continue;
+            }
+            if (qualities != null) {
+                int validity = qualities[i] & QUALITY_SCREENED_VALIDITY_MASK;
+                if (validity == QUALITY_MISSING_VALUE || (skipRejected && validity == QUALITY_REJECTED_VALUE)) {
+                    continue;
+                }
+            }
+            values[i] = evaluate(values[i], stack);
+        }
+    }
+
+    /**
+     * Evaluates the compiled function for a single value
+     * @param value The value to convert
+     * @param stack The evaluation stack, of length at least {@link #stackDepth}
+     * @return The converted value
+     */
+    private double evaluate(double value, double @NotNull [] stack) {
+        int top = -1;
+        int constant = 0;
+        for (int op : ops) {
+            switch (op) {
+                case OP_CONST -> stack[++top] = constants[constant++];
+                case OP_ARG -> stack[++top] = value;
+                case OP_NEG_ARG -> stack[++top] = -value;
+                case OP_ADD -> stack[top - 1] += stack[top--];
+                case OP_SUBTRACT -> stack[top - 1] -= stack[top--];
+                case OP_MULTIPLY -> stack[top - 1] *= stack[top--];
+                case OP_DIVIDE -> stack[top - 1] /= stack[top--];
+                case OP_FLOOR_DIVIDE -> {
+                    stack[top - 1] = Math.floor(stack[top - 1] / stack[top]);
+                    --top;
+                }
+                case OP_POWER -> {
+                    stack[top - 1] = Math.pow(stack[top - 1], stack[top]);
+                    --top;
+                }
+                default -> throw new AssertionError("Unexpected operation: " + op);
+            }
+        }
+        return stack[0];
+    }
+}
@@ -8,11 +8,15 @@ import org.jetbrains.annotations.NotNull;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
 
 /**
  * Generic utility class for SQLDSS
@@ -60,6 +64,73 @@ public class Util {
         }
     }
 
+    /**
+     * Deflate part of a byte array as a raw deflate stream (no gzip or zlib wrapper)
+     * @param data The data to deflate
+     * @param offset The index of the first byte to deflate
+     * @param length The number of bytes to deflate
+     * @param level The compression level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}
+     * @return The deflated data
+     */
+    public static byte @NotNull [] deflateBytes(byte @NotNull [] data, int offset, int length, int level) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(data, offset, length);
+            deflater.finish();
+            byte[] out = new byte[length + length / 1000 + 64];
+            int size = 0;
+            while (!deflater.finished()) {
+                if (size == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                size += deflater.deflate(out, size, out.length - size);
+            }
+            return Arrays.copyOf(out, size);
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Inflate part of a byte array containing a raw deflate stream (no gzip or zlib wrapper)
+     * @param data The data containing the deflate stream
+     * @param offset The index of the first byte of the deflate stream
+     * @param length The number of bytes in the deflate stream
+     * @param inflatedLength The number of bytes the deflate stream inflates to
+     * @return The inflated data
+     * @throws IOException If the deflate stream is invalid or does not inflate to <code>inflatedLength</code> bytes
+     */
+    public static byte @NotNull [] inflateBytes(byte @NotNull [] data, int offset, int length, int inflatedLength)
+            throws IOException {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data, offset, length);
+            byte[] out = new byte[inflatedLength];
+            int size = 0;
+            while (size < inflatedLength && !inflater.finished()) {
+                int n = inflater.inflate(out, size, inflatedLength - size);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                size += n;
+            }
+            if (size != inflatedLength) {
+                throw new IOException(String.format(
+                        "Expected %d inflated bytes, got %d",
+                        inflatedLength,
+                        size));
+            }
+            return out;
+        }
+        catch (DataFormatException e) {
+            throw new IOException(e);
+        }
+        finally {
+            inflater.end();
+        }
+    }
+
     /**
      * Verifies that a string is valid JSON
      * @param jsonStr The string to validate
@@ -0,0 +1,284 @@
+package mil.army.usace.hec.sqldss.core;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Compact encodings for the values and quality codes of time series blocks.
+ *
+ * Values are encoded as a bit stream in which each value is XORed with the previous value, as in the Gorilla time
+ * series database. The first value is stored in 64 bits. Each following value is stored as:
+ * <dl>
+ *     <dt><code>0</code></dt>
+ *     <dd>the value is the same as the previous value</dd>
+ *     <dt><code>10</code></dt>
+ *     <dd>the meaningful bits of the XOR fit in the window of leading and trailing zeros of the previous XOR and
+ *     follow</dd>
+ *     <dt><code>11</code></dt>
+ *     <dd>5 bits of leading zero count, 6 bits of meaningful bit count minus one, then the meaningful bits</dd>
+ * </dl>
+ * Successive values of hydrologic time series are usually close to each other, so most XORs have long runs of leading
+ * and trailing zeros and repeated values cost a single bit.
+ *
+ * Quality codes are run-length encoded as a little-endian run count followed by the length and quality code of each
+ * run.
+ */
+final class XorEncoding {
+
+    /**
+     * Writes a bit stream, most significant bit first
+     */
+    private static final class BitWriter {
+        /**
+         * The bytes written
+         */
+        private byte[] bytes;
+        /**
+         * The number of complete bytes written
+         */
+        private int size = 0;
+        /**
+         * The byte being filled
+         */
+        private int current = 0;
+        /**
+         * The number of bits in the byte being filled
+         */
+        private int currentBits = 0;
+
+        /**
+         * Constructor
+         * @param capacity The initial capacity in bytes
+         */
+        BitWriter(int capacity) {
+            bytes = new byte[Math.max(capacity, 16)];
+        }
+
+        /**
+         * Writes the low-order bits of a value
+         * @param value The value
+         * @param bitCount The number of low-order bits to write, from 1 to 64
+         */
+        void write(long value, int bitCount) {
+            while (bitCount > 0) {
+                int take = Math.min(8 - currentBits, bitCount);
+                int chunk = (int) ((value >>> (bitCount - take)) & ((1 << take) - 1));
+                current = (current << take) | chunk;
+                currentBits += take;
+                bitCount -= take;
+                if (currentBits == 8) {
+                    if (size == bytes.length) {
+                        bytes = Arrays.copyOf(bytes, size * 2);
+                    }
+                    bytes[size++] = (byte) current;
+                    current = 0;
+                    currentBits = 0;
+                }
+            }
+        }
+
+        /**
+         * @return The bytes written, with the last byte padded with zero bits
+         */
+        byte @NotNull [] toByteArray() {
+            if (currentBits > 0) {
+                write(0, 8 - currentBits);
+            }
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+
+    /**
+     * Reads a bit stream, most significant bit first
+     */
+    private static final class BitReader {
+        /**
+         * The bytes to read
+         */
+        private final byte[] bytes;
+        /**
+         * The index of the next byte to read
+         */
+        private int position;
+        /**
+         * The byte being read
+         */
+        private int current = 0;
+        /**
+         * The number of unread bits in the byte being read
+         */
+        private int currentBits = 0;
+
+        /**
+         * Constructor
+         * @param bytes The bytes to read
+         * @param position The index of the first byte of the bit stream
+         */
+        BitReader(byte @NotNull [] bytes, int position) {
+            this.bytes = bytes;
+            this.position = position;
+        }
+
+        /**
+         * Reads bits into the low-order bits of a value
+         * @param bitCount The number of bits to read, from 1 to 64
+         * @return The value
+         */
+        long read(int bitCount) {
+            long value = 0;
+            while (bitCount > 0) {
+                if (currentBits == 0) {
+                    current = bytes[position++] & 0xff;
+                    currentBits = 8;
+                }
+                int take = Math.min(currentBits, bitCount);
+                int chunk = (current >>> (currentBits - take)) & ((1 << take) - 1);
+                value = (value << take) | chunk;
+                currentBits -= take;
+                bitCount -= take;
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Prevent instantiation
+     */
+    private XorEncoding() {
+        throw new AssertionError("Cannot instantiate");
+    }
+
+    /**
+     * Encodes values as an XOR bit stream
+     * @param values The values
+     * @param offset The index of the first value to encode
+     * @param count The number of values to encode
+     * @return The bit stream
+     */
+    static byte @NotNull [] encodeValues(double @NotNull [] values, int offset, int count) {
+        BitWriter out = new BitWriter(count * 2);
+        if (count == 0) {
+            return out.toByteArray();
+        }
+        long previous = Double.doubleToRawLongBits(values[offset]);
+        out.write(previous, 64);
+        // no window until the first non-zero XOR
+        int windowLeading = Integer.MAX_VALUE;
+        int windowTrailing = 0;
+        for (int i = offset + 1; i < offset + count; ++i) {
+            long bits = Double.doubleToRawLongBits(values[i]);
+            long xor = bits ^ previous;
+            if (xor == 0) {
+                out.write(0, 1);
+            }
+            else {
+                int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+                int trailing = Long.numberOfTrailingZeros(xor);
+                if (leading >= windowLeading && trailing >= windowTrailing) {
+                    out.write(0b10, 2);
+                    out.write(xor >>> windowTrailing, 64 - windowLeading - windowTrailing);
+                }
+                else {
+                    int meaningful = 64 - leading - trailing;
+                    out.write(0b11, 2);
+                    out.write(leading, 5);
+                    out.write(meaningful - 1, 6);
+                    out.write(xor >>> trailing, meaningful);
+                    windowLeading = leading;
+                    windowTrailing = trailing;
+                }
+            }
+            previous = bits;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes values from an XOR bit stream. The stream must be decoded from its start, so values before the first
+     * one needed are decoded and discarded.
+     * @param bytes The bytes containing the bit stream
+     * @param position The index of the first byte of the bit stream
+     * @param skip The number of values to discard
+     * @param values The array to decode the values into
+     * @param index The index in <code>values</code> of the first value kept
+     * @param count The number of values to keep
+     */
+    static void decodeValues(byte @NotNull [] bytes, int position, int skip, double @NotNull [] values, int index, int count) {
+        if (count == 0) {
+            return;
+        }
+        BitReader in = new BitReader(bytes, position);
+        long value = in.read(64);
+        int leading = 0;
+        int trailing = 0;
+        int end = skip + count;
+        for (int i = 0; i < end; ++i) {
+            if (i > 0 && in.read(1) != 0) {
+                if (in.read(1) != 0) {
+                    leading = (int) in.read(5);
+                    int meaningful = (int) in.read(6) + 1;
+                    trailing = 64 - leading - meaningful;
+                }
+                value ^= in.read(64 - leading - trailing) << trailing;
+            }
+            if (i >= skip) {
+                values[index + i - skip] = Double.longBitsToDouble(value);
+            }
+        }
+    }
+
+    /**
+     * Run-length encodes quality codes
+     * @param qualities The quality codes
+     * @param offset The index of the first quality code to encode
+     * @param count The number of quality codes to encode
+     * @return The run count followed by the length and quality code of each run, in little-endian order
+     */
+    static byte @NotNull [] encodeQualities(int @NotNull [] qualities, int offset, int count) {
+        int runCount = 0;
+        for (int i = offset; i < offset + count; ++i) {
+            if (i == offset || qualities[i] != qualities[i - 1]) {
+                ++runCount;
+            }
+        }
+        ByteBuffer buf = ByteBuffer.allocate(Integer.BYTES + runCount * 2 * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(runCount);
+        int runStart = offset;
+        for (int i = offset + 1; i <= offset + count; ++i) {
+            if (i == offset + count || qualities[i] != qualities[runStart]) {
+                buf.putInt(i - runStart);
+                buf.putInt(qualities[runStart]);
+                runStart = i;
+            }
+        }
+        return buf.array();
+    }
+
+    /**
+     * Decodes run-length encoded quality codes
+     * @param buf The buffer, in little-endian order, positioned at the run count. It is left positioned after the
+     *            last run.
+     * @param skip The number of quality codes to discard
+     * @param qualities The array to decode the quality codes into
+     * @param index The index in <code>qualities</code> of the first quality code kept
+     * @param count The number of quality codes to keep
+     */
+    static void decodeQualities(@NotNull ByteBuffer buf, int skip, int @NotNull [] qualities, int index, int count) {
+        int runCount = buf.getInt();
+        int position = 0;
+        int end = skip + count;
+        for (int i = 0; i < runCount; ++i) {
+            int length = buf.getInt();
+            int quality = buf.getInt();
+            int from = Math.max(position, skip);
+            int to = Math.min(position + length, end);
+            if (from < to) {
+                Arrays.fill(qualities, index + from - skip, index + to - skip, quality);
+            }
+            position += length;
+        }
+    }
+}
@@ -16,6 +16,17 @@ import java.sql.*;
  */
 public class Init {
 
+    /**
+     * The SQL to create the unique index on the LOCATION table
+     */
+    public static final String SQL_CREATE_LOCATION_INDEX =
+            "create unique index if not exists idx_location on location (base_location, sub_location)";
+    /**
+     * The SQL to create the unique index on the TIME_SERIES table
+     */
+    public static final String SQL_CREATE_TIME_SERIES_INDEX =
+            "create unique index if not exists idx_time_series on time_series (location, parameter, parameter_type, interval, duration, version)";
+
     /**
      * Prevent class instantiation
      */
@@ -48,6 +59,7 @@ public class Init {
         createTimeSeriesTable(conn);
         createTsvTable(conn);
         createTsvInfoTable(conn);
+        createTsvRollupTables(conn);
         conn.commit();
         if (isAutoCommit) conn.setAutoCommit(true);
     }
@@ -71,7 +83,8 @@ public class Init {
         t.setCurrent();
         String[][] info = {
                 {"version", "8.0.0"},
-                {"created", t.dateAndTime(-13)}
+                {"created", t.dateAndTime(-13)},
+                {"rtd_version", "1"}
         };
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             for (String[] infoRec : info) {
@@ -513,7 +526,7 @@ public class Init {
                           info text default (''), -- JSON object
                           foreign key (base_location) references base_location (key))""";
 
-        String sqlIndex = "create unique index idx_location on location (base_location, sub_location)";
+        String sqlIndex = SQL_CREATE_LOCATION_INDEX;
 
         try (PreparedStatement ps = conn.prepareStatement(sqlTable)) {
             ps.executeUpdate();
@@ -547,7 +560,7 @@ public class Init {
                           foreign key (interval) references interval (name),
                           foreign key (duration) references duration (name))""";
 
-        String sqlIndex = "create unique index idx_time_series on time_series (location, parameter, parameter_type, interval, duration, version)";
+        String sqlIndex = SQL_CREATE_TIME_SERIES_INDEX;
 
         try (PreparedStatement ps = conn.prepareStatement(sqlTable)) {
             ps.executeUpdate();
@@ -594,6 +607,9 @@ public class Init {
                           last_time integer not null,     -- encoded -?\\d+\\d{2}\\d{2} d{2}:d{2}:d{2} for extended dates
                           min_value real,
                           max_value real,
+                          valid_count integer,            -- number of values not missing or rejected
+                          sum_value real,                 -- sum of values not missing or rejected
+                          sum_sq_value real,              -- sum of squares of values not missing or rejected
                           last_update integer not null,   -- Unix epoch millisecionds
                           primary key (time_series, block_start_date),
                           foreign key (time_series) references time_series (key))""";
@@ -602,4 +618,80 @@ public class Init {
             ps.executeUpdate();
         }
     }
+
+    /**
+     * Create the unique indexes on the LOCATION and TIME_SERIES tables if they don't exist. Called for existing files,
+     * whose indexes are missing if a bulk load dropped them and did not end.
+     * @param conn The JDBC connection
+     * @throws SQLException on SQL error, including duplicate names in a file whose indexes were missing
+     */
+    public static void createNameIndexes(@NotNull Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(SQL_CREATE_LOCATION_INDEX)) {
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = conn.prepareStatement(SQL_CREATE_TIME_SERIES_INDEX)) {
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Create TSV_ROLLUP_SPEC and TSV_ROLLUP tables if they don't exist. Called for new files and for files created
+     * before the tables existed.
+     * @param conn The JDBC connection
+     * @throws SQLException on SQL error
+     */
+    public static void createTsvRollupTables(@NotNull Connection conn) throws SQLException {
+        String sqlSpecTable =
+                """
+                        create table if not exists tsv_rollup_spec(
+                          time_series integer,
+                          resolution text,                -- interval name of the rollup
+                          primary key (time_series, resolution),
+                          foreign key (time_series) references time_series (key),
+                          foreign key (resolution) references interval (name))""";
+        String sqlTable =
+                """
+                        create table if not exists tsv_rollup(
+                          time_series integer,
+                          resolution text,                -- interval name of the rollup
+                          block_start_date integer,       -- block start date of the source block
+                          data blob,
+                          primary key (time_series, resolution, block_start_date),
+                          foreign key (time_series, resolution) references tsv_rollup_spec (time_series, resolution))""";
+
+        try (PreparedStatement ps = conn.prepareStatement(sqlSpecTable)) {
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = conn.prepareStatement(sqlTable)) {
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Add the VALID_COUNT, SUM_VALUE, and SUM_SQ_VALUE columns to the TSV_INFO table of a file created before they
+     * existed. The added columns are null until the block information is recomputed.
+     * @param conn The JDBC connection
+     * @return Whether the columns were added. False if they already exist or there is no TSV_INFO table
+     * @throws SQLException on SQL error
+     */
+    public static boolean upgradeTsvInfoTable(@NotNull Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            boolean tableExists = false;
+            try (ResultSet rs = st.executeQuery("pragma table_info(tsv_info)")) {
+                while (rs.next()) {
+                    tableExists = true;
+                    if (rs.getString("name").equalsIgnoreCase("valid_count")) {
+                        return false;
+                    }
+                }
+            }
+            if (!tableExists) {
+                return false;
+            }
+            st.execute("alter table tsv_info add column valid_count integer");
+            st.execute("alter table tsv_info add column sum_value real");
+            st.execute("alter table tsv_info add column sum_sq_value real");
+        }
+        return true;
+    }
 }
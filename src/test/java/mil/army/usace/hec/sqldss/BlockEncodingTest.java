@@ -0,0 +1,249 @@
+package mil.army.usace.hec.sqldss.mil.army.usace.hec.sqldss;
+
+import com.google.common.flogger.FluentLogger;
+import hec.io.TimeSeriesContainer;
+import mil.army.usace.hec.sqldss.core.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static hec.lang.Const.UNDEFINED_DOUBLE;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BlockEncodingTest {
+
+    static FluentLogger logger = FluentLogger.forEnclosingClass();
+    SqlDss _db = null;
+
+    SqlDss getDb() throws IOException, SqlDssException, SQLException, EncodedDateTimeException {
+        Path dir = Paths.get("build/test-artifacts", getClass().getSimpleName());
+        Files.createDirectories(dir);
+        String dbFileName = dir.resolve("tester.sqldss").toString();
+        if (_db == null) {
+            Files.deleteIfExists(Path.of(dbFileName));
+            logger.atInfo().log("Opening new SqlDss: %s", dbFileName);
+            _db = SqlDss.open(dbFileName);
+        }
+        if (!_db.isOpen()) {
+            _db = SqlDss.open(dbFileName);
+        }
+        return _db;
+    }
+
+    static long getBlockBytes(String name, SqlDss db) throws Exception {
+        long key = TimeSeries.getTimeSeriesSpecKey(name, db.getConnection());
+        try (PreparedStatement ps = db.getConnection().prepareStatement(
+                "select sum(length(data)) from tsv where time_series = ?")) {
+            ps.setLong(1, key);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    static long getSmallBlockCount(String name, int maxBytes, SqlDss db) throws Exception {
+        long key = TimeSeries.getTimeSeriesSpecKey(name, db.getConnection());
+        try (PreparedStatement ps = db.getConnection().prepareStatement(
+                "select count(*) from tsv where time_series = ? and length(data) <= ?")) {
+            ps.setLong(1, key);
+            ps.setInt(2, maxBytes);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    static TimeSeriesContainer[] makeSteppedTimeSeriesContainers(int tscCount) throws Exception {
+        TimeSeriesContainer[] tscs = TimeSeriesDeleteTest.makeTimeSeriesContainers(tscCount, 2000);
+        for (TimeSeriesContainer tsc : tscs) {
+            tsc.quality = new int[tsc.numberValues];
+            for (int i = 0; i < tsc.numberValues; ++i) {
+                // values held for 6 hours at a time, like gate settings
+                tsc.values[i] = Math.round(100 * Math.sin(i / 6 / 20.)) / 10.;
+                if (i >= 100 && i < 150) {
+                    tsc.quality[i] = 3;
+                }
+            }
+            tsc.values[200] = UNDEFINED_DOUBLE;
+            tsc.quality[200] = 5;
+        }
+        return tscs;
+    }
+
+    static void assertRetrievesExactly(TimeSeriesContainer tsc, SqlDss db) throws Exception {
+        long startTime = EncodedDateTime.encodeDateTime(tsc.times[0]);
+        long endTime = EncodedDateTime.encodeDateTime(tsc.times[tsc.numberValues - 1]);
+        TimeSeriesContainer retrieved = db.retrieveTimeSeries(tsc.fullName, startTime, endTime, "n/a", false);
+        assertArrayEquals(tsc.values, retrieved.values);
+        assertArrayEquals(tsc.quality, retrieved.quality);
+        startTime = EncodedDateTime.encodeDateTime(tsc.times[777]);
+        endTime = EncodedDateTime.encodeDateTime(tsc.times[1500]);
+        retrieved = db.retrieveTimeSeries(tsc.fullName, startTime, endTime, "n/a", false);
+        assertArrayEquals(Arrays.copyOfRange(tsc.values, 777, 1501), retrieved.values);
+        assertArrayEquals(Arrays.copyOfRange(tsc.quality, 777, 1501), retrieved.quality);
+    }
+
+    @Test
+    public void testRtdVersions() throws Exception {
+        TimeSeriesContainer[] tscs = makeSteppedTimeSeriesContainers(2);
+        try (SqlDss db = getDb()) {
+            assertEquals(1, db.getRtdVersion());
+            assertThrows(SqlDssException.class, () -> db.setRtdVersion(3));
+            db.setRtdVersion(1);
+            TimeSeries.storeTimeSeriesValues(tscs[0], String.valueOf(Constants.REGULAR_STORE_RULE.REPLACE_ALL), db);
+            db.setRtdVersion(2);
+            TimeSeries.storeTimeSeriesValues(tscs[1], String.valueOf(Constants.REGULAR_STORE_RULE.REPLACE_ALL), db);
+            assertTrue(getBlockBytes(tscs[1].fullName, db) * 4 < getBlockBytes(tscs[0].fullName, db));
+            //-----------------------------------------------------//
+            // blocks of both versions retrieve the values exactly //
+            //-----------------------------------------------------//
+            for (TimeSeriesContainer tsc : tscs) {
+                assertRetrievesExactly(tsc, db);
+            }
+            //--------------------------------------------------------//
+            // version 1 blocks are merged and rewritten as version 2 //
+            //--------------------------------------------------------//
+            tscs[0].values[1000] = 12345.678;
+            TimeSeries.storeTimeSeriesValues(tscs[0], String.valueOf(Constants.REGULAR_STORE_RULE.REPLACE_ALL), db);
+            assertRetrievesExactly(tscs[0], db);
+        }
+        //-----------------------------------//
+        // the version is stored in the file //
+        //-----------------------------------//
+        try (SqlDss db = getDb()) {
+            db.setRtdVersion(2);
+        }
+        try (SqlDss db = getDb()) {
+            assertEquals(2, db.getRtdVersion());
+        }
+    }
+
+    @Test
+    public void testBlockCompression() throws Exception {
+        TimeSeriesContainer tsc = makeSteppedTimeSeriesContainers(1)[0];
+        String storeRule = String.valueOf(Constants.REGULAR_STORE_RULE.REPLACE_ALL);
+        try (SqlDss db = getDb()) {
+            assertEquals(0, db.getBlockCompressionLevel("1Hour"));
+            assertThrows(SqlDssException.class, () -> db.setBlockCompressionLevel(6));
+            db.setRtdVersion(2);
+            assertThrows(SqlDssException.class, () -> db.setBlockCompressionLevel(10));
+            assertThrows(SqlDssException.class, () -> db.setBlockCompressionLevel(6, "2Fortnights"));
+            assertThrows(SqlDssException.class, () -> db.setBlockCompressionRatio(0));
+            TimeSeries.storeTimeSeriesValues(tsc, storeRule, db);
+            long uncompressedBytes = getBlockBytes(tsc.fullName, db);
+            //----------------------------------------------------------------//
+            // blocks that don't compress well enough are stored uncompressed //
+            //----------------------------------------------------------------//
+            db.setBlockCompressionLevel(9);
+            db.setBlockCompressionRatio(0.01);
+            TimeSeries.storeTimeSeriesValues(tsc, storeRule, db);
+            assertEquals(uncompressedBytes, getBlockBytes(tsc.fullName, db));
+            db.setBlockCompressionRatio(0.8);
+            TimeSeries.storeTimeSeriesValues(tsc, storeRule, db);
+            long compressedBytes = getBlockBytes(tsc.fullName, db);
+            assertTrue(compressedBytes < uncompressedBytes);
+            assertRetrievesExactly(tsc, db);
+            //-------------------------------------------------------------------------//
+            // compressed blocks are merged and rewritten at the level of the interval //
+            //-------------------------------------------------------------------------//
+            db.setBlockCompressionLevel(0, "1hour");
+            assertEquals(0, db.getBlockCompressionLevel("1Hour"));
+            assertEquals(9, db.getBlockCompressionLevel("1Day"));
+            tsc.values[1000] = 12345.678;
+            TimeSeries.storeTimeSeriesValues(
+                    tsc,
+                    String.valueOf(Constants.REGULAR_STORE_RULE.REPLACE_WITH_NON_MISSING),
+                    db);
+            assertRetrievesExactly(tsc, db);
+            assertTrue(getBlockBytes(tsc.fullName, db) > compressedBytes);
+        }
+        //-------------------------------------//
+        // the settings are stored in the file //
+        //-------------------------------------//
+        try (SqlDss db = getDb()) {
+            assertEquals(0, db.getBlockCompressionLevel("1Hour"));
+            assertEquals(9, db.getBlockCompressionLevel("1Day"));
+            assertEquals(0.8, db.getBlockCompressionRatio());
+        }
+        //--------------------------------------------------------//
+        // files written for version 1 readers are not compressed //
+        //--------------------------------------------------------//
+        try (SqlDss db = getDb()) {
+            db.setRtdVersion(1);
+            assertEquals(0, db.getBlockCompressionLevel("1Day"));
+            assertThrows(SqlDssException.class, () -> db.setBlockCompressionLevel(6));
+            TimeSeries.storeTimeSeriesValues(tsc, storeRule, db);
+            assertRetrievesExactly(tsc, db);
+            assertEquals(0, db.getBlockStorageStatistics().deflatedBlockCount);
+        }
+    }
+
+    @Test
+    public void testConstantBlocks() throws Exception {
+        TimeSeriesContainer[] tscs = makeSteppedTimeSeriesContainers(3);
+        // January and February are flat-lined, March is not
+        Arrays.fill(tscs[0].values, 0, 1500, 3.25);
+        Arrays.fill(tscs[0].quality, 0, 1500, 0);
+        // all missing
+        Arrays.fill(tscs[1].values, UNDEFINED_DOUBLE);
+        Arrays.fill(tscs[1].quality, 5);
+        Arrays.fill(tscs[2].values, 3.25);
+        Arrays.fill(tscs[2].quality, 0);
+        try (SqlDss db = getDb()) {
+            assertThrows(SqlDssException.class, () -> db.setRtdVersion(3));
+            db.setRtdVersion(2);
+            TimeSeries.storeTimeSeriesValues(tscs[0], String.valueOf(Constants.REGULAR_STORE_RULE.REPLACE_ALL), db);
+            TimeSeries.storeTimeSeriesValues(tscs[1], String.valueOf(Constants.REGULAR_STORE_RULE.REPLACE_ALL), db);
+            assertEquals(2, getSmallBlockCount(tscs[0].fullName, 32, db));
+            assertEquals(4, getSmallBlockCount(tscs[1].fullName, 32, db));
+            //----------------------------------------------------//
+            // files written for version 1 readers are not elided //
+            //----------------------------------------------------//
+            db.setRtdVersion(1);
+            TimeSeries.storeTimeSeriesValues(tscs[2], String.valueOf(Constants.REGULAR_STORE_RULE.REPLACE_ALL), db);
+            assertEquals(0, getSmallBlockCount(tscs[2].fullName, 32, db));
+            for (TimeSeriesContainer tsc : tscs) {
+                assertRetrievesExactly(tsc, db);
+            }
+        }
+    }
+
+    @Test
+    public void testFloatBlocks() throws Exception {
+        TimeSeriesContainer[] tscs = makeSteppedTimeSeriesContainers(2);
+        // values that were 32-bit floats, with a missing value
+        Random random = new Random(3);
+        for (int i = 0; i < tscs[0].numberValues; ++i) {
+            tscs[0].values[i] = (float) (random.nextGaussian() * 100);
+        }
+        tscs[0].values[200] = UNDEFINED_DOUBLE;
+        try (SqlDss db = getDb()) {
+            db.setRtdVersion(2);
+            TimeSeries.storeTimeSeriesValues(tscs[0], String.valueOf(Constants.REGULAR_STORE_RULE.REPLACE_ALL), db);
+            TimeSeries.storeTimeSeriesValues(tscs[1], String.valueOf(Constants.REGULAR_STORE_RULE.REPLACE_ALL), db);
+            TimeSeries.BlockStorageStatistics stats = db.getBlockStorageStatistics();
+            assertEquals(7, stats.blockCount);
+            assertEquals(3, stats.floatBlockCount);
+            assertEquals(4L, stats.versionBlockCounts.get(2));
+            assertEquals(0, stats.constantBlockCount);
+            assertEquals(0, stats.deflatedBlockCount);
+            assertTrue(getBlockBytes(tscs[0].fullName, db) < tscs[0].numberValues * (Float.BYTES + 1));
+            for (TimeSeriesContainer tsc : tscs) {
+                assertRetrievesExactly(tsc, db);
+            }
+        }
+    }
+}
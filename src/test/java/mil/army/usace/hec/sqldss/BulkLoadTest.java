@@ -0,0 +1,125 @@
+package mil.army.usace.hec.sqldss.mil.army.usace.hec.sqldss;
+
+import com.google.common.flogger.FluentLogger;
+import hec.io.TimeSeriesContainer;
+import mil.army.usace.hec.sqldss.core.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BulkLoadTest {
+
+    static FluentLogger logger = FluentLogger.forEnclosingClass();
+    static final String[] PRAGMAS = {"journal_mode", "synchronous", "foreign_keys", "cache_size"};
+    static final String[] INDEXES = {"idx_location", "idx_time_series"};
+    SqlDss _db = null;
+
+    SqlDss getDb() throws IOException, SqlDssException, SQLException, EncodedDateTimeException {
+        Path dir = Paths.get("build/test-artifacts", getClass().getSimpleName());
+        Files.createDirectories(dir);
+        String dbFileName = dir.resolve("tester.sqldss").toString();
+        if (_db == null) {
+            Files.deleteIfExists(Path.of(dbFileName));
+            logger.atInfo().log("Opening new SqlDss: %s", dbFileName);
+            _db = SqlDss.open(dbFileName);
+        }
+        if (!_db.isOpen()) {
+            _db = SqlDss.open(dbFileName);
+        }
+        return _db;
+    }
+
+    static Map<String, String> getPragmas(SqlDss db) throws SQLException {
+        Map<String, String> pragmas = new LinkedHashMap<>();
+        try (Statement st = db.getConnection().createStatement()) {
+            for (String pragma : PRAGMAS) {
+                try (ResultSet rs = st.executeQuery("pragma " + pragma)) {
+                    rs.next();
+                    pragmas.put(pragma, rs.getString(1));
+                }
+            }
+        }
+        return pragmas;
+    }
+
+    static boolean indexExists(String name, SqlDss db) throws SQLException {
+        try (PreparedStatement ps = db.getConnection().prepareStatement(
+                "select count(*) from sqlite_master where type = 'index' and name = ?")) {
+            ps.setString(1, name);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getLong(1) > 0;
+            }
+        }
+    }
+
+    @Test
+    public void testBulkLoad() throws Exception {
+        TimeSeriesContainer[] tscs = BlockEncodingTest.makeSteppedTimeSeriesContainers(5);
+        String storeRule = String.valueOf(Constants.REGULAR_STORE_RULE.REPLACE_ALL);
+        try (SqlDss db = getDb()) {
+            //---------------------------------------------------//
+            // use settings that differ from the bulk load's own //
+            //---------------------------------------------------//
+            try (Statement st = db.getConnection().createStatement()) {
+                st.execute("pragma synchronous = NORMAL");
+                st.execute("pragma foreign_keys = OFF");
+                st.execute("pragma cache_size = -4000");
+            }
+            Map<String, String> pragmas = getPragmas(db);
+            assertThrows(SqlDssException.class, db::endBulkLoad);
+            db.beginBulkLoad();
+            assertTrue(db.isBulkLoading());
+            assertThrows(SqlDssException.class, db::beginBulkLoad);
+            for (String index : INDEXES) {
+                assertFalse(indexExists(index, db));
+            }
+            assertTrue(TimeSeries.storeTimeSeriesValues(Arrays.asList(tscs), storeRule, db).isEmpty());
+            db.endBulkLoad();
+            assertFalse(db.isBulkLoading());
+            assertThrows(SqlDssException.class, db::endBulkLoad);
+            //-------------------------------------------------------//
+            // the indexes are rebuilt and the settings are restored //
+            //-------------------------------------------------------//
+            for (String index : INDEXES) {
+                assertTrue(indexExists(index, db));
+            }
+            assertEquals(pragmas, getPragmas(db));
+            //----------------------------//
+            // the loaded data reads back //
+            //----------------------------//
+            for (TimeSeriesContainer tsc : tscs) {
+                BlockEncodingTest.assertRetrievesExactly(tsc, db);
+            }
+        }
+        //------------------------------------------------------------------//
+        // indexes dropped by an unfinished bulk load are recreated on open //
+        //------------------------------------------------------------------//
+        try (SqlDss db = getDb()) {
+            try (Statement st = db.getConnection().createStatement()) {
+                st.execute("drop index idx_location");
+                st.execute("drop index idx_time_series");
+            }
+        }
+        try (SqlDss db = getDb()) {
+            for (String index : INDEXES) {
+                assertTrue(indexExists(index, db));
+            }
+        }
+    }
+}
@@ -3,12 +3,17 @@ package mil.army.usace.hec.sqldss.mil.army.usace.hec.sqldss;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvFileSource;
+import org.junit.jupiter.params.provider.CsvSource;
 
 import java.time.ZoneId;
 import java.util.Arrays;
 
+import static mil.army.usace.hec.sqldss.core.EncodedDateTime.addSeconds;
 import static mil.army.usace.hec.sqldss.core.EncodedDateTime.changeTimeZone;
 import static mil.army.usace.hec.sqldss.core.EncodedDateTime.encodeDateTime;
+import static mil.army.usace.hec.sqldss.core.EncodedDateTime.incrementEncodedDateTime;
+import static mil.army.usace.hec.sqldss.core.EncodedDateTime.intervalsBetween;
+import static mil.army.usace.hec.sqldss.core.EncodedDateTime.makeRegularEncodedDateTimeArray;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 public class EncodedDateTimeTest {
@@ -41,4 +46,28 @@ public class EncodedDateTimeTest {
         long expected = encodeDateTime(values);
         assertEquals(expected, changeTimeZone(encoded, ZoneId.of(tz1), ZoneId.of(tz2)));
     }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '\t', textBlock = """
+        20250101000000	1	100000	20250311104000
+        20250101000000	60	8760	20260101000000
+        20241231013000	1440	365	20251231013000
+        20250101000000	10080	52	20251231000000
+        20240131000000	43200	1	20240302000000
+        20240131000000	43200	13	20250303000000
+        20240229120000	525600	1	20250301120000
+        20250101000000	5256000	3	20550101000000
+        """)
+    public void testIncrementEncodedDateTime(long start, int intervalMinutes, int count, long expected) throws Exception {
+        assertEquals(expected, incrementEncodedDateTime(start, intervalMinutes, count));
+        long[] stepped = new long[count + 1];
+        stepped[0] = start;
+        for (int i = 1; i <= count; ++i) {
+            stepped[i] = incrementEncodedDateTime(stepped[i - 1], intervalMinutes, 1);
+        }
+        long[] times = makeRegularEncodedDateTimeArray(start, count + 1, intervalMinutes);
+        assertEquals(Arrays.toString(stepped), Arrays.toString(times));
+        assertEquals(count, intervalsBetween(start, stepped[count], intervalMinutes));
+        assertEquals(count - 1, intervalsBetween(start, addSeconds(stepped[count], -1), intervalMinutes));
+    }
 }
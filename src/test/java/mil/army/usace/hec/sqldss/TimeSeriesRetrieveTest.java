@@ -0,0 +1,301 @@
+package mil.army.usace.hec.sqldss.mil.army.usace.hec.sqldss;
+
+import com.google.common.flogger.FluentLogger;
+import hec.io.TimeSeriesContainer;
+import mil.army.usace.hec.sqldss.core.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static hec.lang.Const.UNDEFINED_DOUBLE;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TimeSeriesRetrieveTest {
+
+    static FluentLogger logger = FluentLogger.forEnclosingClass();
+    SqlDss _db = null;
+
+    SqlDss getDb() throws IOException, SqlDssException, SQLException, EncodedDateTimeException {
+        Path dir = Paths.get("build/test-artifacts", getClass().getSimpleName());
+        Files.createDirectories(dir);
+        String dbFileName = dir.resolve("tester.sqldss").toString();
+        if (_db == null) {
+            Files.deleteIfExists(Path.of(dbFileName));
+            logger.atInfo().log("Opening new SqlDss: %s", dbFileName);
+            _db = SqlDss.open(dbFileName);
+        }
+        if (!_db.isOpen()) {
+            _db = SqlDss.open(dbFileName);
+        }
+        return _db;
+    }
+
+    @Test
+    public void testRetrieveMultipleTimeSeries() throws Exception {
+        TimeSeriesContainer[] tscs = TimeSeriesDeleteTest.makeTimeSeriesContainers(10, 1000);
+        try (SqlDss db = getDb()) {
+            List<String> names = new ArrayList<>();
+            for (TimeSeriesContainer tsc : tscs) {
+                TimeSeries.storeTimeSeriesValues(tsc, String.valueOf(Constants.REGULAR_STORE_RULE.REPLACE_ALL), db);
+                names.add(tsc.fullName);
+            }
+            long startTime = 20250115000000L;
+            long endTime = 20250915000000L;
+            Map<String, TimeSeriesContainer> retrieved = db.retrieveTimeSeries(names, startTime, endTime, null, false);
+            assertEquals(names, new ArrayList<>(retrieved.keySet()));
+            for (String name : names) {
+                TimeSeriesContainer expected = db.retrieveTimeSeries(name, startTime, endTime, null, false);
+                TimeSeriesContainer actual = retrieved.get(name);
+                assertEquals(expected.numberValues, actual.numberValues);
+                assertEquals(expected.units, actual.units);
+                assertArrayEquals(expected.times, actual.times);
+                assertArrayEquals(expected.values, actual.values);
+            }
+        }
+    }
+
+    @Test
+    public void testBlockCache() throws Exception {
+        TimeSeriesContainer tsc = TimeSeriesDeleteTest.makeTimeSeriesContainers(1, 1000)[0];
+        long startTime = EncodedDateTime.encodeDateTime(tsc.getStartTime());
+        long endTime = EncodedDateTime.encodeDateTime(tsc.getEndTime());
+        try (SqlDss db = getDb()) {
+            TimeSeries.storeTimeSeriesValues(tsc, String.valueOf(Constants.REGULAR_STORE_RULE.REPLACE_ALL), db);
+            db.setBlockCacheBytes(1024 * 1024);
+            //-----------------------------------------------------//
+            // the second retrieval is served from the block cache //
+            //-----------------------------------------------------//
+            TimeSeriesContainer first = db.retrieveTimeSeries(tsc.fullName, startTime, endTime, "n/a", false);
+            long hits = db.getBlockCacheHits();
+            TimeSeriesContainer second = db.retrieveTimeSeries(tsc.fullName, startTime, endTime, "n/a", false);
+            assertTrue(db.getBlockCacheHits() > hits);
+            assertArrayEquals(tsc.values, first.values);
+            assertArrayEquals(first.times, second.times);
+            assertArrayEquals(first.values, second.values);
+            //------------------------------------------//
+            // stores and deletes invalidate the blocks //
+            //------------------------------------------//
+            tsc.values[500] = -1;
+            TimeSeries.storeTimeSeriesValues(tsc, String.valueOf(Constants.REGULAR_STORE_RULE.REPLACE_ALL), db);
+            TimeSeriesContainer stored = db.retrieveTimeSeries(tsc.fullName, startTime, endTime, "n/a", false);
+            assertArrayEquals(tsc.values, stored.values);
+            db.deleteTimeSeriesRecords(new String[]{tsc.fullName + "|20250201"});
+            TimeSeriesContainer deleted = db.retrieveTimeSeries(tsc.fullName, startTime, endTime, "n/a", false);
+            assertEquals(tsc.values[500], deleted.values[500]);
+            assertEquals(UNDEFINED_DOUBLE, deleted.values[800]);
+        }
+    }
+
+    @Test
+    public void testTimeSeriesCursor() throws Exception {
+        TimeSeriesContainer tsc = TimeSeriesDeleteTest.makeTimeSeriesContainers(1, 5000)[0];
+        try (SqlDss db = getDb()) {
+            TimeSeries.storeTimeSeriesValues(tsc, String.valueOf(Constants.REGULAR_STORE_RULE.REPLACE_ALL), db);
+            long startTime = 20250115000000L;
+            long endTime = 20250515000000L;
+            TimeSeriesContainer expected = db.retrieveTimeSeries(tsc.fullName, startTime, endTime, "n/a", false);
+            List<Integer> times = new ArrayList<>();
+            List<Double> values = new ArrayList<>();
+            int chunks = 0;
+            try (TimeSeriesCursor cursor = db.openTimeSeriesCursor(tsc.fullName, startTime, endTime, "n/a")) {
+                while (cursor.hasNext()) {
+                    TimeSeriesContainer chunk = cursor.next();
+                    for (int i = 0; i < chunk.numberValues; ++i) {
+                        times.add(chunk.times[i]);
+                        values.add(chunk.values[i]);
+                    }
+                    ++chunks;
+                }
+            }
+            assertEquals(5, chunks);
+            assertArrayEquals(expected.times, times.stream().mapToInt(Integer::intValue).toArray());
+            assertArrayEquals(expected.values, values.stream().mapToDouble(Double::doubleValue).toArray());
+        }
+    }
+
+    @Test
+    public void testParallelDecode() throws Exception {
+        TimeSeriesContainer tsc = TimeSeriesDeleteTest.makeTimeSeriesContainers(1, 5000)[0];
+        try (SqlDss db = getDb()) {
+            TimeSeries.storeTimeSeriesValues(tsc, String.valueOf(Constants.REGULAR_STORE_RULE.REPLACE_ALL), db);
+            long startTime = 20241215000000L;
+            long endTime = 20250915000000L;
+            TimeSeriesContainer sequential = db.retrieveTimeSeries(tsc.fullName, startTime, endTime, "n/a", false);
+            db.setParallelDecodeThreshold(2);
+            TimeSeriesContainer parallel = db.retrieveTimeSeries(tsc.fullName, startTime, endTime, "n/a", false);
+            assertEquals(sequential.numberValues, parallel.numberValues);
+            assertArrayEquals(sequential.times, parallel.times);
+            assertArrayEquals(sequential.values, parallel.values);
+        }
+    }
+
+    @Test
+    public void testRollup() throws Exception {
+        TimeSeriesContainer tsc = TimeSeriesDeleteTest.makeTimeSeriesContainers(1, 1000)[0];
+        long startTime = EncodedDateTime.encodeDateTime(tsc.getStartTime());
+        long endTime = EncodedDateTime.encodeDateTime(tsc.getEndTime());
+        try (SqlDss db = getDb()) {
+            TimeSeries.storeTimeSeriesValues(tsc, String.valueOf(Constants.REGULAR_STORE_RULE.REPLACE_ALL), db);
+            db.createRollup(tsc.fullName, "1Day");
+            assertEquals(List.of("1Day"), db.getRollupResolutions(tsc.fullName));
+            //-------------------------------------------------------------------//
+            // the rollup is updated when values in an existing block are stored //
+            //-------------------------------------------------------------------//
+            tsc.values[500] = 1.0e6;
+            TimeSeries.storeTimeSeriesValues(tsc, String.valueOf(Constants.REGULAR_STORE_RULE.REPLACE_ALL), db);
+            TimeSeries.TimeSeriesRollup rollup = db.retrieveRollup(tsc.fullName, startTime, endTime, "1Day", "n/a");
+            TimeSeriesContainer means = rollup.means;
+            assertEquals(1440, means.interval);
+            double[] min = new double[means.numberValues];
+            double[] max = new double[means.numberValues];
+            double[] sum = new double[means.numberValues];
+            int[] count = new int[means.numberValues];
+            for (int i = 0; i < tsc.numberValues; ++i) {
+                // each rollup value summarizes the values after the previous day boundary through its own time
+                int bucket = ((tsc.times[i] + 1439) / 1440 * 1440 - means.times[0]) / 1440;
+                if (bucket >= means.numberValues) {
+                    continue;
+                }
+                min[bucket] = count[bucket] == 0 ? tsc.values[i] : Math.min(min[bucket], tsc.values[i]);
+                max[bucket] = count[bucket] == 0 ? tsc.values[i] : Math.max(max[bucket], tsc.values[i]);
+                sum[bucket] += tsc.values[i];
+                ++count[bucket];
+            }
+            for (int i = 0; i < means.numberValues; ++i) {
+                assertEquals(count[i], rollup.counts[i]);
+                assertEquals(min[i], rollup.minValues[i]);
+                assertEquals(max[i], rollup.maxValues[i]);
+                assertEquals(sum[i] / count[i], means.values[i], 1e-9);
+            }
+            //-------------------------------------------------------------------------------------//
+            // a retrieval with a coarser resolution is served from the rollup, a finer one is not //
+            //-------------------------------------------------------------------------------------//
+            TimeSeriesContainer hinted = db.retrieveTimeSeries(tsc.fullName, startTime, endTime, "n/a", false, "1Month");
+            assertArrayEquals(means.times, hinted.times);
+            assertArrayEquals(means.values, hinted.values);
+            TimeSeriesContainer full = db.retrieveTimeSeries(tsc.fullName, startTime, endTime, "n/a", false, "6Hours");
+            assertEquals(tsc.numberValues, full.numberValues);
+        }
+    }
+
+    @Test
+    public void testDownsample() throws Exception {
+        TimeSeriesContainer tsc = TimeSeriesDeleteTest.makeTimeSeriesContainers(1, 1000)[0];
+        for (int i = 0; i < tsc.numberValues; ++i) {
+            tsc.values[i] = 100 * Math.sin(i / 50.);
+        }
+        tsc.values[500] = 1.0e6;
+        tsc.values[700] = -1.0e6;
+        long startTime = EncodedDateTime.encodeDateTime(tsc.getStartTime());
+        long endTime = EncodedDateTime.encodeDateTime(tsc.getEndTime());
+        try (SqlDss db = getDb()) {
+            TimeSeries.storeTimeSeriesValues(tsc, String.valueOf(Constants.REGULAR_STORE_RULE.REPLACE_ALL), db);
+            for (Constants.DOWNSAMPLE_METHOD method : Constants.DOWNSAMPLE_METHOD.values()) {
+                TimeSeriesContainer downsampled = db.retrieveTimeSeries(
+                        tsc.fullName,
+                        startTime,
+                        endTime,
+                        "n/a",
+                        50,
+                        method);
+                assertEquals("TestLoc|Code|INST-VAL|~1Hour|0|Version 0", downsampled.fullName);
+                assertTrue(downsampled.numberValues > 25 && downsampled.numberValues <= 50);
+                //------------------------------------------------------//
+                // every value kept is an original value, in time order //
+                //------------------------------------------------------//
+                for (int i = 0; i < downsampled.numberValues; ++i) {
+                    int j = (downsampled.times[i] - tsc.times[0]) / tsc.interval;
+                    assertEquals(tsc.times[j], downsampled.times[i]);
+                    assertEquals(tsc.values[j], downsampled.values[i]);
+                    if (i > 0) {
+                        assertTrue(downsampled.times[i] > downsampled.times[i - 1]);
+                    }
+                }
+                List<Double> values = new ArrayList<>();
+                for (int i = 0; i < downsampled.numberValues; ++i) {
+                    values.add(downsampled.values[i]);
+                }
+                assertTrue(values.contains(1.0e6));
+                assertTrue(values.contains(-1.0e6));
+                if (method == Constants.DOWNSAMPLE_METHOD.LTTB) {
+                    assertEquals(tsc.times[0], downsampled.times[0]);
+                    assertEquals(tsc.times[999], downsampled.times[downsampled.numberValues - 1]);
+                }
+            }
+            //----------------------------------------------------------------------------//
+            // a time window with no more values than the target count is not downsampled //
+            //----------------------------------------------------------------------------//
+            TimeSeriesContainer full = db.retrieveTimeSeries(
+                    tsc.fullName,
+                    startTime,
+                    endTime,
+                    "n/a",
+                    1000,
+                    Constants.DOWNSAMPLE_METHOD.LTTB);
+            assertEquals(tsc.fullName, full.fullName);
+            assertArrayEquals(tsc.values, full.values);
+        }
+    }
+
+    @Test
+    public void testTrimMissing() throws Exception {
+        TimeSeriesContainer tsc = TimeSeriesDeleteTest.makeTimeSeriesContainers(1, 1000)[0];
+        tsc.quality = new int[tsc.numberValues];
+        for (int i = 0; i < tsc.numberValues; ++i) {
+            if (i < 300 || i >= 800) {
+                tsc.values[i] = UNDEFINED_DOUBLE;
+                tsc.quality[i] = 5;
+            }
+        }
+        // rejected values are trimmed along with missing values
+        tsc.quality[300] = 17;
+        long startTime = EncodedDateTime.encodeDateTime(tsc.getStartTime());
+        long endTime = EncodedDateTime.encodeDateTime(tsc.getEndTime());
+        try (SqlDss db = getDb()) {
+            TimeSeries.storeTimeSeriesValues(tsc, String.valueOf(Constants.REGULAR_STORE_RULE.REPLACE_ALL), db);
+            TimeSeriesContainer trimmed = db.retrieveTimeSeries(tsc.fullName, startTime, endTime, "n/a", true);
+            assertEquals(499, trimmed.numberValues);
+            assertEquals(tsc.times[301], trimmed.times[0]);
+            assertEquals(tsc.times[799], trimmed.times[trimmed.numberValues - 1]);
+            assertEquals(tsc.times[301], trimmed.getStartTime().value());
+            assertEquals(tsc.values[301], trimmed.values[0]);
+            TimeSeriesContainer untrimmed = db.retrieveTimeSeries(tsc.fullName, startTime, endTime, "n/a", false);
+            assertEquals(tsc.numberValues, untrimmed.numberValues);
+            //----------------------------------------------------------//
+            // a time window with no valid values is trimmed to nothing //
+            //----------------------------------------------------------//
+            long missingEndTime = EncodedDateTime.encodeDateTime(tsc.times[299]);
+            TimeSeriesContainer empty = db.retrieveTimeSeries(tsc.fullName, startTime, missingEndTime, "n/a", true);
+            assertEquals(0, empty.numberValues);
+        }
+    }
+
+    @Test
+    public void testTimeSeriesExtents() throws Exception {
+        TimeSeriesContainer[] tscs = TimeSeriesDeleteTest.makeTimeSeriesContainers(3, 1000);
+        try (SqlDss db = getDb()) {
+            List<String> names = new ArrayList<>();
+            for (TimeSeriesContainer tsc : tscs) {
+                TimeSeries.storeTimeSeriesValues(tsc, String.valueOf(Constants.REGULAR_STORE_RULE.REPLACE_ALL), db);
+                names.add(tsc.fullName);
+            }
+            Map<String, Long[]> bulkExtents = db.getTimeSeriesExtents(names);
+            assertEquals(names, new ArrayList<>(bulkExtents.keySet()));
+            for (TimeSeriesContainer tsc : tscs) {
+                Long[] extents = db.getTimeSeriesExtents(tsc.fullName);
+                assertEquals(EncodedDateTime.encodeDateTime(tsc.times[0]), extents[0]);
+                assertEquals(EncodedDateTime.encodeDateTime(tsc.times[tsc.numberValues - 1]), extents[1]);
+                assertArrayEquals(extents, bulkExtents.get(tsc.fullName));
+            }
+        }
+    }
+}
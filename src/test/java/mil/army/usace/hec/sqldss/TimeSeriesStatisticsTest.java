@@ -0,0 +1,106 @@
+package mil.army.usace.hec.sqldss.mil.army.usace.hec.sqldss;
+
+import com.google.common.flogger.FluentLogger;
+import hec.io.TimeSeriesContainer;
+import mil.army.usace.hec.sqldss.core.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TimeSeriesStatisticsTest {
+
+    static FluentLogger logger = FluentLogger.forEnclosingClass();
+    SqlDss _db = null;
+
+    SqlDss getDb() throws IOException, SqlDssException, SQLException, EncodedDateTimeException {
+        Path dir = Paths.get("build/test-artifacts", getClass().getSimpleName());
+        Files.createDirectories(dir);
+        String dbFileName = dir.resolve("tester.sqldss").toString();
+        if (_db == null) {
+            Files.deleteIfExists(Path.of(dbFileName));
+            logger.atInfo().log("Opening new SqlDss: %s", dbFileName);
+            _db = SqlDss.open(dbFileName);
+        }
+        if (!_db.isOpen()) {
+            _db = SqlDss.open(dbFileName);
+        }
+        return _db;
+    }
+
+    @Test
+    public void testStatistics() throws Exception {
+        TimeSeriesContainer tsc = TimeSeriesDeleteTest.makeTimeSeriesContainers(1, 5000)[0];
+        for (int i = 0; i < tsc.numberValues; ++i) {
+            tsc.values[i] = -1000 - Math.abs(i - 2500);
+        }
+        try (SqlDss db = getDb()) {
+            TimeSeries.storeTimeSeriesValues(tsc, String.valueOf(Constants.REGULAR_STORE_RULE.REPLACE_ALL), db);
+            long startTime = 20250115000000L;
+            long endTime = 20250515000000L;
+            TimeSeriesContainer retrieved = db.retrieveTimeSeries(tsc.fullName, startTime, endTime, "n/a", false);
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+            double sum = 0;
+            for (int i = 0; i < retrieved.numberValues; ++i) {
+                min = Math.min(min, retrieved.values[i]);
+                max = Math.max(max, retrieved.values[i]);
+                sum += retrieved.values[i];
+            }
+            double mean = sum / retrieved.numberValues;
+            double variance = 0;
+            for (int i = 0; i < retrieved.numberValues; ++i) {
+                variance += (retrieved.values[i] - mean) * (retrieved.values[i] - mean);
+            }
+            variance /= retrieved.numberValues;
+            TimeSeries.TimeSeriesStatistics stats = db.getTimeSeriesStatistics(tsc.fullName, startTime, endTime, "n/a");
+            assertEquals(retrieved.numberValues, stats.count);
+            assertEquals(retrieved.numberValues, stats.validCount);
+            assertEquals(retrieved.numberValues, stats.expectedCount);
+            assertEquals(100.0, stats.availability, 1e-9);
+            assertEquals(min, stats.minValue);
+            assertEquals(max, stats.maxValue);
+            assertEquals(mean, stats.mean, 1e-6);
+            assertEquals(variance, stats.variance, 1e-3);
+            assertEquals(3, stats.summarizedBlocks);
+            assertEquals(2, stats.decodedBlocks);
+        }
+    }
+
+    @Test
+    public void testUpgradeBlockInformation() throws Exception {
+        TimeSeriesContainer tsc = TimeSeriesDeleteTest.makeTimeSeriesContainers(1, 1000)[0];
+        for (int i = 0; i < tsc.numberValues; ++i) {
+            tsc.values[i] = -1 - i;
+        }
+        long startTime = EncodedDateTime.encodeDateTime(tsc.getStartTime());
+        long endTime = EncodedDateTime.encodeDateTime(tsc.getEndTime());
+        try (SqlDss db = getDb()) {
+            TimeSeries.storeTimeSeriesValues(tsc, String.valueOf(Constants.REGULAR_STORE_RULE.REPLACE_ALL), db);
+            //-------------------------------------------------------------------//
+            // make the block information look like that of an older-format file //
+            //-------------------------------------------------------------------//
+            try (Statement st = db.getConnection().createStatement()) {
+                st.execute("update tsv_info set max_value = 4.9e-324");
+                st.execute("alter table tsv_info drop column valid_count");
+                st.execute("alter table tsv_info drop column sum_value");
+                st.execute("alter table tsv_info drop column sum_sq_value");
+            }
+        }
+        try (SqlDss db = getDb()) {
+            TimeSeries.TimeSeriesStatistics stats = db.getTimeSeriesStatistics(tsc.fullName, startTime, endTime, "n/a");
+            assertEquals(1000, stats.validCount);
+            assertEquals(-1000.0, stats.minValue);
+            assertEquals(-1.0, stats.maxValue);
+            assertEquals(-500.5, stats.mean, 1e-9);
+            assertTrue(stats.summarizedBlocks > 0);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package mil.army.usace.hec.sqldss.mil.army.usace.hec.sqldss;
+
+import com.google.common.flogger.FluentLogger;
+import hec.io.TimeSeriesContainer;
+import mil.army.usace.hec.sqldss.core.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TimeSeriesStoreTest {
+
+    static FluentLogger logger = FluentLogger.forEnclosingClass();
+    SqlDss _db = null;
+
+    SqlDss getDb() throws IOException, SqlDssException, SQLException, EncodedDateTimeException {
+        Path dir = Paths.get("build/test-artifacts", getClass().getSimpleName());
+        Files.createDirectories(dir);
+        String dbFileName = dir.resolve("tester.sqldss").toString();
+        if (_db == null) {
+            Files.deleteIfExists(Path.of(dbFileName));
+            logger.atInfo().log("Opening new SqlDss: %s", dbFileName);
+            _db = SqlDss.open(dbFileName);
+        }
+        if (!_db.isOpen()) {
+            _db = SqlDss.open(dbFileName);
+        }
+        return _db;
+    }
+
+    @Test
+    public void testStoreMultipleTimeSeries() throws Exception {
+        TimeSeriesContainer[] tscs = TimeSeriesDeleteTest.makeTimeSeriesContainers(10, 1000);
+        TimeSeriesContainer bad = TimeSeriesDeleteTest.makeTimeSeriesContainers(1, 10)[0];
+        bad.fullName = "TestLoc|NoSuchParameter|INST-VAL|1Hour|0|Bad";
+        List<TimeSeriesContainer> toStore = new ArrayList<>(Arrays.asList(tscs));
+        toStore.add(bad);
+        try (SqlDss db = getDb()) {
+            //--------------------------------------------------//
+            // store all at once; only the bad one should fail //
+            //--------------------------------------------------//
+            Map<String, Exception> failures = db.storeTimeSeries(toStore, "REPLACE_ALL");
+            assertEquals(1, failures.size());
+            assertTrue(failures.containsKey(bad.fullName));
+            for (TimeSeriesContainer tsc : tscs) {
+                TimeSeriesContainer retrieved = db.retrieveTimeSeries(
+                        tsc.fullName,
+                        EncodedDateTime.encodeDateTime(tsc.getStartTime()),
+                        EncodedDateTime.encodeDateTime(tsc.getEndTime()),
+                        "n/a",
+                        false);
+                assertEquals(tsc.numberValues, retrieved.numberValues);
+                assertArrayEquals(tsc.times, retrieved.times);
+                assertArrayEquals(tsc.values, retrieved.values);
+            }
+            //---------------------------------------------------//
+            // store again so every block merges with existing  //
+            //---------------------------------------------------//
+            failures = db.storeTimeSeries(Arrays.asList(tscs), "REPLACE_ALL");
+            assertEquals(0, failures.size());
+            for (TimeSeriesContainer tsc : tscs) {
+                TimeSeriesContainer retrieved = db.retrieveTimeSeries(
+                        tsc.fullName,
+                        EncodedDateTime.encodeDateTime(tsc.getStartTime()),
+                        EncodedDateTime.encodeDateTime(tsc.getEndTime()),
+                        "n/a",
+                        false);
+                assertArrayEquals(tsc.values, retrieved.values);
+            }
+        }
+    }
+}
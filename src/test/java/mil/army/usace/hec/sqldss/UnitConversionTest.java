@@ -0,0 +1,51 @@
+package mil.army.usace.hec.sqldss.mil.army.usace.hec.sqldss;
+
+import mil.army.usace.hec.sqldss.core.SqlDssException;
+import mil.army.usace.hec.sqldss.core.UnitConversion;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static hec.lang.Const.UNDEFINED_DOUBLE;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class UnitConversionTest {
+
+    @ParameterizedTest
+    @CsvSource({
+            "ARG1 32 - 5 * 9 /, 212, 100",
+            "ARG1 32 - 5 * 9 /, -40, -40",
+            "ARG1 9 * 5 / 32 +, 100, 212",
+            "-ARG1 2 ^, 3, 9",
+            "ARG1 2 **, 3, 9",
+            "ARG1 2 //, 7, 3",
+    })
+    public void testCompiledFunction(String function, double value, double expected) throws Exception {
+        UnitConversion conversion = UnitConversion.compile(0, 0, function);
+        assertEquals(expected, conversion.applyAsDouble(value), 1e-9);
+    }
+
+    @Test
+    public void testInvalidFunction() {
+        for (String function : new String[]{"ARG1 +", "ARG1 2", "ARG1 x *", "ARG1 2 %"}) {
+            assertThrows(SqlDssException.class, () -> UnitConversion.compile(0, 0, function));
+        }
+    }
+
+    @Test
+    public void testConvertArray() throws Exception {
+        UnitConversion conversion = UnitConversion.compile(2, 1, null);
+        double[] values = {1, UNDEFINED_DOUBLE, 3, 4};
+        int[] qualities = {0, 0, 5, 17};
+        conversion.convert(values, qualities, values.length, true);
+        assertArrayEquals(new double[]{3, UNDEFINED_DOUBLE, 3, 4}, values);
+        values = new double[]{1, UNDEFINED_DOUBLE, 3, 4};
+        conversion.convert(values, qualities, values.length, false);
+        assertArrayEquals(new double[]{3, UNDEFINED_DOUBLE, 3, 9}, values);
+        values = new double[]{1, UNDEFINED_DOUBLE, 3, 4};
+        conversion.convert(values, null, 1, 3, false);
+        assertArrayEquals(new double[]{1, UNDEFINED_DOUBLE, 7, 4}, values);
+    }
+}